@@ -0,0 +1,111 @@
+package truffula.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Renders trees to a stream that discards its bytes, colored and plain.
+ * 
+ * - colorPrinter prints a fixed set of indented lines through a buffered
+ *   ColorPrinter, switching color per depth like TruffulaPrinter does, so it measures
+ *   rendering alone.
+ * - printTree runs TruffulaPrinter.printTree end to end on a synthetic tree on disk,
+ *   listing and sorting included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderBenchmark {
+
+  /**
+   * Matches the buffer TruffulaPrinter gives its ColorPrinter.
+   */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  @Param({"true", "false"})
+  public boolean color;
+
+  @Param({"3"})
+  public int depth;
+
+  @Param({"4"})
+  public int branches;
+
+  @Param({"64"})
+  public int files;
+
+  private File root;
+  private PrintStream sink;
+  private Object printer;
+  private String[] lines;
+  private Object[] lineColors;
+
+  @Setup
+  public void createTree() throws IOException {
+    root = Files.createTempDirectory("truffula-bench").toFile();
+    SyntheticTree.create(root, depth, branches, files, 0, SyntheticTree.Names.SHORT);
+    sink = new PrintStream(OutputStream.nullOutputStream());
+    printer = Truffula.printer(Truffula.options(root, false, color), sink);
+
+    // The lines printTree prints for the same tree, with the color of their depth.
+    List<String> treeLines = new ArrayList<>();
+    List<Object> treeColors = new ArrayList<>();
+    collectLines(root, "", 0, treeLines, treeColors);
+    lines = treeLines.toArray(new String[0]);
+    lineColors = treeColors.toArray();
+  }
+
+  @TearDown
+  public void deleteTree() {
+    sink.close();
+    SyntheticTree.delete(root);
+  }
+
+  @Benchmark
+  public void colorPrinter() {
+    Object out = Truffula.colorPrinter(sink, Truffula.color(0), BUFFER_SIZE);
+    for (int i = 0; i < lines.length; i++) {
+      Truffula.setCurrentColor(out, lineColors[i]);
+      Truffula.println(out, lines[i]);
+    }
+    Truffula.flush(out);
+  }
+
+  @Benchmark
+  public void printTree() {
+    Truffula.printTree(printer);
+  }
+
+  private void collectLines(File directory, String indent, int level, List<String> lines, List<Object> colors) {
+    for (File file : Truffula.sort(directory.listFiles())) {
+      boolean isDirectory = file.isDirectory();
+      lines.add(indent + file.getName() + (isDirectory ? "/" : ""));
+      colors.add(color ? Truffula.color(level) : null);
+      if (isDirectory) {
+        collectLines(file, indent + "   ", level + 1, lines, colors);
+      }
+    }
+  }
+}
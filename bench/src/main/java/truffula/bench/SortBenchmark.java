@@ -0,0 +1,54 @@
+package truffula.bench;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sorts one directory's worth of files, without any disk access.
+ * 
+ * The sort works in place, so each operation sorts a fresh copy of the unsorted
+ * array; copyOnly measures that copy so it can be subtracted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortBenchmark {
+
+  @Param({"16", "1024", "65536"})
+  public int size;
+
+  @Param({"SHORT", "PREFIXED", "MIXED_CASE"})
+  public SyntheticTree.Names names;
+
+  private File[] unsorted;
+
+  @Setup
+  public void createNames() {
+    unsorted = SyntheticTree.names(new File("bench"), size, names);
+  }
+
+  @Benchmark
+  public File[] copyOnly() {
+    return unsorted.clone();
+  }
+
+  @Benchmark
+  public File[] sort() {
+    return Truffula.sort(unsorted.clone());
+  }
+}
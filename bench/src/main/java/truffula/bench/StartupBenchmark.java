@@ -0,0 +1,118 @@
+package truffula.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Starts a fresh JVM running App on a tiny directory and measures the time until
+ * the first line of the tree arrives, which on a tree this small is almost all JVM
+ * startup and class loading.
+ *
+ * - cds=false starts the JVM as a user would by default.
+ * - cds=true starts it with a class-data-sharing archive written once per trial by
+ *   App --create-cds, so the difference is what the archive saves.
+ *
+ * The clock stops at the first line; the child's exit is waited for outside the
+ * measurement. Every operation is a new process, so the numbers are wall-clock
+ * milliseconds and depend on the machine and how busy it is; compare them within
+ * one run. The child uses the same java and the same class path (benchmarks.jar)
+ * as the benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StartupBenchmark {
+
+  @Param({"false", "true"})
+  public boolean cds;
+
+  private File root;
+  private File archive;
+  private List<String> command;
+  private Process process;
+  private BufferedReader output;
+
+  @Setup
+  public void createTree() throws IOException, InterruptedException {
+    root = Files.createTempDirectory("truffula-startup").toFile();
+    File directory = new File(root, "docs");
+    directory.mkdir();
+    new File(directory, "notes.txt").createNewFile();
+    new File(root, "README.md").createNewFile();
+
+    String java = new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath();
+    String classPath = System.getProperty("java.class.path");
+    command = new ArrayList<>();
+    command.add(java);
+    if (cds) {
+      archive = new File(root.getParentFile(), root.getName() + ".jsa");
+      Process training = new ProcessBuilder(java, "-cp", classPath, "App",
+          "--create-cds", archive.getPath(), "-nc", root.getPath())
+          .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+          .redirectError(ProcessBuilder.Redirect.INHERIT)
+          .start();
+      if (training.waitFor() != 0) {
+        throw new IllegalStateException("Could not create " + archive);
+      }
+      command.add("-XX:SharedArchiveFile=" + archive.getPath());
+    }
+    command.add("-cp");
+    command.add(classPath);
+    command.add("App");
+    command.add("-nc");
+    command.add(root.getPath());
+  }
+
+  @TearDown
+  public void deleteTree() {
+    SyntheticTree.delete(root);
+    if (archive != null) {
+      archive.delete();
+    }
+  }
+
+  @Benchmark
+  public String timeToFirstLine() throws IOException {
+    process = new ProcessBuilder(command)
+        .redirectError(ProcessBuilder.Redirect.DISCARD)
+        .start();
+    output = new BufferedReader(new InputStreamReader(process.getInputStream()));
+    String first = output.readLine();
+    if (first == null) {
+      throw new IllegalStateException("App printed nothing");
+    }
+    return first;
+  }
+
+  @TearDown(Level.Invocation)
+  public void awaitExit() throws IOException, InterruptedException {
+    while (output.readLine() != null) {
+      // Drain the rest so the child is not blocked writing.
+    }
+    output.close();
+    process.waitFor();
+  }
+}
@@ -0,0 +1,155 @@
+package truffula.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates reproducible file trees for the benchmarks.
+ * 
+ * Every directory holds {@code files} empty files and, above the bottom level,
+ * {@code branches} subdirectories, so a tree of depth d holds branches^d leaf
+ * directories. A share of the files is hidden. Names are drawn from a seeded random
+ * generator, so the same parameters always produce the same tree.
+ */
+public final class SyntheticTree {
+
+  /**
+   * How generated names look, which decides how much work sorting them takes.
+   */
+  public enum Names {
+    /**
+     * Short lowercase names that differ early, like "k3f.txt".
+     */
+    SHORT,
+
+    /**
+     * Long names sharing a common prefix, like "generated-source-000412-report.txt",
+     * so comparisons have to look far into each name.
+     */
+    PREFIXED,
+
+    /**
+     * Names in random case, many of which differ only in case, so ties have to be
+     * broken by the exact name.
+     */
+    MIXED_CASE
+  }
+
+  private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789";
+  private static final String MIXED_CASE_ALPHABET = "abc";
+
+  private final Names names;
+  private final Random random;
+  private int counter;
+
+  private SyntheticTree(Names names, long seed) {
+    this.names = names;
+    this.random = new Random(seed);
+  }
+
+  /**
+   * Creates a tree on disk.
+   *
+   * @param root        an existing, empty directory to create the tree in
+   * @param depth       the number of directory levels below the root
+   * @param branches    the number of subdirectories per directory
+   * @param files       the number of files per directory
+   * @param hiddenShare the share of files, from 0 to 1, whose name starts with a dot
+   * @param names       how the names look
+   * @return every directory of the tree, the root first
+   * @throws IOException if a file cannot be created
+   */
+  static List<File> create(File root, int depth, int branches, int files, double hiddenShare, Names names)
+      throws IOException {
+    SyntheticTree tree = new SyntheticTree(names, 42);
+    List<File> directories = new ArrayList<>();
+    tree.fill(root, depth, branches, files, hiddenShare, directories);
+    return directories;
+  }
+
+  /**
+   * Creates the File objects of one directory's entries without touching the disk,
+   * for benchmarks that only need names.
+   *
+   * @param parent the directory the files would be in
+   * @param count  the number of files
+   * @param names  how the names look
+   * @return the files, in generation order
+   */
+  static File[] names(File parent, int count, Names names) {
+    SyntheticTree tree = new SyntheticTree(names, 42);
+    File[] files = new File[count];
+    for (int i = 0; i < count; i++) {
+      files[i] = new File(parent, tree.nextName() + ".txt");
+    }
+    return files;
+  }
+
+  /**
+   * Deletes a tree created by {@link #create}, including its root.
+   *
+   * @param root the root of the tree
+   */
+  static void delete(File root) {
+    File[] children = root.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    root.delete();
+  }
+
+  private void fill(File directory, int depth, int branches, int files, double hiddenShare,
+      List<File> directories) throws IOException {
+    directories.add(directory);
+    for (int i = 0; i < files; i++) {
+      String prefix = random.nextDouble() < hiddenShare ? "." : "";
+      File file = new File(directory, prefix + nextName() + ".txt");
+      if (!file.createNewFile()) {
+        i--;
+      }
+    }
+    if (depth == 0) return;
+
+    for (int i = 0; i < branches; i++) {
+      File child = new File(directory, nextName());
+      if (!child.mkdir()) {
+        i--;
+        continue;
+      }
+      fill(child, depth - 1, branches, files, hiddenShare, directories);
+    }
+  }
+
+  private String nextName() {
+    switch (names) {
+      case SHORT:
+        return randomWord(ALPHABET, 3 + random.nextInt(6));
+      case PREFIXED:
+        return String.format("generated-source-%06d-%s", counter++, randomWord(ALPHABET, 6));
+      case MIXED_CASE:
+        // Few distinct letters, so many names differ only in case.
+        String word = randomWord(MIXED_CASE_ALPHABET, 5);
+        StringBuilder name = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+          char c = word.charAt(i);
+          name.append(random.nextBoolean() ? Character.toUpperCase(c) : c);
+        }
+        return name.toString();
+      default:
+        throw new IllegalStateException("Unknown name style: " + names);
+    }
+  }
+
+  private String randomWord(String alphabet, int length) {
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+    }
+    return new String(chars);
+  }
+}
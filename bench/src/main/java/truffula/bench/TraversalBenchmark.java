@@ -0,0 +1,107 @@
+package truffula.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Lists every directory of a synthetic tree once per operation.
+ * 
+ * - listFiles is the bare java.io listing, the floor for the other two.
+ * - readDirectoryAll adds the per-entry snapshot and the sort.
+ * - readDirectoryVisible also drops hidden entries, so its difference to
+ *   readDirectoryAll is the cost (or saving) of hidden filtering.
+ * - readDirectoryInMemory is readDirectoryAll on a MemoryTreeSource copy of the
+ *   tree, which leaves out the system calls.
+ * 
+ * The tree is created once per trial and is in the page cache while measuring, so
+ * these numbers are about CPU and allocation, not disk latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TraversalBenchmark {
+
+  @Param({"4"})
+  public int depth;
+
+  @Param({"4"})
+  public int branches;
+
+  @Param({"16", "256"})
+  public int files;
+
+  @Param({"0.25"})
+  public double hiddenShare;
+
+  @Param({"SHORT", "PREFIXED", "MIXED_CASE"})
+  public SyntheticTree.Names names;
+
+  private File root;
+  private File[] directories;
+  private Object showAll;
+  private Object hideHidden;
+  private Object inMemory;
+
+  @Setup
+  public void createTree() throws IOException {
+    root = Files.createTempDirectory("truffula-bench").toFile();
+    List<File> created = SyntheticTree.create(root, depth, branches, files, hiddenShare, names);
+    directories = created.toArray(new File[0]);
+    showAll = Truffula.options(root, true, false);
+    hideHidden = Truffula.options(root, false, false);
+    inMemory = Truffula.options(Truffula.memoryCopy(root), root, true, false);
+  }
+
+  @TearDown
+  public void deleteTree() {
+    SyntheticTree.delete(root);
+  }
+
+  @Benchmark
+  public void listFiles(Blackhole blackhole) {
+    for (File directory : directories) {
+      blackhole.consume(directory.listFiles());
+    }
+  }
+
+  @Benchmark
+  public void readDirectoryAll(Blackhole blackhole) {
+    for (File directory : directories) {
+      blackhole.consume(Truffula.readDirectory(directory, showAll));
+    }
+  }
+
+  @Benchmark
+  public void readDirectoryVisible(Blackhole blackhole) {
+    for (File directory : directories) {
+      blackhole.consume(Truffula.readDirectory(directory, hideHidden));
+    }
+  }
+
+  @Benchmark
+  public void readDirectoryInMemory(Blackhole blackhole) {
+    for (File directory : directories) {
+      blackhole.consume(Truffula.readDirectory(directory, inMemory));
+    }
+  }
+}
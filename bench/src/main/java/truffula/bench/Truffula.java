@@ -0,0 +1,238 @@
+package truffula.bench;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Entry points into the truffula classes for the benchmarks.
+ * 
+ * The application classes live in the unnamed package, which code in a named package
+ * cannot refer to, and JMH refuses benchmarks in the unnamed package. The classes are
+ * therefore reached through method handles. These are held in static final fields,
+ * which the JIT treats as constants, so a call through one costs the same as a direct
+ * call once the benchmark is warmed up.
+ * 
+ * Truffula objects are passed around as Object.
+ */
+final class Truffula {
+
+  private static final MethodHandle NEW_OPTIONS;
+  private static final MethodHandle NEW_SOURCE_OPTIONS;
+  private static final MethodHandle NEW_MEMORY_SOURCE;
+  private static final MethodHandle ADD_DIRECTORY;
+  private static final MethodHandle ADD_FILE;
+  private static final MethodHandle NEW_PRINTER;
+  private static final MethodHandle PRINT_TREE;
+  private static final MethodHandle READ_DIRECTORY;
+  private static final MethodHandle SORT;
+  private static final MethodHandle NEW_COLOR_PRINTER;
+  private static final MethodHandle SET_CURRENT_COLOR;
+  private static final MethodHandle PRINTLN;
+  private static final MethodHandle FLUSH;
+  private static final Object[] COLORS;
+
+  static {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      Class<?> options = Class.forName("TruffulaOptions");
+      Class<?> printer = Class.forName("TruffulaPrinter");
+      Class<?> lister = Class.forName("DirectoryLister");
+      Class<?> entry = Class.forName("FileEntry");
+      Class<?> sorter = Class.forName("AlphabeticalFileSorter");
+      Class<?> colorPrinter = Class.forName("ColorPrinter");
+      Class<?> color = Class.forName("ConsoleColor");
+      Class<?> source = Class.forName("TreeSource");
+      Class<?> memorySource = Class.forName("MemoryTreeSource");
+
+      NEW_OPTIONS = lookup.findConstructor(options,
+              MethodType.methodType(void.class, File.class, boolean.class, boolean.class))
+          .asType(MethodType.methodType(Object.class, File.class, boolean.class, boolean.class));
+      NEW_SOURCE_OPTIONS = lookup.findConstructor(options,
+              MethodType.methodType(void.class, source, File.class, boolean.class, boolean.class))
+          .asType(MethodType.methodType(Object.class, Object.class, File.class, boolean.class, boolean.class));
+      NEW_MEMORY_SOURCE = lookup.findConstructor(memorySource, MethodType.methodType(void.class, File.class))
+          .asType(MethodType.methodType(Object.class, File.class));
+      ADD_DIRECTORY = lookup.findVirtual(memorySource, "addDirectory", MethodType.methodType(void.class, File.class))
+          .asType(MethodType.methodType(void.class, Object.class, File.class));
+      ADD_FILE = lookup.findVirtual(memorySource, "addFile", MethodType.methodType(void.class, File.class, long.class))
+          .asType(MethodType.methodType(void.class, Object.class, File.class, long.class));
+      NEW_PRINTER = lookup.findConstructor(printer, MethodType.methodType(void.class, options, PrintStream.class))
+          .asType(MethodType.methodType(Object.class, Object.class, PrintStream.class));
+      PRINT_TREE = lookup.findVirtual(printer, "printTree", MethodType.methodType(void.class))
+          .asType(MethodType.methodType(void.class, Object.class));
+      // readDirectory is package-private; the unnamed package is open to this module.
+      READ_DIRECTORY = MethodHandles.privateLookupIn(lister, lookup)
+          .findStatic(lister, "readDirectory",
+              MethodType.methodType(entry.arrayType(), File.class, options))
+          .asType(MethodType.methodType(Object[].class, File.class, Object.class));
+      SORT = lookup.findStatic(sorter, "sort", MethodType.methodType(File[].class, File[].class));
+      NEW_COLOR_PRINTER = lookup.findConstructor(colorPrinter,
+              MethodType.methodType(void.class, PrintStream.class, color, int.class))
+          .asType(MethodType.methodType(Object.class, PrintStream.class, Object.class, int.class));
+      SET_CURRENT_COLOR = lookup.findVirtual(colorPrinter, "setCurrentColor", MethodType.methodType(void.class, color))
+          .asType(MethodType.methodType(void.class, Object.class, Object.class));
+      PRINTLN = lookup.findVirtual(colorPrinter, "println", MethodType.methodType(void.class, String.class))
+          .asType(MethodType.methodType(void.class, Object.class, String.class));
+      FLUSH = lookup.findVirtual(colorPrinter, "flush", MethodType.methodType(void.class))
+          .asType(MethodType.methodType(void.class, Object.class));
+      COLORS = color.getEnumConstants();
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private Truffula() {
+  }
+
+  /**
+   * Returns new TruffulaOptions(root, showHidden, useColor).
+   */
+  static Object options(File root, boolean showHidden, boolean useColor) {
+    try {
+      return (Object) NEW_OPTIONS.invokeExact(root, showHidden, useColor);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /**
+   * Returns new TruffulaOptions(source, root, showHidden, useColor).
+   */
+  static Object options(Object source, File root, boolean showHidden, boolean useColor) {
+    try {
+      return (Object) NEW_SOURCE_OPTIONS.invokeExact(source, root, showHidden, useColor);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /**
+   * Returns a new MemoryTreeSource holding a copy of the tree on disk below root.
+   */
+  static Object memoryCopy(File root) {
+    try {
+      Object source = (Object) NEW_MEMORY_SOURCE.invokeExact(root);
+      copy(source, root);
+      return source;
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  private static void copy(Object source, File directory) throws Throwable {
+    for (File file : directory.listFiles()) {
+      if (file.isDirectory()) {
+        ADD_DIRECTORY.invokeExact(source, file);
+        copy(source, file);
+      } else {
+        ADD_FILE.invokeExact(source, file, file.length());
+      }
+    }
+  }
+
+  /**
+   * Returns new TruffulaPrinter(options, out).
+   */
+  static Object printer(Object options, PrintStream out) {
+    try {
+      return (Object) NEW_PRINTER.invokeExact(options, out);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /**
+   * Calls printTree() on a TruffulaPrinter.
+   */
+  static void printTree(Object printer) {
+    try {
+      PRINT_TREE.invokeExact(printer);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /**
+   * Calls DirectoryLister.readDirectory(directory, options).
+   */
+  static Object[] readDirectory(File directory, Object options) {
+    try {
+      return (Object[]) READ_DIRECTORY.invokeExact(directory, options);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /**
+   * Calls AlphabeticalFileSorter.sort(files).
+   */
+  static File[] sort(File[] files) {
+    try {
+      return (File[]) SORT.invokeExact(files);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /**
+   * Returns new ColorPrinter(out, color, bufferSize).
+   */
+  static Object colorPrinter(PrintStream out, Object color, int bufferSize) {
+    try {
+      return (Object) NEW_COLOR_PRINTER.invokeExact(out, color, bufferSize);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /**
+   * Calls setCurrentColor(color) on a ColorPrinter.
+   */
+  static void setCurrentColor(Object printer, Object color) {
+    try {
+      SET_CURRENT_COLOR.invokeExact(printer, color);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /**
+   * Calls println(message) on a ColorPrinter.
+   */
+  static void println(Object printer, String message) {
+    try {
+      PRINTLN.invokeExact(printer, message);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /**
+   * Calls flush() on a ColorPrinter.
+   */
+  static void flush(Object printer) {
+    try {
+      FLUSH.invokeExact(printer);
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  /**
+   * Returns ConsoleColor.values()[index % count], skipping RESET.
+   */
+  static Object color(int index) {
+    Object[] colors = COLORS;
+    int count = colors.length - 1;
+    return colors[index % count];
+  }
+
+  private static RuntimeException rethrow(Throwable e) {
+    if (e instanceof RuntimeException runtime) return runtime;
+    if (e instanceof Error error) throw error;
+    return new IllegalStateException(e);
+  }
+}
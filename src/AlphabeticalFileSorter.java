@@ -1,12 +1,34 @@
 import java.io.File;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.PriorityQueue;
 
 /**
  * Utility class for sorting an array of files alphabetically by name, 
  * ignoring case differences.
+ * 
+ * Names that are equal ignoring case are ordered by their exact name, so
+ * "Cat.png" comes before "cat.png" and the order never depends on the order
+ * the filesystem listed the entries in.
+ * 
+ * Each name is case-folded once into a sort key, and the sort compares the
+ * keys instead of folding both names again on every comparison. Small
+ * directories are sorted with Arrays.sort. Large directories are sorted with
+ * a three-way radix quicksort, which examines each character of a key only
+ * a few times instead of comparing whole names from the start over and over.
  */
 public class AlphabeticalFileSorter {
 
+  /**
+   * Directories with at least this many entries are sorted with the radix quicksort.
+   */
+  static final int RADIX_THRESHOLD = 4096;
+
+  /**
+   * Ranges smaller than this are finished with insertion sort inside the radix quicksort.
+   */
+  private static final int INSERTION_CUTOFF = 16;
+
   /**
    * Sorts an array of files alphabetically by name, ignoring case.
    *
@@ -14,9 +36,244 @@ public class AlphabeticalFileSorter {
    * @return the sorted array of files
    */
   public static File[] sort(File[] files) {
-    // This uses lambdas, which we haven't yet covered
-    // Look at it with curiosity, but you don't need to edit anything here
-    Arrays.sort(files, (f1, f2) -> f1.getName().compareToIgnoreCase(f2.getName()));
+    String[] names = new String[files.length];
+    for (int i = 0; i < files.length; i++) {
+      names[i] = files[i].getName();
+    }
+    sortByName(names, files);
     return files;
   }
+
+  /**
+   * Sorts an array of file entries alphabetically by name, ignoring case.
+   *
+   * @param entries the array of entries to be sorted
+   * @return the sorted array of entries
+   */
+  public static FileEntry[] sort(FileEntry[] entries) {
+    String[] names = new String[entries.length];
+    for (int i = 0; i < entries.length; i++) {
+      names[i] = entries[i].getName();
+    }
+    sortByName(names, entries);
+    return entries;
+  }
+
+  /**
+   * Returns the first k files in sorted order, without sorting the rest. Selection
+   * keeps a heap of the k best files seen so far, so it takes O(n log k) comparisons
+   * on precomputed keys instead of sorting all n names.
+   *
+   * @param files the files to choose from; not modified
+   * @param k     the number of files to return
+   * @return the first k files in sorted order, or all files sorted if there are fewer
+   */
+  public static File[] sortTop(File[] files, int k) {
+    String[] names = new String[files.length];
+    for (int i = 0; i < files.length; i++) {
+      names[i] = files[i].getName();
+    }
+    return selectTop(names, files, new File[Math.min(k, files.length)]);
+  }
+
+  /**
+   * Returns the first k entries in sorted order, without sorting the rest.
+   *
+   * @param entries the entries to choose from; not modified
+   * @param k       the number of entries to return
+   * @return the first k entries in sorted order, or all entries sorted if there are fewer
+   */
+  public static FileEntry[] sortTop(FileEntry[] entries, int k) {
+    String[] names = new String[entries.length];
+    for (int i = 0; i < entries.length; i++) {
+      names[i] = entries[i].getName();
+    }
+    return selectTop(names, entries, new FileEntry[Math.min(k, entries.length)]);
+  }
+
+  /**
+   * Fills top with the first top.length items in sorted order.
+   */
+  private static <T> T[] selectTop(String[] names, T[] items, T[] top) {
+    int k = top.length;
+    if (k == 0) return top;
+
+    TruffulaEvents.Sort event = TruffulaEvents.beginSort();
+
+    PriorityQueue<Keyed> best = new PriorityQueue<>(k + 1, Collections.reverseOrder());
+    for (int i = 0; i < items.length; i++) {
+      Keyed candidate = new Keyed(foldKey(names[i]), names[i], items[i]);
+      if (best.size() < k) {
+        best.add(candidate);
+      } else if (candidate.compareTo(best.peek()) < 0) {
+        best.poll();
+        best.add(candidate);
+      }
+    }
+
+    for (int i = k - 1; i >= 0; i--) {
+      @SuppressWarnings("unchecked")
+      T item = (T) best.poll().item;
+      top[i] = item;
+    }
+
+    if (event != null && event.shouldCommit()) {
+      event.size = items.length;
+      event.kept = k;
+      event.commit();
+    }
+    return top;
+  }
+
+  /**
+   * Folds a name to the key it is sorted by. Comparing two keys with
+   * String.compareTo gives the same order as comparing the names with
+   * String.compareToIgnoreCase.
+   *
+   * @param name the name to fold
+   * @return the folded key
+   */
+  static String foldKey(String name) {
+    StringBuilder key = null;
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      char folded = Character.toLowerCase(Character.toUpperCase(c));
+      if (folded != c && key == null) {
+        key = new StringBuilder(name.length()).append(name, 0, i);
+      }
+      if (key != null) {
+        key.append(folded);
+      }
+    }
+    return key == null ? name : key.toString();
+  }
+
+  /**
+   * Sorts names and the items they belong to together.
+   */
+  private static void sortByName(String[] names, Object[] items) {
+    int n = names.length;
+    if (n < 2) return;
+
+    TruffulaEvents.Sort event = TruffulaEvents.beginSort();
+
+    String[] keys = new String[n];
+    for (int i = 0; i < n; i++) {
+      keys[i] = foldKey(names[i]);
+    }
+
+    if (n >= RADIX_THRESHOLD) {
+      radixQuicksort(keys, names, items, 0, n - 1, 0);
+    } else {
+      Keyed[] keyed = new Keyed[n];
+      for (int i = 0; i < n; i++) {
+        keyed[i] = new Keyed(keys[i], names[i], items[i]);
+      }
+      Arrays.sort(keyed);
+      for (int i = 0; i < n; i++) {
+        items[i] = keyed[i].item;
+      }
+    }
+
+    if (event != null && event.shouldCommit()) {
+      event.size = n;
+      event.kept = n;
+      event.commit();
+    }
+  }
+
+  /**
+   * A precomputed key, the exact name for ties, and the item they belong to.
+   */
+  private static class Keyed implements Comparable<Keyed> {
+    private final String key;
+    private final String name;
+    private final Object item;
+
+    Keyed(String key, String name, Object item) {
+      this.key = key;
+      this.name = name;
+      this.item = item;
+    }
+
+    @Override
+    public int compareTo(Keyed other) {
+      int result = key.compareTo(other.key);
+      return result != 0 ? result : name.compareTo(other.name);
+    }
+  }
+
+  /**
+   * Three-way radix quicksort of keys[lo..hi], which all share their first d chars.
+   * Ranges whose keys are fully equal are ordered by exact name.
+   */
+  private static void radixQuicksort(String[] keys, String[] names, Object[] items, int lo, int hi, int d) {
+    while (hi - lo >= INSERTION_CUTOFF) {
+      swap(keys, names, items, lo, lo + (hi - lo) / 2);
+      int pivot = charAt(keys[lo], d);
+      int lt = lo;
+      int gt = hi;
+      int i = lo + 1;
+      while (i <= gt) {
+        int c = charAt(keys[i], d);
+        if (c < pivot) {
+          swap(keys, names, items, lt++, i++);
+        } else if (c > pivot) {
+          swap(keys, names, items, i, gt--);
+        } else {
+          i++;
+        }
+      }
+
+      radixQuicksort(keys, names, items, lo, lt - 1, d);
+      if (pivot >= 0) {
+        radixQuicksort(keys, names, items, lt, gt, d + 1);
+      } else {
+        insertionSort(keys, names, items, lt, gt, d);
+      }
+      lo = gt + 1;
+    }
+    insertionSort(keys, names, items, lo, hi, d);
+  }
+
+  /**
+   * Insertion sort of keys[lo..hi], which all share their first d chars, breaking
+   * ties by exact name.
+   */
+  private static void insertionSort(String[] keys, String[] names, Object[] items, int lo, int hi, int d) {
+    for (int i = lo + 1; i <= hi; i++) {
+      for (int j = i; j > lo && less(keys, names, j, j - 1, d); j--) {
+        swap(keys, names, items, j, j - 1);
+      }
+    }
+  }
+
+  private static boolean less(String[] keys, String[] names, int a, int b, int d) {
+    String keyA = keys[a];
+    String keyB = keys[b];
+    int length = Math.min(keyA.length(), keyB.length());
+    for (int i = d; i < length; i++) {
+      char ca = keyA.charAt(i);
+      char cb = keyB.charAt(i);
+      if (ca != cb) return ca < cb;
+    }
+    if (keyA.length() != keyB.length()) return keyA.length() < keyB.length();
+    return names[a].compareTo(names[b]) < 0;
+  }
+
+  private static int charAt(String key, int d) {
+    return d < key.length() ? key.charAt(d) : -1;
+  }
+
+  private static void swap(String[] keys, String[] names, Object[] items, int a, int b) {
+    String key = keys[a];
+    keys[a] = keys[b];
+    keys[b] = key;
+    String name = names[a];
+    names[a] = names[b];
+    names[b] = name;
+    Object item = items[a];
+    items[a] = items[b];
+    items[b] = item;
+  }
 }
@@ -0,0 +1,112 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AlphabeticalFileSorterTest {
+
+  private static final Comparator<String> DOCUMENTED_ORDER =
+      String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+  private static final String ALPHABET = "aAbBcCzZ09._-µéÉßÿİıΣσς";
+
+  private static String[] randomNames(int count, long seed) {
+    Random random = new Random(seed);
+    String[] names = new String[count];
+    for (int i = 0; i < count; i++) {
+      int length = 1 + random.nextInt(8);
+      StringBuilder name = new StringBuilder("common-prefix-");
+      for (int j = 0; j < length; j++) {
+        name.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+      }
+      names[i] = name.toString();
+    }
+    return names;
+  }
+
+  private static String[] sortedNames(String[] names) {
+    FileEntry[] entries = new FileEntry[names.length];
+    for (int i = 0; i < names.length; i++) {
+      entries[i] = new FileEntry(new File(names[i]), false, 0, 0, 0, null);
+    }
+    AlphabeticalFileSorter.sort(entries);
+    return Arrays.stream(entries).map(FileEntry::getName).toArray(String[]::new);
+  }
+
+  @Test
+  void testSortsIgnoringCaseWithExactNameTieBreak() {
+    String[] names = {"cat.png", "Dog.png", "Cat.png", "apple.txt", "CAT.png", "banana.txt"};
+
+    assertArrayEquals(
+        new String[]{"apple.txt", "banana.txt", "CAT.png", "Cat.png", "cat.png", "Dog.png"},
+        sortedNames(names));
+  }
+
+  @Test
+  void testFileArraySortUsesSameOrder() {
+    File[] files = {new File("cat.png"), new File("Dog.png"), new File("Cat.png")};
+
+    AlphabeticalFileSorter.sort(files);
+
+    assertArrayEquals(new File[]{new File("Cat.png"), new File("cat.png"), new File("Dog.png")}, files);
+  }
+
+  @Test
+  void testFoldedKeysCompareLikeCompareToIgnoreCase() {
+    String[] names = randomNames(2000, 42);
+    for (int i = 1; i < names.length; i++) {
+      int expected = Integer.signum(names[i - 1].compareToIgnoreCase(names[i]));
+      int actual = Integer.signum(
+          AlphabeticalFileSorter.foldKey(names[i - 1]).compareTo(AlphabeticalFileSorter.foldKey(names[i])));
+      assertEquals(expected, actual, names[i - 1] + " vs " + names[i]);
+    }
+  }
+
+  @Test
+  void testSmallDirectoryMatchesDocumentedOrder() {
+    String[] names = randomNames(AlphabeticalFileSorter.RADIX_THRESHOLD - 1, 7);
+    String[] expected = names.clone();
+    Arrays.sort(expected, DOCUMENTED_ORDER);
+
+    assertArrayEquals(expected, sortedNames(names));
+  }
+
+  @Test
+  void testLargeDirectoryMatchesDocumentedOrder() {
+    String[] names = randomNames(AlphabeticalFileSorter.RADIX_THRESHOLD * 10, 11);
+    String[] expected = names.clone();
+    Arrays.sort(expected, DOCUMENTED_ORDER);
+
+    assertArrayEquals(expected, sortedNames(names));
+  }
+
+  @Test
+  void testOrderDoesNotDependOnInputOrder() {
+    String[] names = randomNames(AlphabeticalFileSorter.RADIX_THRESHOLD * 2, 3);
+    String[] reversed = names.clone();
+    for (int i = 0; i < reversed.length / 2; i++) {
+      String swap = reversed[i];
+      reversed[i] = reversed[reversed.length - 1 - i];
+      reversed[reversed.length - 1 - i] = swap;
+    }
+
+    assertArrayEquals(sortedNames(names), sortedNames(reversed));
+  }
+
+  @Test
+  void testSortTopReturnsSortedPrefix() {
+    String[] names = randomNames(5000, 5);
+    File[] files = Arrays.stream(names).map(File::new).toArray(File[]::new);
+    File[] sorted = AlphabeticalFileSorter.sort(files.clone());
+
+    for (int k : new int[]{1, 10, 4999, 5000, 6000}) {
+      File[] top = AlphabeticalFileSorter.sortTop(files, k);
+      assertArrayEquals(Arrays.copyOf(sorted, Math.min(k, sorted.length)), top, "k=" + k);
+    }
+  }
+}
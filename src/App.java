@@ -13,14 +13,65 @@ public class App {
    * 
    * Usage Example:
    * 
-   * Arguments Format: [-h] [-nc] path
+   * Arguments Format: [-h] [-nc] [-s] [-D] [-p] [-w] [--du] [-L depth] [--max-entries count]
+   *                   [--include glob]... [--exclude glob]... [--gitignore]
+   *                   [-j threads] [--prefetch dirs] [--cache file] [--stats]
+   *                   [--format text|json|ndjson] [-o file [--gzip]]
+   *                   [--follow | --no-follow] [-i] [--time-budget millis]
+   *                   [--level-order | --by-level] path...
+   * 
+   *                   --daemon [--port port] [--cache-entries count]
+   *                   --connect [--port port] arguments... path...
+   *                   --create-cds archive [arguments... path]
    * 
    * Flags:
    * - -h   : Show hidden files (defaults to false).
    * - -nc  : Do not use color (color is enabled by default).
+   * - -s   : Show the size of each entry in bytes.
+   * - -D   : Show the last-modified time of each entry.
+   * - -p   : Show whether the current user can read, write and execute each entry.
+   * - -w   : Keep printing the tree as it changes until interrupted.
+   * - --du : Show each directory with the total size of the files below it. Hard
+   *          links are counted once per link.
+   * - -L N : Descend at most N levels below the root.
+   * - --max-entries K : Print at most the first K entries of each directory.
+   * - --include GLOB : Print only files matching GLOB; may be repeated.
+   * - --exclude GLOB : Leave out entries matching GLOB; may be repeated.
+   * - --gitignore : Leave out entries ignored by .gitignore files in the tree.
+   * - -j N : List and sort directories on N worker threads (defaults to 1).
+   * - --prefetch N : List up to N directories ahead of the printer (off by default).
+   * - --cache FILE : Reuse directory listings cached in FILE by earlier runs.
+   * - --stats : After the tree, print counters and per-phase times to stderr.
+   * - --format F : Print as text (the default), a JSON array (json) or JSON lines (ndjson).
+   * - -o FILE : Write the output to FILE, without color.
+   * - --gzip : Compress the output file with gzip on a separate thread. Not with -w.
+   * - --follow : Follow symbolic links to directories, cutting loops (the default).
+   * - --no-follow : Do not follow symbolic links to directories.
+   * - -i   : Browse the tree interactively, expanding directories by number.
+   * - --time-budget MS : Print what can be read breadth-first in MS milliseconds.
+   * - --level-order : List each level of the tree as one parallel batch.
+   * - --by-level : Print the tree level by level, each entry as its path.
+   * 
+   * Daemon:
+   * - --daemon : Keep running and print trees for clients on a loopback port
+   *              (7367 unless --port is given), with a shared cache of listings
+   *              holding up to --cache-entries entries.
+   * - --connect : Have the daemon print the tree for the remaining arguments.
+   * - The port is open to every local user, and the daemon can list anything its
+   *   owner can read. Requests must carry the token the daemon writes to
+   *   ~/.truffula/daemon-PORT.token, which only its owner can read.
+   * 
+   * Fast start:
+   * - --create-cds : Write a class-data-sharing archive of the truffula classes from
+   *                  a training run with the remaining arguments, and print the
+   *                  java command that starts faster with it.
    * 
    * Path:
    * - The absolute or relative path to the directory whose contents will be printed.
+   * - Or the path to a zip, jar, war or ear archive, printed without extracting it.
+   * - Several paths are read at the same time and printed in argument order, each
+   *   under a "path:" header; with --time-budget, all within one budget. With
+   *   --prefetch or --by-level they are read one after another.
    * 
    * Behavior:
    * - If color is disabled, all text will be printed in white.
@@ -47,10 +98,45 @@ public class App {
     // Then, call printTree on the TruffulaPrinter
 
 
+    if (args.length > 0 && (args[0].equals("--daemon") || args[0].equals("--connect"))) {
+      TruffulaDaemon.run(args);
+      return;
+    }
+    if (args.length > 0 && args[0].equals("--create-cds")) {
+      StartupArchive.run(args);
+      return;
+    }
+
     TruffulaOptions options = new TruffulaOptions(args);
 
-    TruffulaPrinter printer = new TruffulaPrinter(options);
-   
-    printer.printTree();
+    if (options.isInteractive()) {
+      new TreeBrowser(options).run();
+      return;
+    }
+    if (options.getOutputFile() == null) {
+      run(options, new TruffulaPrinter(options));
+      return;
+    }
+    try (FileSink sink = new FileSink(options.getOutputFile(), options.isGzip())) {
+      run(options, new TruffulaPrinter(options, sink));
+    }
+  }
+
+  /**
+   * Prints the tree once, or keeps printing it in watch mode, then reports stats.
+   *
+   * @param options the parsed options
+   * @param printer the printer to print with
+   * @throws InterruptedException if watch mode is interrupted
+   */
+  private static void run(TruffulaOptions options, TruffulaPrinter printer) throws InterruptedException {
+    if (options.isWatch()) {
+      printer.watchTree();
+    } else {
+      printer.printTree();
+      if (options.getStats() != null) {
+        options.getStats().print(System.err);
+      }
+    }
   }
 }
@@ -0,0 +1,95 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A TreeSource showing the contents of a zip or jar archive as a directory tree
+ * rooted at the archive's path, without extracting anything.
+ *
+ * Only the archive's central directory is read: the names, sizes and times of the
+ * entries are all recorded there, so no entry data is read or inflated, however
+ * large the archive. The tree is held in a MemoryTreeSource. Sizes are the
+ * uncompressed sizes the central directory records.
+ *
+ * Directories that only appear as part of an entry's path get the archive's own
+ * last-modified time. Entries whose path clashes with another entry, such as a
+ * file and a directory of the same name, are left out.
+ */
+public final class ArchiveTreeSource extends MemoryTreeSource {
+
+  /**
+   * The extensions, in lower case, of files that are shown as archives.
+   */
+  private static final String[] EXTENSIONS = {".zip", ".jar", ".war", ".ear"};
+
+  /**
+   * Reads the central directory of an archive.
+   *
+   * @param archive the archive file
+   * @throws IOException if the archive cannot be opened or is not a zip archive
+   */
+  public ArchiveTreeSource(File archive) throws IOException {
+    super(archive);
+    long archiveTime = archive.lastModified();
+    Set<File> directories = new HashSet<>();
+
+    try (ZipFile zip = new ZipFile(archive)) {
+      for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements();) {
+        ZipEntry entry = entries.nextElement();
+        File file = new File(archive, entry.getName());
+        if (!isInside(archive, file)) continue;
+        try {
+          if (entry.isDirectory()) {
+            addDirectory(file);
+          } else {
+            addFile(file, Math.max(entry.getSize(), 0));
+          }
+        } catch (IllegalArgumentException e) {
+          continue;
+        }
+        for (File parent = file.getParentFile(); isInside(archive, parent); parent = parent.getParentFile()) {
+          if (!directories.add(parent)) break;
+        }
+      }
+
+      // Adding entries moved their parents' times, so every time is set afterwards.
+      setLastModified(archive, archiveTime);
+      for (File directory : directories) {
+        setLastModified(directory, archiveTime);
+      }
+      for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements();) {
+        ZipEntry entry = entries.nextElement();
+        if (entry.getTime() != -1) {
+          setLastModified(new File(archive, entry.getName()), entry.getTime());
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests whether a path names a file that is shown as an archive.
+   *
+   * @param file the path to test
+   * @return true if it is a file with a zip, jar, war or ear extension
+   */
+  public static boolean isArchive(File file) {
+    String name = file.getName().toLowerCase(Locale.ROOT);
+    for (String extension : EXTENSIONS) {
+      if (name.endsWith(extension)) return file.isFile();
+    }
+    return false;
+  }
+
+  /**
+   * Tests whether a path lies strictly below the archive's root.
+   */
+  private static boolean isInside(File archive, File file) {
+    return file != null && file.getPath().length() > archive.getPath().length()
+        && file.getPath().startsWith(archive.getPath());
+  }
+}
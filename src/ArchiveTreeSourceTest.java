@@ -0,0 +1,89 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ArchiveTreeSourceTest {
+
+  static File createJar(File parent) throws IOException {
+    File jar = new File(parent, "app.jar");
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jar))) {
+      ZipEntry manifest = new ZipEntry("META-INF/MANIFEST.MF");
+      manifest.setTime(1_000_000_000_000L);
+      zip.putNextEntry(manifest);
+      zip.write("Manifest-Version: 1.0\n".getBytes());
+      zip.closeEntry();
+      zip.putNextEntry(new ZipEntry("com/example/"));
+      zip.closeEntry();
+      zip.putNextEntry(new ZipEntry("com/example/Main.class"));
+      zip.write(new byte[1000]);
+      zip.closeEntry();
+      zip.putNextEntry(new ZipEntry("com/example/util/.hidden"));
+      zip.closeEntry();
+    }
+    return jar;
+  }
+
+  private static String[] sortedList(TreeSource source, File directory) {
+    String[] names = source.list(directory);
+    Arrays.sort(names);
+    return names;
+  }
+
+  @Test
+  void testEntriesFormATreeBelowTheArchive(@TempDir File tempDir) throws IOException {
+    File jar = createJar(tempDir);
+
+    ArchiveTreeSource source = new ArchiveTreeSource(jar);
+
+    assertTrue(source.isDirectory(jar));
+    assertArrayEquals(new String[]{"META-INF", "com"}, sortedList(source, jar));
+    assertArrayEquals(new String[]{"Main.class", "util"}, sortedList(source, new File(jar, "com/example")));
+    assertTrue(source.isDirectory(new File(jar, "com/example/util")));
+    assertFalse(source.isDirectory(new File(jar, "com/example/Main.class")));
+  }
+
+  @Test
+  void testSizesAndTimesComeFromTheCentralDirectory(@TempDir File tempDir) throws IOException {
+    File jar = createJar(tempDir);
+
+    ArchiveTreeSource source = new ArchiveTreeSource(jar);
+
+    assertEquals(1000, source.length(new File(jar, "com/example/Main.class")));
+    assertEquals(1_000_000_000_000L, source.lastModified(new File(jar, "META-INF/MANIFEST.MF")));
+    // META-INF has no entry of its own, so it takes the archive's time.
+    assertEquals(jar.lastModified(), source.lastModified(new File(jar, "META-INF")));
+  }
+
+  @Test
+  void testIsArchive(@TempDir File tempDir) throws IOException {
+    File jar = createJar(tempDir);
+    File text = new File(tempDir, "notes.txt");
+    text.createNewFile();
+
+    assertTrue(ArchiveTreeSource.isArchive(jar));
+    assertFalse(ArchiveTreeSource.isArchive(text));
+    assertFalse(ArchiveTreeSource.isArchive(new File(tempDir, "missing.zip")));
+  }
+
+  @Test
+  void testCorruptArchiveIsRejected(@TempDir File tempDir) throws IOException {
+    File zip = new File(tempDir, "broken.zip");
+    try (FileOutputStream out = new FileOutputStream(zip)) {
+      out.write("not a zip".getBytes());
+    }
+
+    assertThrows(IOException.class, () -> new ArchiveTreeSource(zip));
+  }
+}
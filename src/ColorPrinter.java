@@ -16,6 +16,17 @@ import java.io.PrintStream;
  * printer.println("This is red text");
  * 
  * The printed text will appear in the terminal with the specified colors if the terminal supports ANSI codes.
+ * 
+ * Buffered Mode:
+ * 
+ * When constructed with a buffer size, the printer copies escape codes and messages into
+ * a reusable char buffer and writes it to the PrintStream in large blocks instead of making
+ * one call per message. It also leaves out a RESET that would be followed straight away by
+ * the same color again, so runs of lines in one color share a single pair of codes. The
+ * terminal shows exactly the same thing either way. Call flush() when done printing.
+ * 
+ * A printer constructed with a FileSink instead of a PrintStream is always buffered
+ * and hands its buffer straight to the sink.
  */
 public class ColorPrinter {
   /**
@@ -28,6 +39,50 @@ public class ColorPrinter {
    */
   private final PrintStream printStream;
 
+  /**
+   * The file the output is written to instead of a PrintStream, or null.
+   */
+  private final FileSink sink;
+
+  /**
+   * Pending output in buffered mode, or null if every print goes straight to the stream.
+   */
+  private final char[] buffer;
+
+  /**
+   * The number of chars in the buffer that have not been written yet.
+   */
+  private int buffered;
+
+  /**
+   * The color the terminal is in at the end of the buffered output, or null if it
+   * is in the default color.
+   */
+  private ConsoleColor activeColor;
+
+  /**
+   * Whether a RESET is due that has not been written yet, because the next print
+   * may continue in the same color.
+   */
+  private boolean resetOwed;
+
+  /**
+   * Escape codes of every ConsoleColor as chars, indexed by ordinal, so buffered
+   * printing never has to look them up or convert them.
+   */
+  private static final char[][] ESCAPES = new char[ConsoleColor.values().length][];
+
+  /**
+   * The platform line separator as chars.
+   */
+  private static final char[] LINE_SEPARATOR = System.lineSeparator().toCharArray();
+
+  static {
+    for (ConsoleColor color : ConsoleColor.values()) {
+      ESCAPES[color.ordinal()] = color.getCode().toCharArray();
+    }
+  }
+
   /**
    * Returns the current color set for the printer.
    * 
@@ -65,6 +120,10 @@ public class ColorPrinter {
    * @param reset   if true, resets the color after printing; if false, keeps the current color
    */
   public void println(String message, boolean reset) {
+    if (buffer != null) {
+      bufferMessage(message, LINE_SEPARATOR, reset);
+      return;
+    }
     print(message + System.lineSeparator(), reset);
   }
 
@@ -75,7 +134,9 @@ public class ColorPrinter {
    * @param message the message to print
    */
   public void print(String message) {
-    if (currentColor == null) {
+    if (buffer != null) {
+      bufferMessage(message, null, true);
+    } else if (currentColor == null) {
       printStream.print(message);
     } else {
       printStream.print(currentColor + message + ConsoleColor.RESET);
@@ -90,9 +151,9 @@ public class ColorPrinter {
    * @param reset   if true, resets the color after printing; if false, keeps the current color
    */
   public void print(String message, boolean reset) {
-    // TODO: Implement this!
-    
-    if (currentColor == null) {
+    if (buffer != null) {
+      bufferMessage(message, null, reset);
+    } else if (currentColor == null) {
       printStream.print(message);
     } else {
       printStream.print(currentColor + message);
@@ -101,6 +162,134 @@ public class ColorPrinter {
       }
     }
   }
+  /**
+   * Prints the text held in a StringBuilder or other CharSequence in the current
+   * color, resetting the color afterwards. In buffered mode the chars are copied
+   * straight into the buffer, so a builder reused for every line costs no String.
+   *
+   * @param message the text to print
+   */
+  public void print(CharSequence message) {
+    if (buffer != null) {
+      bufferMessage(message, null, true);
+    } else {
+      print(message.toString());
+    }
+  }
+
+  /**
+   * Prints the text held in a StringBuilder or other CharSequence followed by a
+   * newline in the current color, resetting the color afterwards.
+   *
+   * @param message the text to print
+   */
+  public void println(CharSequence message) {
+    if (buffer != null) {
+      bufferMessage(message, LINE_SEPARATOR, true);
+    } else {
+      println(message.toString());
+    }
+  }
+
+  /**
+   * Writes any buffered output, including a RESET that is still due, to the
+   * PrintStream and flushes it. Does nothing beyond flushing the stream when the
+   * printer is not buffered.
+   */
+  public void flush() {
+    if (buffer != null) {
+      if (resetOwed) {
+        append(ESCAPES[ConsoleColor.RESET.ordinal()]);
+        resetOwed = false;
+        activeColor = null;
+      }
+      writeBuffer();
+    }
+    if (sink != null) {
+      sink.flush();
+    } else {
+      printStream.flush();
+    }
+  }
+
+  /**
+   * Copies a message into the buffer, preceded by whatever escape codes are needed
+   * to show it in the current color.
+   *
+   * @param message the message to print
+   * @param suffix  chars to print after the message, or null
+   * @param reset   whether the color should be reset after the message
+   */
+  private void bufferMessage(CharSequence message, char[] suffix, boolean reset) {
+    if (currentColor == null) {
+      if (resetOwed) {
+        append(ESCAPES[ConsoleColor.RESET.ordinal()]);
+        resetOwed = false;
+        activeColor = null;
+      }
+    } else {
+      if (activeColor != currentColor) {
+        if (resetOwed) {
+          append(ESCAPES[ConsoleColor.RESET.ordinal()]);
+        }
+        append(ESCAPES[currentColor.ordinal()]);
+        activeColor = currentColor;
+      }
+      resetOwed = reset;
+    }
+
+    append(message);
+    if (suffix != null) {
+      append(suffix);
+    }
+  }
+
+  private void append(char[] chars) {
+    if (chars.length > buffer.length - buffered) {
+      writeBuffer();
+    }
+    System.arraycopy(chars, 0, buffer, buffered, chars.length);
+    buffered += chars.length;
+  }
+
+  private void append(CharSequence message) {
+    int length = message.length();
+    int start = 0;
+    while (start < length) {
+      if (buffered == buffer.length) {
+        writeBuffer();
+      }
+      int end = Math.min(length, start + buffer.length - buffered);
+      if (message instanceof String string) {
+        string.getChars(start, end, buffer, buffered);
+      } else if (message instanceof StringBuilder builder) {
+        builder.getChars(start, end, buffer, buffered);
+      } else {
+        for (int i = start; i < end; i++) {
+          buffer[buffered + i - start] = message.charAt(i);
+        }
+      }
+      buffered += end - start;
+      start = end;
+    }
+  }
+
+  private void writeBuffer() {
+    if (buffered > 0) {
+      TruffulaEvents.Flush event = TruffulaEvents.beginFlush();
+      if (sink != null) {
+        sink.write(buffer, 0, buffered);
+      } else {
+        printStream.print(new String(buffer, 0, buffered));
+      }
+      if (event != null && event.shouldCommit()) {
+        event.chars = buffered;
+        event.commit();
+      }
+      buffered = 0;
+    }
+  }
+
   /**
    * Constructs a ColorPrinter with the specified PrintStream.
    * The default color is set to ConsoleColor.WHITE.
@@ -118,7 +307,34 @@ public class ColorPrinter {
    * @param color       the initial ConsoleColor to use for printing
    */
   public ColorPrinter(PrintStream printStream, ConsoleColor color) {
+    this(printStream, color, 0);
+  }
+
+  /**
+   * Constructs a ColorPrinter with the specified PrintStream, initial color, and
+   * output buffer size. A buffer size of 0 writes every print straight to the stream.
+   * 
+   * @param printStream the PrintStream to which output will be written
+   * @param color       the initial ConsoleColor to use for printing
+   * @param bufferSize  the number of chars to collect before writing, or 0 for no buffering
+   */
+  public ColorPrinter(PrintStream printStream, ConsoleColor color, int bufferSize) {
     this.printStream = printStream;
+    this.sink = null;
     this.currentColor = color;
+    this.buffer = bufferSize > 0 ? new char[Math.max(bufferSize, 64)] : null;
+  }
+
+  /**
+   * Constructs a buffered ColorPrinter that writes to a file sink, with no color set.
+   * 
+   * @param sink       the sink to which output will be written
+   * @param bufferSize the number of chars to collect before each write to the sink
+   */
+  public ColorPrinter(FileSink sink, int bufferSize) {
+    this.printStream = null;
+    this.sink = sink;
+    this.currentColor = null;
+    this.buffer = new char[Math.max(bufferSize, 64)];
   }
 }
@@ -188,4 +188,72 @@ public class ColorPrinterTest {
                       ConsoleColor.RESET + "reset text" + ConsoleColor.RESET;
     assertEquals(expected, out.toString());
   }
-}
\ No newline at end of file
+
+  @Test
+  void testBufferedPrinterWritesNothingUntilFlush() {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ColorPrinter printer = new ColorPrinter(new PrintStream(outputStream), ConsoleColor.RED, 1024);
+
+    printer.println("Line 1");
+    assertEquals("", outputStream.toString());
+
+    printer.flush();
+    assertEquals(ConsoleColor.RED + "Line 1" + System.lineSeparator() + ConsoleColor.RESET, outputStream.toString());
+  }
+
+  @Test
+  void testBufferedPrinterSharesCodesAcrossSameColorLines() {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ColorPrinter printer = new ColorPrinter(new PrintStream(outputStream), ConsoleColor.BLUE, 1024);
+
+    printer.println("Line 1");
+    printer.println("Line 2");
+    printer.setCurrentColor(ConsoleColor.GREEN);
+    printer.println("Line 3");
+    printer.flush();
+
+    String nl = System.lineSeparator();
+    String expectedOutput = ConsoleColor.BLUE + "Line 1" + nl + "Line 2" + nl + ConsoleColor.RESET
+                          + ConsoleColor.GREEN + "Line 3" + nl + ConsoleColor.RESET;
+    assertEquals(expectedOutput, outputStream.toString());
+  }
+
+  @Test
+  void testBufferedPrinterResetsBeforePlainText() {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ColorPrinter printer = new ColorPrinter(new PrintStream(outputStream), ConsoleColor.YELLOW, 1024);
+
+    printer.print("Yellow");
+    printer.setCurrentColor(null);
+    printer.print("Plain");
+    printer.flush();
+
+    assertEquals(ConsoleColor.YELLOW + "Yellow" + ConsoleColor.RESET + "Plain", outputStream.toString());
+  }
+
+  @Test
+  void testBufferedPrinterWithoutResetKeepsColor() {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ColorPrinter printer = new ColorPrinter(new PrintStream(outputStream), ConsoleColor.GREEN, 1024);
+
+    printer.print("First", false);
+    printer.print("Second", true);
+    printer.flush();
+
+    assertEquals(ConsoleColor.GREEN + "First" + "Second" + ConsoleColor.RESET, outputStream.toString());
+  }
+
+  @Test
+  void testBufferedPrinterHandlesMessagesLargerThanBuffer() {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ColorPrinter printer = new ColorPrinter(new PrintStream(outputStream), ConsoleColor.CYAN, 64);
+
+    String message = "truffula".repeat(100);
+    printer.println(message);
+    printer.println(message);
+    printer.flush();
+
+    String nl = System.lineSeparator();
+    assertEquals(ConsoleColor.CYAN + message + nl + message + nl + ConsoleColor.RESET, outputStream.toString());
+  }
+}
@@ -0,0 +1,217 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A DirectoryLister for --time-budget: the tree is read breadth-first until the
+ * budget runs out, and then only what was read is printed.
+ *
+ * Directories are listed on a small pool of daemon threads that take them in the
+ * order they were found, so the tree is read level by level, the way a user would
+ * want to see it when not all of it can be read. The calling thread waits until
+ * the whole tree is read or the budget is spent, whichever comes first. At that
+ * point the listings read so far are frozen, and every directory that was not read
+ * is shown with the note "[not scanned]" and not descended into. If not even the
+ * root was read, the root itself is shown that way, so the output cannot be taken
+ * for an empty directory. A listing still in
+ * progress is abandoned, so even a directory that blocks forever on a slow volume
+ * cannot hold up the output; its thread is left to finish in the background.
+ *
+ * The budget covers reading the tree. Printing what was read comes after it, and
+ * costs no filesystem calls beyond the attributes already read.
+ */
+public class DeadlineLister implements DirectoryLister {
+
+  /**
+   * The note printed after a directory that was not read in time.
+   */
+  public static final String NOT_SCANNED = "not scanned";
+
+  private final DirectoryLister reader;
+  private final ExecutorService executor;
+  private final int maxDepth;
+
+  /**
+   * Listings read in time, by directory. Guarded by itself.
+   */
+  private final Map<File, Listing> listings = new HashMap<>();
+
+  /**
+   * Whether the budget has been spent, after which no listing is kept.
+   * Guarded by listings.
+   */
+  private boolean stopped;
+
+  /**
+   * The root of the tree, once start() has been called.
+   */
+  private File root;
+
+  private final AtomicInteger pending = new AtomicInteger();
+  private final CountDownLatch finished = new CountDownLatch(1);
+
+  /**
+   * Constructs a DeadlineLister with its own threads.
+   *
+   * @param reader      reads a single directory; called from several threads at once
+   * @param parallelism the number of directories listed at once
+   * @param maxDepth    the number of levels of entries to list, or 0 for no limit
+   */
+  public DeadlineLister(DirectoryLister reader, int parallelism, int maxDepth) {
+    this.reader = reader;
+    this.maxDepth = maxDepth;
+    this.executor = Executors.newFixedThreadPool(parallelism, task -> {
+      Thread thread = new Thread(task, "truffula-scan");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Reads the tree below the root until it is all read or the budget is spent, then
+   * marks the directories that were not read.
+   *
+   * @param root         the root directory of the tree
+   * @param budgetMillis the time the tree may take to read
+   * @return true if the whole tree was read in time
+   */
+  public boolean scan(File root, long budgetMillis) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    start(root);
+    return finish(deadline);
+  }
+
+  /**
+   * Starts reading the tree below the root in the background. Several listers can
+   * be started this way and then finished against one shared deadline.
+   *
+   * @param root the root directory of the tree
+   */
+  public void start(File root) {
+    this.root = root;
+    submit(root, 0);
+  }
+
+  /**
+   * Waits until the tree started by start() is all read or the deadline has passed,
+   * then marks the directories that were not read.
+   *
+   * @param deadline the System.nanoTime() by which reading must stop
+   * @return true if the whole tree was read in time
+   */
+  public boolean finish(long deadline) {
+    boolean complete = false;
+    try {
+      complete = finished.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    synchronized (listings) {
+      stopped = true;
+      if (!complete) {
+        for (Listing listing : listings.values()) {
+          markUnscanned(listing);
+        }
+        if (!listings.containsKey(root)) {
+          listings.put(root, new Listing(DirectoryLister.unlisted(root, NOT_SCANNED), 0));
+        }
+      }
+    }
+    executor.shutdownNow();
+    return complete;
+  }
+
+  @Override
+  public FileEntry[] list(File directory) {
+    synchronized (listings) {
+      Listing listing = listings.remove(directory);
+      return listing == null ? null : listing.entries;
+    }
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    synchronized (listings) {
+      listings.clear();
+    }
+    reader.close();
+  }
+
+  private void submit(File directory, int depth) {
+    pending.incrementAndGet();
+    try {
+      executor.execute(() -> read(directory, depth));
+    } catch (RejectedExecutionException e) {
+      // The budget ran out while this directory was being found.
+      pending.decrementAndGet();
+    }
+  }
+
+  /**
+   * Reads one directory on a pool thread and queues its subdirectories. The
+   * subdirectories are picked out before the listing is published, since from then
+   * on the printer and markUnscanned() may change it.
+   */
+  private void read(File directory, int depth) {
+    try {
+      FileEntry[] entries = reader.list(directory);
+      List<File> subdirectories = new ArrayList<>();
+      if (entries != null && (maxDepth == 0 || depth + 1 < maxDepth)) {
+        for (FileEntry entry : entries) {
+          if (entry.canDescend()) {
+            subdirectories.add(entry.getFile());
+          }
+        }
+      }
+      synchronized (listings) {
+        if (stopped) return;
+        listings.put(directory, new Listing(entries, depth));
+      }
+      for (File subdirectory : subdirectories) {
+        submit(subdirectory, depth + 1);
+      }
+    } finally {
+      if (pending.decrementAndGet() == 0) {
+        finished.countDown();
+      }
+    }
+  }
+
+  /**
+   * Notes every subdirectory in a listing that was due to be read but was not.
+   * Subdirectories below the depth limit were never due, so they stay as they are.
+   */
+  private void markUnscanned(Listing listing) {
+    FileEntry[] entries = listing.entries;
+    if (entries == null || (maxDepth > 0 && listing.depth + 1 >= maxDepth)) return;
+    for (int i = 0; i < entries.length; i++) {
+      FileEntry entry = entries[i];
+      if (entry.canDescend() && !listings.containsKey(entry.getFile())) {
+        entries[i] = entry.withNote(NOT_SCANNED);
+      }
+    }
+  }
+
+  /**
+   * A directory's listing, or null if it could not be listed, and its depth.
+   */
+  private static class Listing {
+    private final FileEntry[] entries;
+    private final int depth;
+
+    Listing(FileEntry[] entries, int depth) {
+      this.entries = entries;
+      this.depth = depth;
+    }
+  }
+}
@@ -0,0 +1,180 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DeadlineListerTest {
+
+  private static final String NL = System.lineSeparator();
+
+  private static String print(TruffulaOptions options, DirectoryLister lister) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new TruffulaPrinter(options, new PrintStream(out)).printTree(lister);
+    return out.toString();
+  }
+
+  @Test
+  void testWholeTreeWithinBudget(@TempDir File tempDir) throws IOException {
+    assertTrue(new File(tempDir, "a/b").mkdirs());
+    new File(tempDir, "a/b/c.txt").createNewFile();
+    new File(tempDir, "d.txt").createNewFile();
+    String path = tempDir.getPath();
+
+    ByteArrayOutputStream budgeted = new ByteArrayOutputStream();
+    new TruffulaPrinter(new TruffulaOptions(new String[]{"-nc", "--time-budget", "60000", path}),
+        new PrintStream(budgeted)).printTree();
+    ByteArrayOutputStream plain = new ByteArrayOutputStream();
+    new TruffulaPrinter(new TruffulaOptions(new String[]{"-nc", path}), new PrintStream(plain)).printTree();
+
+    assertEquals(plain.toString(), budgeted.toString());
+  }
+
+  @Test
+  void testTreeIsReadBreadthFirstUntilTheBudgetRunsOut() {
+    File root = new File("root");
+    MemoryTreeSource source = new MemoryTreeSource(root);
+    source.addFile(new File(root, "a/x/deep.txt"), 1);
+    source.addFile(new File(root, "b/y/deep.txt"), 1);
+    source.addFile(new File(root, "b/file.txt"), 1);
+    TruffulaOptions options = new TruffulaOptions(source, root, false, false);
+    CountDownLatch never = new CountDownLatch(1);
+
+    // The second level never finishes listing, like a hung network mount.
+    DeadlineLister lister = new DeadlineLister(directory -> {
+      if (directory.getParentFile() != null && !directory.getParentFile().equals(root)
+          && !directory.equals(root)) {
+        try {
+          never.await();
+        } catch (InterruptedException e) {
+          return null;
+        }
+      }
+      return DirectoryLister.readDirectory(directory, options);
+    }, 1, 0);
+
+    long start = System.nanoTime();
+    boolean complete = lister.scan(root, 300);
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    assertFalse(complete);
+    assertTrue(elapsedMillis < 5000, "took " + elapsedMillis + " ms");
+    assertEquals("a/" + NL
+        + "   x/ [not scanned]" + NL
+        + "b/" + NL
+        + "   file.txt" + NL
+        + "   y/ [not scanned]" + NL, print(options, lister));
+  }
+
+  @Test
+  void testRootNotReadInTimeIsMarked() {
+    File root = new File("root");
+    MemoryTreeSource source = new MemoryTreeSource(root);
+    source.addFile(new File(root, "a.txt"), 1);
+    TruffulaOptions options = new TruffulaOptions(source, root, false, false);
+    CountDownLatch never = new CountDownLatch(1);
+
+    DeadlineLister lister = new DeadlineLister(directory -> {
+      try {
+        never.await();
+      } catch (InterruptedException e) {
+        return null;
+      }
+      return DirectoryLister.readDirectory(directory, options);
+    }, 1, 0);
+
+    assertFalse(lister.scan(root, 0));
+    assertEquals("root/ [not scanned]" + NL, print(options, lister));
+  }
+
+  @Test
+  void testDirectoriesBelowTheDepthLimitAreNotMarked() {
+    File root = new File("root");
+    MemoryTreeSource source = new MemoryTreeSource(root);
+    source.addFile(new File(root, "a/b/c.txt"), 1);
+    TruffulaOptions options = new TruffulaOptions(source, root, false, false);
+
+    DeadlineLister lister = new DeadlineLister(directory -> DirectoryLister.readDirectory(directory, options), 2, 1);
+
+    assertTrue(lister.scan(root, 60000));
+    FileEntry[] entries = lister.list(root);
+    assertEquals(1, entries.length);
+    assertNull(entries[0].getNote());
+    lister.close();
+  }
+
+  @Test
+  void testWorkersDoNotTouchPublishedListings(@TempDir File tempDir) throws IOException {
+    for (int i = 0; i < 40; i++) {
+      File directory = new File(tempDir, "d" + i);
+      for (int j = 0; j < 40; j++) {
+        assertTrue(new File(directory, "e" + j).mkdirs());
+      }
+    }
+    List<Throwable> failures = new CopyOnWriteArrayList<>();
+    Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+    Thread.setDefaultUncaughtExceptionHandler((thread, e) -> failures.add(e));
+    try {
+      // A budget that runs out mid-scan hands listings to the printer, which clears
+      // them, while pool threads are still busy.
+      for (int i = 0; i < 30; i++) {
+        TruffulaOptions options = new TruffulaOptions(new String[]{"-nc", "-j", "8", "--time-budget", "3", tempDir.getPath()});
+        new TruffulaPrinter(options, new PrintStream(new ByteArrayOutputStream())).printTree();
+      }
+      Thread.sleep(100);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      Thread.setDefaultUncaughtExceptionHandler(previous);
+    }
+
+    assertTrue(failures.isEmpty(), () -> failures.size() + " pool threads failed: " + failures.get(0));
+  }
+
+  @Test
+  void testListersStartedTogetherShareOneDeadline() {
+    File root = new File("root");
+    MemoryTreeSource source = new MemoryTreeSource(root);
+    source.addFile(new File(root, "a/deep.txt"), 1);
+    TruffulaOptions options = new TruffulaOptions(source, root, false, false);
+    CountDownLatch never = new CountDownLatch(1);
+    DirectoryLister hung = directory -> {
+      if (!directory.equals(root)) {
+        try {
+          never.await();
+        } catch (InterruptedException e) {
+          return null;
+        }
+      }
+      return DirectoryLister.readDirectory(directory, options);
+    };
+
+    List<DeadlineLister> listers = List.of(new DeadlineLister(hung, 1, 0), new DeadlineLister(hung, 1, 0),
+        new DeadlineLister(hung, 1, 0));
+    long start = System.nanoTime();
+    long deadline = start + 500_000_000L;
+    for (DeadlineLister lister : listers) {
+      lister.start(root);
+    }
+    for (DeadlineLister lister : listers) {
+      assertFalse(lister.finish(deadline));
+    }
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    // One after another, each with its own budget, they would take three times as long.
+    assertTrue(elapsedMillis < 1200, "took " + elapsedMillis + " ms");
+    for (DeadlineLister lister : listers) {
+      assertEquals("a/ [not scanned]" + NL, print(options, lister));
+    }
+  }
+}
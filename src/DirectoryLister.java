@@ -0,0 +1,183 @@
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Supplies the filtered, sorted children of a directory to the TruffulaPrinter.
+ * 
+ * The printer always walks the tree in the same order on a single thread. A lister
+ * decides where the listing work happens: inline on the printing thread, or ahead of
+ * time on other threads. Every implementation must return exactly what
+ * readDirectory would return, so the printed output never depends on the lister used.
+ */
+public interface DirectoryLister {
+
+  /**
+   * Returns snapshots of the children of the given directory, filtered and sorted
+   * for printing. The returned array belongs to the caller, which may change it.
+   *
+   * @param directory the directory to list
+   * @return the sorted children, or null if the directory could not be listed
+   */
+  FileEntry[] list(File directory);
+
+  /**
+   * Releases any threads or buffers held by the lister. The default does nothing.
+   */
+  default void close() {
+  }
+
+  /**
+   * Lists a directory from the options' tree source, drops hidden entries if they
+   * should not be shown, takes a snapshot of each remaining entry, and sorts the
+   * result alphabetically.
+   * 
+   * Hidden entries are dropped by name before their snapshot is taken, so they cost
+   * no attribute reads. Entries rejected by the options' include, exclude and
+   * .gitignore patterns are dropped next. If the options cap the number of entries
+   * per directory and the directory holds more, only the first entries in sorted
+   * order are kept and a placeholder for the rest is appended. Without patterns,
+   * those entries are chosen by name before any snapshot is taken. Before any of
+   * this, the options' SymlinkGuard checks the directory itself; one it does not
+   * follow is not listed, and unlisted() stands in for its listing.
+   *
+   * @param directory the directory to list
+   * @param options   the options deciding which entries are kept and which attributes are read
+   * @return the sorted children, or null if the directory could not be listed
+   */
+  static FileEntry[] readDirectory(File directory, TruffulaOptions options) {
+    return readDirectory(directory, options, options.getMaxEntries(), options.getAttributes());
+  }
+
+  /**
+   * Lists a directory like readDirectory(directory, options), but with the given
+   * entry cap and attributes instead of the options' ones.
+   *
+   * @param directory  the directory to list
+   * @param options    the options deciding which entries are kept
+   * @param limit      the number of entries to keep, or 0 to keep all
+   * @param attributes a combination of FileEntry.SIZE, MODIFIED and PERMISSIONS, or 0
+   * @return the sorted children, or null if the directory could not be listed
+   */
+  static FileEntry[] readDirectory(File directory, TruffulaOptions options, int limit, int attributes) {
+    String note = options.getLinks().check(directory);
+    if (note != null) return unlisted(directory, note);
+
+    TruffulaEvents.Listing event = TruffulaEvents.beginListing();
+    TreeStats stats = options.getStats();
+    long start = stats == null ? 0 : System.nanoTime();
+    TreeSource source = options.getSource();
+    String[] names = source.list(directory);
+    if (names == null) {
+      if (stats != null) stats.recordListing(directory, 0, null, 0, 0, System.nanoTime() - start);
+      commitListing(event, directory, null);
+      return null;
+    }
+
+    EntryFilter filter = options.getFilter();
+    boolean showHidden = options.isShowHidden();
+    boolean hasIgnoreFile = false;
+    File[] files = new File[names.length];
+    int count = 0;
+    for (String name : names) {
+      if (filter != null && name.equals(EntryFilter.GITIGNORE)) {
+        hasIgnoreFile = true;
+      }
+      if (showHidden || !name.startsWith(".")) {
+        files[count++] = new File(directory, name);
+      }
+    }
+    if (count < files.length) {
+      files = Arrays.copyOf(files, count);
+    }
+
+    FileEntry[] result;
+    int excluded = 0;
+    if (filter == null && limit > 0 && files.length > limit) {
+      TreeStats.Timer sortTimer = TreeStats.start(stats, TreeStats.Phase.SORT);
+      File[] top = AlphabeticalFileSorter.sortTop(files, limit);
+      TreeStats.stop(sortTimer);
+      FileEntry[] entries = new FileEntry[top.length];
+      for (int i = 0; i < top.length; i++) {
+        entries[i] = FileEntry.read(source, top[i], attributes);
+      }
+      result = withOmitted(directory, entries, files.length - limit);
+    } else {
+      FileEntry[] entries = new FileEntry[files.length];
+      for (int i = 0; i < files.length; i++) {
+        entries[i] = FileEntry.read(source, files[i], attributes);
+      }
+      if (filter != null) {
+        entries = filter.filter(directory, entries, hasIgnoreFile);
+        excluded = files.length - entries.length;
+      }
+      TreeStats.Timer sortTimer = TreeStats.start(stats, TreeStats.Phase.SORT);
+      if (limit > 0 && entries.length > limit) {
+        result = withOmitted(directory, AlphabeticalFileSorter.sortTop(entries, limit), entries.length - limit);
+      } else {
+        result = AlphabeticalFileSorter.sort(entries);
+      }
+      TreeStats.stop(sortTimer);
+    }
+    if (stats != null) {
+      stats.recordListing(directory, names.length, result, names.length - count, excluded, System.nanoTime() - start);
+    }
+    commitListing(event, directory, result);
+    return result;
+  }
+
+  /**
+   * Returns the listing that stands for a directory that is not listed, such as a
+   * link the SymlinkGuard does not follow: the directory itself, with the note that
+   * says why. Whoever asked for the listing shows the directory with the note in
+   * place of its entries, and does not descend into it.
+   *
+   * @param directory the directory that is not listed
+   * @param note      the note to show it with
+   * @return the listing
+   */
+  static FileEntry[] unlisted(File directory, String note) {
+    return new FileEntry[]{new FileEntry(directory, true, 0, 0, 0, null).withNote(note)};
+  }
+
+  /**
+   * Returns the note of a listing made by unlisted(), or null for a real listing.
+   * A real listing never holds its own directory.
+   *
+   * @param directory the directory that was listed
+   * @param entries   its listing, or null
+   * @return the note, or null
+   */
+  static String unlistedNote(File directory, FileEntry[] entries) {
+    if (entries == null || entries.length != 1 || entries[0].getNote() == null) return null;
+    return entries[0].getFile().equals(directory) ? entries[0].getNote() : null;
+  }
+
+  /**
+   * Commits a listing event if a recording wants it.
+   *
+   * @param event     the event, begun when the listing started, or null
+   * @param directory the directory that was listed
+   * @param entries   the entries kept, or null if the directory could not be listed
+   */
+  static void commitListing(TruffulaEvents.Listing event, File directory, FileEntry[] entries) {
+    if (event != null && event.shouldCommit()) {
+      event.path = directory.getPath();
+      event.entries = entries == null ? -1 : entries.length;
+      event.commit();
+    }
+  }
+
+  /**
+   * Appends the placeholder for entries left out of a capped listing.
+   *
+   * @param directory the directory the entries were listed from
+   * @param entries   the entries that are printed
+   * @param omitted   the number of entries left out
+   * @return the entries followed by the placeholder
+   */
+  static FileEntry[] withOmitted(File directory, FileEntry[] entries, int omitted) {
+    FileEntry[] result = Arrays.copyOf(entries, entries.length + 1);
+    result[entries.length] = FileEntry.omitted(directory, omitted);
+    return result;
+  }
+}
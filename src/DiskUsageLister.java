@@ -0,0 +1,219 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A DirectoryLister for disk-usage mode: every directory is shown with the total
+ * size of the files below it, in place of its own size.
+ * 
+ * A directory's total is only known once its whole subtree has been read, but its
+ * line is printed before its children. So the tree is read in a single pass up
+ * front, on a fork-join pool, and totals are added up bottom-up as subtrees finish:
+ * each directory is a CountedCompleter that folds its total into its parent's once
+ * all of its own subdirectories have completed. Completion climbs the tree in a
+ * loop rather than by recursion, so deep trees cannot overflow the stack.
+ * 
+ * Only listings that will be printed are kept: those of the directories whose
+ * lines are printed and whose children lie within the depth limit, each cut to the
+ * entry cap. A directory still being read holds only its running total, and a
+ * finished one keeps a single number, and only if its line will be printed. When
+ * the printer asks for a directory, its kept listing is handed over with its
+ * subdirectories' totals filled in, and both are dropped, so the tree is read once.
+ * 
+ * Totals count every file that the options' hidden-file setting and patterns keep,
+ * including those cut by the entry cap. Sizes are apparent sizes in bytes. java.io
+ * has no way to tell that two paths are hard links to the same file, so a file
+ * with several links is counted once per link. Directories behind symbolic links
+ * that the SymlinkGuard does not follow are not counted at all.
+ */
+public class DiskUsageLister implements DirectoryLister {
+
+  private final TruffulaOptions options;
+  private final ForkJoinPool pool;
+  private final boolean ownPool;
+
+  /**
+   * The totals of directories whose lines the printer has not printed yet.
+   */
+  private final Map<File, Long> totals = new ConcurrentHashMap<>();
+
+  /**
+   * The listings, cut to the entry cap, that the printer has not asked for yet.
+   */
+  private final Map<File, FileEntry[]> listings = new ConcurrentHashMap<>();
+
+  /**
+   * The scan of the root, once started.
+   */
+  private Scan scan;
+
+  /**
+   * Constructs a DiskUsageLister with its own pool.
+   *
+   * @param options     the options deciding which entries are counted and printed
+   * @param parallelism the number of worker threads to use
+   */
+  public DiskUsageLister(TruffulaOptions options, int parallelism) {
+    this(options, new ForkJoinPool(parallelism), true);
+  }
+
+  /**
+   * Constructs a DiskUsageLister that reads on a pool shared with other listers.
+   * Closing the lister leaves the pool running.
+   *
+   * @param options the options deciding which entries are counted and printed
+   * @param pool    the shared pool
+   */
+  public DiskUsageLister(TruffulaOptions options, ForkJoinPool pool) {
+    this(options, pool, false);
+  }
+
+  private DiskUsageLister(TruffulaOptions options, ForkJoinPool pool, boolean ownPool) {
+    this.options = options;
+    this.pool = pool;
+    this.ownPool = ownPool;
+  }
+
+  /**
+   * Reads the whole tree below the root and adds up the totals. Returns once every
+   * directory has been read.
+   *
+   * @param root the root directory of the tree
+   * @return the total size of the files in the tree
+   */
+  public long scan(File root) {
+    start(root);
+    return await();
+  }
+
+  /**
+   * Starts reading the tree below the root in the background, so that several trees
+   * can be read at once.
+   *
+   * @param root the root directory of the tree
+   */
+  public void start(File root) {
+    scan = new Scan(null, root, 0, true);
+    pool.execute(scan);
+  }
+
+  /**
+   * Waits until the tree started by start() has been read.
+   *
+   * @return the total size of the files in the tree
+   */
+  public long await() {
+    scan.join();
+    return scan.total.get();
+  }
+
+  @Override
+  public FileEntry[] list(File directory) {
+    FileEntry[] entries = listings.remove(directory);
+    if (entries == null) {
+      entries = DirectoryLister.readDirectory(directory, options, options.getMaxEntries(),
+          options.getAttributes() | FileEntry.SIZE);
+    }
+    if (entries == null) return null;
+
+    for (int i = 0; i < entries.length; i++) {
+      if (entries[i].canDescend()) {
+        Long total = totals.remove(entries[i].getFile());
+        entries[i] = entries[i].withSize(total == null ? 0 : total);
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Returns the number of directory totals waiting to be printed.
+   */
+  int pendingTotals() {
+    return totals.size();
+  }
+
+  /**
+   * Returns the number of listings waiting to be printed.
+   */
+  int pendingListings() {
+    return listings.size();
+  }
+
+  @Override
+  public void close() {
+    if (ownPool) pool.shutdownNow();
+    totals.clear();
+    listings.clear();
+  }
+
+  /**
+   * Reads one directory, adds up its files and forks a task for each subdirectory.
+   * Completes once all of those have completed, and then adds its total to its
+   * parent's.
+   */
+  @SuppressWarnings("serial")
+  private class Scan extends CountedCompleter<Void> {
+    private final File directory;
+    private final int depth;
+    private final boolean printed;
+    private final AtomicLong total = new AtomicLong();
+
+    Scan(Scan parent, File directory, int depth, boolean printed) {
+      super(parent);
+      this.directory = directory;
+      this.depth = depth;
+      this.printed = printed;
+    }
+
+    @Override
+    public void compute() {
+      FileEntry[] entries = DirectoryLister.readDirectory(directory, options, 0,
+          options.getAttributes() | FileEntry.SIZE);
+      if (entries != null) {
+        int maxDepth = options.getMaxDepth();
+        int limit = options.getMaxEntries();
+        boolean listed = maxDepth == 0 || depth < maxDepth;
+        List<Scan> children = new ArrayList<>();
+        long files = 0;
+        for (int i = 0; i < entries.length; i++) {
+          FileEntry entry = entries[i];
+          if (entry.canDescend()) {
+            boolean shown = listed && (limit == 0 || i < limit);
+            children.add(new Scan(this, entry.getFile(), depth + 1, shown));
+          } else if (!entry.isDirectory()) {
+            files += entry.getSize();
+          }
+        }
+        total.addAndGet(files);
+        if (printed && listed) {
+          listings.put(directory, limit > 0 && entries.length > limit
+              ? DirectoryLister.withOmitted(directory, Arrays.copyOf(entries, limit), entries.length - limit)
+              : entries);
+        }
+        setPendingCount(children.size());
+        for (Scan child : children) {
+          child.fork();
+        }
+      }
+      tryComplete();
+    }
+
+    @Override
+    public void onCompletion(CountedCompleter<?> caller) {
+      long sum = total.get();
+      Scan parent = (Scan) getCompleter();
+      if (parent != null) {
+        if (printed) {
+          totals.put(directory, sum);
+        }
+        parent.total.addAndGet(sum);
+      }
+    }
+  }
+}
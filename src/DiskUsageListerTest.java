@@ -0,0 +1,147 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DiskUsageListerTest {
+
+  private static final File ROOT = new File("du-root");
+
+  private static MemoryTreeSource sampleTree() {
+    MemoryTreeSource source = new MemoryTreeSource(ROOT);
+    source.addFile(new File(ROOT, "top.txt"), 1);
+    source.addFile(new File(ROOT, "a/one.txt"), 10);
+    source.addFile(new File(ROOT, "a/two.txt"), 20);
+    source.addFile(new File(ROOT, "a/b/three.txt"), 300);
+    source.addFile(new File(ROOT, "a/b/.hidden"), 4000);
+    source.addDirectory(new File(ROOT, "empty"));
+    return source;
+  }
+
+  private static void write(File file, int length) throws IOException {
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(new byte[length]);
+    }
+  }
+
+  private static long sizeOf(FileEntry[] entries, String name) {
+    for (FileEntry entry : entries) {
+      if (entry.getName().equals(name)) return entry.getSize();
+    }
+    throw new AssertionError("No entry named " + name);
+  }
+
+  @Test
+  void testDirectoriesShowTotalsOfTheirSubtrees() {
+    DiskUsageLister lister = new DiskUsageLister(new TruffulaOptions(sampleTree(), ROOT, false, false), 4);
+
+    assertEquals(331, lister.scan(ROOT));
+
+    FileEntry[] root = lister.list(ROOT);
+    assertEquals(330, sizeOf(root, "a"));
+    assertEquals(0, sizeOf(root, "empty"));
+    assertEquals(1, sizeOf(root, "top.txt"));
+    assertEquals(300, sizeOf(lister.list(new File(ROOT, "a")), "b"));
+    lister.close();
+  }
+
+  @Test
+  void testHiddenFilesCountWhenShown() {
+    DiskUsageLister lister = new DiskUsageLister(new TruffulaOptions(sampleTree(), ROOT, true, false), 2);
+
+    assertEquals(4331, lister.scan(ROOT));
+    lister.close();
+  }
+
+  @Test
+  void testLimitsCutListingsButNotTotals(@TempDir File tempDir) throws IOException {
+    File dir = new File(tempDir, "dir");
+    File sub = new File(dir, "sub");
+    assertTrue(sub.mkdirs());
+    for (int i = 0; i < 10; i++) {
+      write(new File(dir, "file" + i), 5);
+    }
+    write(new File(sub, "deep"), 100);
+    TruffulaOptions options = new TruffulaOptions(
+        new String[]{"--du", "-L", "2", "--max-entries", "3", tempDir.getPath()});
+    DiskUsageLister lister = new DiskUsageLister(options, 2);
+
+    assertEquals(150, lister.scan(tempDir));
+
+    assertEquals(150, sizeOf(lister.list(tempDir), "dir"));
+    FileEntry[] dirEntries = lister.list(dir);
+    assertEquals(4, dirEntries.length);
+    assertEquals(8, dirEntries[3].getOmittedCount());
+    // sub is cut by the entry cap, so its total was never kept.
+    assertEquals(0, lister.pendingTotals());
+    lister.close();
+  }
+
+  @Test
+  void testDeepChainDoesNotOverflowTheStack() {
+    MemoryTreeSource source = new MemoryTreeSource(ROOT);
+    StringBuilder path = new StringBuilder();
+    for (int i = 0; i < 20_000; i++) {
+      path.append("d").append(File.separatorChar);
+    }
+    source.addFile(new File(ROOT, path + "leaf.txt"), 7);
+    DiskUsageLister lister = new DiskUsageLister(new TruffulaOptions(source, ROOT, false, false), 2);
+
+    assertEquals(7, lister.scan(ROOT));
+    assertEquals(7, sizeOf(lister.list(ROOT), "d"));
+    lister.close();
+  }
+
+  @Test
+  void testOnlyTotalsOfPrintedDirectoriesAreKept(@TempDir File tempDir) throws IOException {
+    for (int i = 0; i < 20; i++) {
+      File leaf = new File(tempDir, "d" + (i < 10 ? "0" : "") + i + "/e/f");
+      assertTrue(leaf.mkdirs());
+      write(new File(leaf, "g"), 1);
+    }
+    String path = tempDir.getPath();
+
+    DiskUsageLister lister = new DiskUsageLister(new TruffulaOptions(new String[]{"--du", path}), 4);
+    assertEquals(20, lister.scan(tempDir));
+    assertEquals(60, lister.pendingTotals());
+    lister.close();
+
+    // Only the first five directories of the root are printed, and nothing below them.
+    lister = new DiskUsageLister(new TruffulaOptions(new String[]{"--du", "-L", "1", "--max-entries", "5", path}), 4);
+    assertEquals(20, lister.scan(tempDir));
+    assertEquals(5, lister.pendingTotals());
+    assertEquals(1, lister.pendingListings());
+    assertEquals(1, sizeOf(lister.list(tempDir), "d00"));
+    assertEquals(0, lister.pendingTotals());
+    assertEquals(0, lister.pendingListings());
+    lister.close();
+  }
+
+  @Test
+  void testEveryDirectoryIsListedOnce(@TempDir File tempDir) throws IOException {
+    File a = new File(tempDir, "a");
+    File b = new File(a, "b");
+    File c = new File(tempDir, "c");
+    assertTrue(b.mkdirs());
+    assertTrue(c.mkdir());
+    write(new File(b, "x"), 3);
+    write(new File(c, "y"), 4);
+    TruffulaOptions options = new TruffulaOptions(new String[]{"--du", "--stats", tempDir.getPath()});
+    DiskUsageLister lister = new DiskUsageLister(options, 2);
+
+    assertEquals(7, lister.scan(tempDir));
+    assertEquals(3, sizeOf(lister.list(tempDir), "a"));
+    assertEquals(3, sizeOf(lister.list(a), "b"));
+    assertEquals(3, sizeOf(lister.list(b), "x"));
+    assertEquals(4, sizeOf(lister.list(c), "y"));
+
+    assertEquals(4, options.getStats().getDirectories());
+    assertEquals(0, lister.pendingListings());
+    lister.close();
+  }
+}
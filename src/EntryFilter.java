@@ -0,0 +1,276 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides which entries of a directory are printed, based on include and exclude
+ * glob patterns and, optionally, the .gitignore files found during the walk.
+ * 
+ * - Exclude patterns drop every entry they match. An excluded directory is never
+ *   listed, so nothing below it costs any I/O.
+ * - Include patterns keep only the files they match. Directories are always kept so
+ *   that matching files further down can be reached.
+ * - .gitignore files apply to their own directory and everything below it, with the
+ *   usual rules: a later rule overrides an earlier one, rules in deeper files
+ *   override those in shallower ones, "!" re-includes, a trailing "/" only matches
+ *   directories, and a pattern containing a "/" is anchored to the .gitignore's
+ *   directory. The .git directory itself is always left out.
+ * 
+ * Include, exclude and .gitignore patterns without a "/" are matched against the
+ * entry's name. Patterns with a "/" are matched against its path relative to the
+ * root of the tree, or to the directory of the .gitignore file they come from.
+ * 
+ * The contents of .gitignore files are always read from the filesystem, whatever
+ * the options' tree source.
+ * 
+ * All patterns are compiled once. Each .gitignore file is parsed once and reused for
+ * as long as its last-modified time does not change.
+ */
+public class EntryFilter {
+
+  /**
+   * The name of the files whose rules are honoured when gitignore support is on.
+   */
+  public static final String GITIGNORE = ".gitignore";
+
+  private final File root;
+  private final List<Rule> includes;
+  private final List<Rule> excludes;
+  private final boolean useGitignore;
+
+  /**
+   * Parsed .gitignore files by the directory they are in.
+   */
+  private final Map<File, IgnoreFile> ignoreFiles = new ConcurrentHashMap<>();
+
+  /**
+   * Compiles a filter.
+   *
+   * @param root         the root of the tree, which slash-containing patterns are relative to
+   * @param includes     glob patterns files must match to be printed; empty to print all files
+   * @param excludes     glob patterns of entries that are not printed or descended into
+   * @param useGitignore whether .gitignore files found during the walk are honoured
+   * @throws IllegalArgumentException if a pattern is malformed
+   */
+  public EntryFilter(File root, List<String> includes, List<String> excludes, boolean useGitignore) {
+    this.root = root;
+    this.includes = new ArrayList<>();
+    for (String include : includes) {
+      this.includes.add(Rule.parse(include, false));
+    }
+    this.excludes = new ArrayList<>();
+    for (String exclude : excludes) {
+      this.excludes.add(Rule.parse(exclude, false));
+    }
+    this.useGitignore = useGitignore;
+  }
+
+  /**
+   * Indicates whether .gitignore files are honoured.
+   *
+   * @return true if .gitignore files are honoured
+   */
+  public boolean isUseGitignore() {
+    return useGitignore;
+  }
+
+  /**
+   * Drops the entries of a directory that should not be printed. The order of the
+   * remaining entries is kept.
+   *
+   * @param directory      the directory the entries were listed from
+   * @param entries        the entries to filter; the array may be reused for the result
+   * @param hasIgnoreFile  whether the directory contains a .gitignore file
+   * @return the entries to print
+   */
+  public FileEntry[] filter(File directory, FileEntry[] entries, boolean hasIgnoreFile) {
+    List<IgnoreFile> chain = useGitignore ? ignoreChain(directory, hasIgnoreFile) : List.of();
+
+    int count = 0;
+    for (FileEntry entry : entries) {
+      if (accept(entry, chain)) {
+        entries[count++] = entry;
+      }
+    }
+    return count == entries.length ? entries : Arrays.copyOf(entries, count);
+  }
+
+  private boolean accept(FileEntry entry, List<IgnoreFile> chain) {
+    String name = entry.getName();
+    boolean directory = entry.isDirectory();
+
+    if (!directory && !includes.isEmpty()) {
+      boolean included = false;
+      for (Rule include : includes) {
+        if (include.matches(entry, root)) {
+          included = true;
+          break;
+        }
+      }
+      if (!included) return false;
+    }
+
+    for (Rule exclude : excludes) {
+      if (exclude.matches(entry, root)) return false;
+    }
+
+    if (useGitignore && directory && name.equals(".git")) return false;
+
+    boolean ignored = false;
+    for (IgnoreFile ignoreFile : chain) {
+      for (Rule rule : ignoreFile.rules) {
+        if (rule.matches(entry, ignoreFile.directory)) {
+          ignored = !rule.negated;
+        }
+      }
+    }
+    return !ignored;
+  }
+
+  /**
+   * Returns the .gitignore files that apply to a directory, outermost first. The
+   * directory's own file is parsed now; those of its ancestors were parsed when the
+   * ancestors were listed.
+   */
+  private List<IgnoreFile> ignoreChain(File directory, boolean hasIgnoreFile) {
+    if (hasIgnoreFile) {
+      load(directory);
+    } else {
+      ignoreFiles.remove(directory);
+    }
+
+    Deque<IgnoreFile> chain = new ArrayDeque<>();
+    String rootPath = root.getPath();
+    for (File current = directory; current != null; current = current.getParentFile()) {
+      IgnoreFile ignoreFile = ignoreFiles.get(current);
+      if (ignoreFile != null) {
+        chain.addFirst(ignoreFile);
+      }
+      if (current.getPath().equals(rootPath)) break;
+    }
+    return new ArrayList<>(chain);
+  }
+
+  private void load(File directory) {
+    File file = new File(directory, GITIGNORE);
+    long modified = file.lastModified();
+    IgnoreFile cached = ignoreFiles.get(directory);
+    if (cached != null && cached.modified == modified) return;
+
+    List<Rule> rules = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        Rule rule = Rule.parseGitignoreLine(line);
+        if (rule != null) {
+          rules.add(rule);
+        }
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      // An unreadable or malformed .gitignore is ignored as a whole, like git does with bad lines.
+      rules.clear();
+    }
+    ignoreFiles.put(directory, new IgnoreFile(directory, modified, rules));
+  }
+
+  /**
+   * The rules of one .gitignore file.
+   */
+  private static class IgnoreFile {
+    private final File directory;
+    private final long modified;
+    private final List<Rule> rules;
+
+    IgnoreFile(File directory, long modified, List<Rule> rules) {
+      this.directory = directory;
+      this.modified = modified;
+      this.rules = rules;
+    }
+  }
+
+  /**
+   * One exclude pattern or .gitignore line.
+   */
+  private static class Rule {
+    private final GlobPattern pattern;
+    private final boolean anchored;
+    private final boolean directoryOnly;
+    private final boolean negated;
+
+    Rule(GlobPattern pattern, boolean anchored, boolean directoryOnly, boolean negated) {
+      this.pattern = pattern;
+      this.anchored = anchored;
+      this.directoryOnly = directoryOnly;
+      this.negated = negated;
+    }
+
+    /**
+     * Parses a .gitignore line, returning null for blank lines and comments.
+     */
+    static Rule parseGitignoreLine(String line) {
+      String trimmed = stripTrailingSpaces(line);
+      if (trimmed.isEmpty() || trimmed.startsWith("#")) return null;
+
+      boolean negated = false;
+      if (trimmed.startsWith("!")) {
+        negated = true;
+        trimmed = trimmed.substring(1);
+      } else if (trimmed.startsWith("\\!") || trimmed.startsWith("\\#")) {
+        trimmed = trimmed.substring(1);
+      }
+      return trimmed.isEmpty() ? null : parse(trimmed, negated);
+    }
+
+    static Rule parse(String glob, boolean negated) {
+      boolean directoryOnly = glob.endsWith("/");
+      if (directoryOnly) {
+        glob = glob.substring(0, glob.length() - 1);
+      }
+      boolean anchored = glob.indexOf('/') >= 0;
+      if (glob.startsWith("/")) {
+        glob = glob.substring(1);
+      }
+      return new Rule(new GlobPattern(glob), anchored, directoryOnly, negated);
+    }
+
+    /**
+     * Tests the rule against an entry, with anchored patterns relative to base.
+     */
+    boolean matches(FileEntry entry, File base) {
+      if (directoryOnly && !entry.isDirectory()) return false;
+      if (!anchored) return pattern.matches(entry.getName());
+
+      String path = entry.getFile().getPath();
+      String basePath = base.getPath();
+      if (!path.startsWith(basePath)) return false;
+      // A root such as "/" or "C:\" already ends in a separator.
+      int start = basePath.length();
+      if (!basePath.endsWith(File.separator)) {
+        if (path.length() <= start || path.charAt(start) != File.separatorChar) return false;
+        start++;
+      }
+      if (path.length() <= start) return false;
+      String relative = path.substring(start);
+      if (File.separatorChar != '/') {
+        relative = relative.replace(File.separatorChar, '/');
+      }
+      return pattern.matches(relative);
+    }
+
+    private static String stripTrailingSpaces(String line) {
+      int end = line.length();
+      while (end > 0 && line.charAt(end - 1) == ' ' && (end < 2 || line.charAt(end - 2) != '\\')) {
+        end--;
+      }
+      return line.substring(0, end);
+    }
+  }
+}
@@ -0,0 +1,159 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EntryFilterTest {
+
+  private static void write(File file, String content) throws IOException {
+    try (FileWriter writer = new FileWriter(file)) {
+      writer.write(content);
+    }
+  }
+
+  private static List<String> names(EntryFilter filter, File directory) {
+    File[] files = directory.listFiles();
+    FileEntry[] entries = new FileEntry[files.length];
+    for (int i = 0; i < files.length; i++) {
+      entries[i] = FileEntry.read(files[i], 0);
+    }
+    boolean hasIgnoreFile = new File(directory, EntryFilter.GITIGNORE).exists();
+    List<String> names = new ArrayList<>();
+    for (FileEntry entry : AlphabeticalFileSorter.sort(filter.filter(directory, entries, hasIgnoreFile))) {
+      names.add(entry.getName());
+    }
+    return names;
+  }
+
+  @Test
+  void testIncludeKeepsMatchingFilesAndAllDirectories(@TempDir File tempDir) throws IOException {
+    new File(tempDir, "lib").mkdir();
+    write(new File(tempDir, "App.java"), "");
+    write(new File(tempDir, "README.md"), "");
+
+    EntryFilter filter = new EntryFilter(tempDir, List.of("*.java"), List.of(), false);
+
+    assertEquals(List.of("App.java", "lib"), names(filter, tempDir));
+  }
+
+  @Test
+  void testExcludeDropsFilesAndDirectories(@TempDir File tempDir) throws IOException {
+    new File(tempDir, "target").mkdir();
+    new File(tempDir, "src").mkdir();
+    write(new File(tempDir, "App.class"), "");
+    write(new File(tempDir, "App.java"), "");
+
+    EntryFilter filter = new EntryFilter(tempDir, List.of(), List.of("target", "*.class"), false);
+
+    assertEquals(List.of("App.java", "src"), names(filter, tempDir));
+  }
+
+  @Test
+  void testExcludeWithSlashIsRelativeToRoot(@TempDir File tempDir) throws IOException {
+    File docs = new File(tempDir, "docs");
+    File nested = new File(new File(tempDir, "src"), "docs");
+    docs.mkdir();
+    nested.mkdirs();
+    write(new File(docs, "draft.md"), "");
+    write(new File(nested, "draft.md"), "");
+
+    EntryFilter filter = new EntryFilter(tempDir, List.of(), List.of("docs/draft.md"), false);
+
+    assertEquals(List.of(), names(filter, docs));
+    assertEquals(List.of("draft.md"), names(filter, nested));
+  }
+
+  @Test
+  void testIncludeWithSlashIsRelativeToRoot(@TempDir File tempDir) throws IOException {
+    File docs = new File(tempDir, "docs");
+    File nested = new File(new File(tempDir, "src"), "docs");
+    docs.mkdir();
+    nested.mkdirs();
+    write(new File(docs, "draft.md"), "");
+    write(new File(docs, "notes.txt"), "");
+    write(new File(nested, "draft.md"), "");
+
+    EntryFilter filter = new EntryFilter(tempDir, List.of("docs/*.md"), List.of(), false);
+
+    assertEquals(List.of("draft.md"), names(filter, docs));
+    assertEquals(List.of(), names(filter, nested));
+  }
+
+  @Test
+  void testAnchoredPatternsMatchBelowARootEndingInASeparator() {
+    File root = File.listRoots()[0];
+    File child = null;
+    for (File file : root.listFiles()) {
+      if (file.isDirectory() && !file.getName().startsWith(".")) {
+        child = file;
+        break;
+      }
+    }
+    assertTrue(root.getPath().endsWith(File.separator));
+    assertNotNull(child);
+
+    EntryFilter filter = new EntryFilter(root, List.of(), List.of("/" + child.getName()), false);
+
+    assertTrue(names(filter, root).size() > 0);
+    assertFalse(names(filter, root).contains(child.getName()));
+  }
+
+  @Test
+  void testGitignoreRulesApplyBelowTheirDirectory(@TempDir File tempDir) throws IOException {
+    File sub = new File(tempDir, "sub");
+    sub.mkdir();
+    new File(tempDir, "build").mkdir();
+    new File(tempDir, ".git").mkdir();
+    write(new File(tempDir, ".gitignore"), "# generated\n*.log\nbuild/\n!keep.log\n");
+    write(new File(tempDir, "app.log"), "");
+    write(new File(tempDir, "keep.log"), "");
+    write(new File(sub, "debug.log"), "");
+    write(new File(sub, "build"), "");
+
+    EntryFilter filter = new EntryFilter(tempDir, List.of(), List.of(), true);
+
+    assertEquals(List.of(".gitignore", "keep.log", "sub"), names(filter, tempDir));
+    // "build/" only matches directories, so the file named build stays.
+    assertEquals(List.of("build"), names(filter, sub));
+  }
+
+  @Test
+  void testDeeperGitignoreOverridesShallower(@TempDir File tempDir) throws IOException {
+    File sub = new File(tempDir, "sub");
+    sub.mkdir();
+    write(new File(tempDir, ".gitignore"), "*.txt\n");
+    write(new File(sub, ".gitignore"), "!notes.txt\n/local.txt\n");
+    write(new File(sub, "notes.txt"), "");
+    write(new File(sub, "other.txt"), "");
+
+    EntryFilter filter = new EntryFilter(tempDir, List.of(), List.of(), true);
+    names(filter, tempDir);
+
+    assertEquals(List.of(".gitignore", "notes.txt"), names(filter, sub));
+  }
+
+  @Test
+  void testChangedGitignoreIsReparsed(@TempDir File tempDir) throws IOException {
+    File ignoreFile = new File(tempDir, ".gitignore");
+    write(ignoreFile, "a.txt\n");
+    write(new File(tempDir, "a.txt"), "");
+    write(new File(tempDir, "b.txt"), "");
+
+    EntryFilter filter = new EntryFilter(tempDir, List.of(), List.of(), true);
+    assertEquals(List.of(".gitignore", "b.txt"), names(filter, tempDir));
+
+    write(ignoreFile, "b.txt\n");
+    ignoreFile.setLastModified(ignoreFile.lastModified() + 5000);
+
+    assertEquals(List.of(".gitignore", "a.txt"), names(filter, tempDir));
+  }
+}
@@ -0,0 +1,347 @@
+import java.io.File;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * A snapshot of one directory entry and the attributes the printer needs from it.
+ * 
+ * Every attribute is read from the filesystem once, when the snapshot is taken, and
+ * then served to the hidden-file filter, the sorter and the renderer without further
+ * calls. Whether the entry is a directory is always read. Size, modification time
+ * and permissions are only read when their column is enabled, so a plain tree costs
+ * a single stat per entry.
+ * 
+ * Columns are rendered in the style of tree -p -s -D, for example:
+ * 
+ * [drwx        4096 Oct 18 09:30]  src/
+ * 
+ * java.io only reports access for the current user, so the permission column shows
+ * whether this user can read, write and execute the entry.
+ */
+public class FileEntry {
+
+  /**
+   * Attribute flag: read the size of the entry.
+   */
+  public static final int SIZE = 1;
+
+  /**
+   * Attribute flag: read the last-modified time of the entry.
+   */
+  public static final int MODIFIED = 2;
+
+  /**
+   * Attribute flag: read the read/write/execute access of the entry.
+   */
+  public static final int PERMISSIONS = 4;
+
+  private final File file;
+  private final String name;
+  private final boolean directory;
+  private final int attributes;
+  private final long size;
+  private final long lastModified;
+  private final String permissions;
+  private final int omitted;
+  private final String note;
+
+  /**
+   * Constructs a FileEntry with explicit values, without touching the filesystem.
+   *
+   * @param file         the file the entry describes
+   * @param directory    whether the entry is a directory
+   * @param attributes   which of SIZE, MODIFIED and PERMISSIONS the values below hold
+   * @param size         the size in bytes
+   * @param lastModified the last-modified time in milliseconds since the epoch
+   * @param permissions  the access string, such as "drw-"
+   */
+  public FileEntry(File file, boolean directory, int attributes, long size, long lastModified, String permissions) {
+    this.file = file;
+    this.name = file.getName();
+    this.directory = directory;
+    this.attributes = attributes;
+    this.size = size;
+    this.lastModified = lastModified;
+    this.permissions = permissions;
+    this.omitted = 0;
+    this.note = null;
+  }
+
+  /**
+   * Constructs a copy of an entry with a note.
+   */
+  private FileEntry(FileEntry entry, long size, int attributes, String note) {
+    this.file = entry.file;
+    this.name = entry.name;
+    this.directory = entry.directory;
+    this.attributes = attributes;
+    this.size = size;
+    this.lastModified = entry.lastModified;
+    this.permissions = entry.permissions;
+    this.omitted = entry.omitted;
+    this.note = note;
+  }
+
+  /**
+   * Constructs the placeholder printed in place of entries left out of a capped listing.
+   */
+  private FileEntry(File directory, int omitted) {
+    this.file = directory;
+    this.name = "... " + omitted + " more";
+    this.directory = false;
+    this.attributes = 0;
+    this.size = 0;
+    this.lastModified = 0;
+    this.permissions = null;
+    this.omitted = omitted;
+    this.note = null;
+  }
+
+  /**
+   * Returns a placeholder entry that stands for entries left out at the end of a
+   * capped listing. It prints as "... N more" and is never a directory.
+   *
+   * @param directory the directory the entries were left out of
+   * @param count     the number of entries left out
+   * @return the placeholder entry
+   */
+  public static FileEntry omitted(File directory, int count) {
+    return new FileEntry(directory, count);
+  }
+
+  /**
+   * Takes a snapshot of a file, reading whether it is a directory and the requested
+   * attributes.
+   *
+   * @param file       the file to read
+   * @param attributes a combination of SIZE, MODIFIED and PERMISSIONS, or 0
+   * @return the snapshot
+   */
+  public static FileEntry read(File file, int attributes) {
+    return read(FileTreeSource.INSTANCE, file, attributes);
+  }
+
+  /**
+   * Takes a snapshot of an entry of the given source, reading whether it is a
+   * directory and the requested attributes.
+   *
+   * @param source     the source the entry belongs to
+   * @param file       the entry to read
+   * @param attributes a combination of SIZE, MODIFIED and PERMISSIONS, or 0
+   * @return the snapshot
+   */
+  public static FileEntry read(TreeSource source, File file, int attributes) {
+    return read(source, file, source.isDirectory(file), attributes);
+  }
+
+  /**
+   * Takes a snapshot of a file whose type is already known, reading only the
+   * requested attributes.
+   *
+   * @param file       the file to read
+   * @param directory  whether the file is a directory
+   * @param attributes a combination of SIZE, MODIFIED and PERMISSIONS, or 0
+   * @return the snapshot
+   */
+  public static FileEntry read(File file, boolean directory, int attributes) {
+    return read(FileTreeSource.INSTANCE, file, directory, attributes);
+  }
+
+  /**
+   * Takes a snapshot of an entry of the given source whose type is already known,
+   * reading only the requested attributes.
+   *
+   * @param source     the source the entry belongs to
+   * @param file       the entry to read
+   * @param directory  whether the entry is a directory
+   * @param attributes a combination of SIZE, MODIFIED and PERMISSIONS, or 0
+   * @return the snapshot
+   */
+  public static FileEntry read(TreeSource source, File file, boolean directory, int attributes) {
+    long size = (attributes & SIZE) != 0 ? source.length(file) : 0;
+    long lastModified = (attributes & MODIFIED) != 0 ? source.lastModified(file) : 0;
+    String permissions = null;
+    if ((attributes & PERMISSIONS) != 0) {
+      permissions = (directory ? "d" : "-")
+          + (source.canRead(file) ? "r" : "-")
+          + (source.canWrite(file) ? "w" : "-")
+          + (source.canExecute(file) ? "x" : "-");
+    }
+    return new FileEntry(file, directory, attributes, size, lastModified, permissions);
+  }
+
+  /**
+   * Returns a copy of this entry with a different size, such as the total size of a
+   * directory's contents.
+   *
+   * @param size the size in bytes
+   * @return the copy
+   */
+  public FileEntry withSize(long size) {
+    return new FileEntry(this, size, attributes | SIZE, note);
+  }
+
+  /**
+   * Returns a copy of this directory entry with a note printed after its name, such
+   * as SymlinkGuard.RECURSIVE. A directory with a note is not descended into.
+   *
+   * @param note the note, without brackets
+   * @return the copy
+   */
+  public FileEntry withNote(String note) {
+    return new FileEntry(this, size, attributes, note);
+  }
+
+  /**
+   * Returns the note printed in brackets after the entry's name.
+   *
+   * @return the note, or null if there is none
+   */
+  public String getNote() {
+    return note;
+  }
+
+  /**
+   * Indicates whether the walk lists this entry's children: true for directories,
+   * unless the directory is a link that is not followed.
+   *
+   * @return true if the entry is a directory to descend into
+   */
+  public boolean canDescend() {
+    return directory && note == null;
+  }
+
+  /**
+   * Returns the number of entries this placeholder stands for, or 0 if this entry
+   * describes a real file.
+   *
+   * @return the number of entries left out
+   */
+  public int getOmittedCount() {
+    return omitted;
+  }
+
+  /**
+   * Returns the file this entry describes.
+   *
+   * @return the file
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Returns the name of the entry, without any parent path.
+   *
+   * @return the name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Indicates whether the entry is a directory.
+   *
+   * @return true if the entry is a directory
+   */
+  public boolean isDirectory() {
+    return directory;
+  }
+
+  /**
+   * Returns which attributes were read for this entry.
+   *
+   * @return a combination of SIZE, MODIFIED and PERMISSIONS, or 0
+   */
+  public int getAttributes() {
+    return attributes;
+  }
+
+  /**
+   * Returns the size of the entry in bytes, or 0 if SIZE was not read.
+   *
+   * @return the size in bytes
+   */
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * Returns the last-modified time in milliseconds since the epoch, or 0 if
+   * MODIFIED was not read.
+   *
+   * @return the last-modified time
+   */
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  /**
+   * Returns the access string, such as "drw-", or null if PERMISSIONS was not read.
+   *
+   * @return the access string
+   */
+  public String getPermissions() {
+    return permissions;
+  }
+
+  /**
+   * Appends the bracketed metadata columns for this entry, followed by two spaces.
+   * Appends nothing if no attributes were read.
+   *
+   * @param line the line being built
+   */
+  public void appendColumns(StringBuilder line) {
+    if (attributes == 0) return;
+
+    line.append('[');
+    if ((attributes & PERMISSIONS) != 0) {
+      line.append(permissions);
+    }
+    if ((attributes & SIZE) != 0) {
+      if (line.charAt(line.length() - 1) != '[') line.append(' ');
+      String digits = Long.toString(size);
+      for (int i = digits.length(); i < 11; i++) line.append(' ');
+      line.append(digits);
+    }
+    if ((attributes & MODIFIED) != 0) {
+      if (line.charAt(line.length() - 1) != '[') line.append(' ');
+      DateColumn.FORMAT.formatTo(Instant.ofEpochMilli(lastModified), line);
+    }
+    line.append("]  ");
+  }
+
+  /**
+   * Appends this entry as a line of the tree: the indentation, the metadata
+   * columns, the path of its directory if any, its name, a "/" for a directory and
+   * its note in brackets. Both TruffulaPrinter and TreeBrowser build their lines
+   * with this, so the two stay alike.
+   *
+   * @param line   the line being built
+   * @param indent the indentation before the columns
+   * @param path   the path printed before the name, or ""
+   */
+  public void appendLine(StringBuilder line, CharSequence indent, String path) {
+    line.append(indent);
+    appendColumns(line);
+    line.append(path);
+    line.append(name);
+    if (directory) {
+      line.append('/');
+    }
+    if (note != null) {
+      line.append(" [").append(note).append(']');
+    }
+  }
+
+  /**
+   * Holds the format of the modification time column, so the time zone rules it
+   * loads are only read by runs that print the column.
+   */
+  private static class DateColumn {
+    private static final DateTimeFormatter FORMAT =
+        DateTimeFormatter.ofPattern("MMM dd HH:mm", Locale.ROOT).withZone(ZoneId.systemDefault());
+  }
+}
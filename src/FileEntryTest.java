@@ -0,0 +1,85 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileEntryTest {
+
+  private static String columns(FileEntry entry) {
+    StringBuilder line = new StringBuilder();
+    entry.appendColumns(line);
+    return line.toString();
+  }
+
+  @Test
+  void testReadWithoutAttributesOnlyReadsType(@TempDir File tempDir) throws IOException {
+    File file = new File(tempDir, "notes.txt");
+    try (FileWriter writer = new FileWriter(file)) {
+      writer.write("hello");
+    }
+
+    FileEntry entry = FileEntry.read(file, 0);
+
+    assertEquals("notes.txt", entry.getName());
+    assertFalse(entry.isDirectory());
+    assertEquals(0, entry.getSize());
+    assertEquals(0, entry.getLastModified());
+    assertNull(entry.getPermissions());
+    assertEquals("", columns(entry));
+  }
+
+  @Test
+  void testReadWithAllAttributes(@TempDir File tempDir) throws IOException {
+    File file = new File(tempDir, "notes.txt");
+    try (FileWriter writer = new FileWriter(file)) {
+      writer.write("hello");
+    }
+    assertTrue(file.setLastModified(1_000_000_000_000L));
+
+    FileEntry entry = FileEntry.read(file, FileEntry.SIZE | FileEntry.MODIFIED | FileEntry.PERMISSIONS);
+
+    assertEquals(5, entry.getSize());
+    assertEquals(1_000_000_000_000L, entry.getLastModified());
+    assertTrue(entry.getPermissions().startsWith("-r"));
+    assertTrue(FileEntry.read(tempDir, FileEntry.PERMISSIONS).getPermissions().startsWith("d"));
+  }
+
+  @Test
+  void testColumnsFormat() {
+    long time = 1_700_000_000_000L;
+    String date = DateTimeFormatter.ofPattern("MMM dd HH:mm", Locale.ROOT)
+        .withZone(ZoneId.systemDefault()).format(Instant.ofEpochMilli(time));
+
+    FileEntry sizeOnly = new FileEntry(new File("a.txt"), false, FileEntry.SIZE, 4096, 0, null);
+    FileEntry all = new FileEntry(new File("src"), true,
+        FileEntry.SIZE | FileEntry.MODIFIED | FileEntry.PERMISSIONS, 42, time, "drwx");
+
+    assertEquals("[       4096]  ", columns(sizeOnly));
+    assertEquals("[drwx          42 " + date + "]  ", columns(all));
+  }
+
+  @Test
+  void testAppendLine() {
+    FileEntry file = new FileEntry(new File("a.txt"), false, FileEntry.SIZE, 4096, 0, null);
+    FileEntry directory = new FileEntry(new File("src"), true, 0, 0, 0, null).withNote("not scanned");
+
+    StringBuilder line = new StringBuilder();
+    file.appendLine(line, "   ", "docs/");
+    assertEquals("   [       4096]  docs/a.txt", line.toString());
+
+    line.setLength(0);
+    directory.appendLine(line, "", "");
+    assertEquals("src/ [not scanned]", line.toString());
+  }
+}
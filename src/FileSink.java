@@ -0,0 +1,267 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the printer's output to a file in UTF-8, optionally gzip-compressed, for -o.
+ *
+ * Chars are encoded straight into large byte blocks, and each full block is written
+ * to the file in one call, with none of PrintStream's per-call locking, line
+ * handling or String copies.
+ *
+ * With gzip, compressing is left to a writer thread: full blocks are handed to it
+ * through a short queue and recycled once written, so the walk only stalls when
+ * the compressor falls several blocks behind, and memory stays at a few blocks.
+ *
+ * An error writing the file does not interrupt the walk. The first one is kept and
+ * thrown by close(), which must be called to finish the file.
+ */
+public class FileSink implements Closeable {
+
+  /**
+   * Bytes per block handed to the file or the compressor.
+   */
+  private static final int BLOCK_SIZE = 256 * 1024;
+
+  /**
+   * Full blocks that may wait for the compressor before the walk waits too.
+   */
+  private static final int QUEUED_BLOCKS = 4;
+
+  /**
+   * Size of the buffer between the compressor and the file.
+   */
+  private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Queued after the last block to stop the writer thread.
+   */
+  private static final Block END = new Block(0);
+
+  private final OutputStream file;
+  private final OutputStream target;
+  private final BlockingQueue<Block> full;
+  private final BlockingQueue<Block> free;
+  private final Thread writer;
+
+  private Block block = new Block(BLOCK_SIZE);
+
+  /**
+   * A high surrogate whose low half has not been written yet, or 0.
+   */
+  private char pendingSurrogate;
+
+  private volatile IOException error;
+  private boolean closed;
+
+  /**
+   * Creates or truncates the file and, with gzip, starts the writer thread.
+   *
+   * @param output the file to write
+   * @param gzip   whether to compress the output
+   * @throws IOException if the file cannot be created
+   */
+  public FileSink(File output, boolean gzip) throws IOException {
+    file = new FileOutputStream(output);
+    if (!gzip) {
+      target = file;
+      full = null;
+      free = null;
+      writer = null;
+      return;
+    }
+
+    try {
+      target = new GZIPOutputStream(file, GZIP_BUFFER_SIZE);
+    } catch (IOException e) {
+      file.close();
+      throw e;
+    }
+    full = new ArrayBlockingQueue<>(QUEUED_BLOCKS + 1);
+    free = new ArrayBlockingQueue<>(QUEUED_BLOCKS + 1);
+    writer = new Thread(this::writeBlocks, "truffula-gzip");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Encodes chars as UTF-8 and adds them to the output.
+   *
+   * @param chars  the chars to write
+   * @param offset the index of the first char
+   * @param length the number of chars
+   */
+  public void write(char[] chars, int offset, int length) {
+    int end = offset + length;
+    for (int i = offset; i < end; i++) {
+      char c = chars[i];
+      if (pendingSurrogate != 0) {
+        char high = pendingSurrogate;
+        pendingSurrogate = 0;
+        if (Character.isLowSurrogate(c)) {
+          putCodePoint(Character.toCodePoint(high, c));
+          continue;
+        }
+        put((byte) '?');
+      }
+      if (c < 0x80) {
+        if (block.length == block.bytes.length) {
+          handOff();
+        }
+        block.bytes[block.length++] = (byte) c;
+      } else if (Character.isHighSurrogate(c)) {
+        pendingSurrogate = c;
+      } else if (Character.isLowSurrogate(c)) {
+        put((byte) '?');
+      } else {
+        putCodePoint(c);
+      }
+    }
+  }
+
+  /**
+   * Passes the bytes written so far on to the file, or to the writer thread.
+   */
+  public void flush() {
+    if (block.length > 0) {
+      handOff();
+    }
+  }
+
+  /**
+   * Writes everything still held, finishes the gzip stream and closes the file.
+   *
+   * @throws IOException the first error met while writing, if any
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) return;
+    closed = true;
+    if (pendingSurrogate != 0) {
+      pendingSurrogate = 0;
+      put((byte) '?');
+    }
+    flush();
+
+    if (writer != null) {
+      boolean interrupted = false;
+      while (true) {
+        try {
+          full.put(END);
+          writer.join();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    try {
+      target.close();
+    } catch (IOException e) {
+      fail(e);
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  private void putCodePoint(int codePoint) {
+    if (codePoint < 0x800) {
+      put((byte) (0xC0 | (codePoint >> 6)));
+    } else {
+      if (codePoint < 0x10000) {
+        put((byte) (0xE0 | (codePoint >> 12)));
+      } else {
+        put((byte) (0xF0 | (codePoint >> 18)));
+        put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+      }
+      put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+    }
+    put((byte) (0x80 | (codePoint & 0x3F)));
+  }
+
+  private void put(byte b) {
+    if (block.length == block.bytes.length) {
+      handOff();
+    }
+    block.bytes[block.length++] = b;
+  }
+
+  /**
+   * Writes the current block, or queues it for the writer thread and takes a free
+   * one in its place.
+   */
+  private void handOff() {
+    if (writer == null) {
+      if (error == null) {
+        try {
+          target.write(block.bytes, 0, block.length);
+        } catch (IOException e) {
+          fail(e);
+        }
+      }
+      block.length = 0;
+      return;
+    }
+
+    try {
+      full.put(block);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      fail(new InterruptedIOException("Interrupted while writing output"));
+      block.length = 0;
+      return;
+    }
+    Block next = free.poll();
+    block = next != null ? next : new Block(BLOCK_SIZE);
+  }
+
+  /**
+   * Runs on the writer thread, compressing blocks until END arrives. After an error
+   * blocks are still taken, and dropped, so the walk never waits on a dead writer.
+   */
+  private void writeBlocks() {
+    try {
+      for (Block next = full.take(); next != END; next = full.take()) {
+        if (error == null) {
+          try {
+            target.write(next.bytes, 0, next.length);
+          } catch (IOException e) {
+            fail(e);
+          }
+        }
+        next.length = 0;
+        free.offer(next);
+      }
+    } catch (InterruptedException e) {
+      fail(new InterruptedIOException("Interrupted while compressing output"));
+    }
+  }
+
+  private synchronized void fail(IOException e) {
+    if (error == null) {
+      error = e;
+    }
+  }
+
+  /**
+   * A buffer of encoded output and the number of bytes it holds.
+   */
+  private static class Block {
+    private final byte[] bytes;
+    private int length;
+
+    Block(int size) {
+      this.bytes = new byte[size];
+    }
+  }
+}
@@ -0,0 +1,81 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FileSinkTest {
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    try (in) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      in.transferTo(bytes);
+      return bytes.toByteArray();
+    }
+  }
+
+  private static void write(FileSink sink, String text) {
+    char[] chars = text.toCharArray();
+    sink.write(chars, 0, chars.length);
+  }
+
+  @Test
+  void testEncodesUtf8(@TempDir File tempDir) throws IOException {
+    File output = new File(tempDir, "out.txt");
+    String text = "plain é 猫 🌳";
+
+    try (FileSink sink = new FileSink(output, false)) {
+      write(sink, text.substring(0, 11));
+      // The surrogate pair is split across two writes.
+      write(sink, text.substring(11));
+    }
+
+    assertEquals(text, new String(readAll(new FileInputStream(output)), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void testUnpairedSurrogatesBecomeQuestionMarks(@TempDir File tempDir) throws IOException {
+    File output = new File(tempDir, "out.txt");
+
+    try (FileSink sink = new FileSink(output, false)) {
+      write(sink, "a\uD83Cb\uDF33c\uD83C");
+    }
+
+    assertEquals("a?b?c?", new String(readAll(new FileInputStream(output)), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void testGzipOutputSpanningManyBlocks(@TempDir File tempDir) throws IOException {
+    File output = new File(tempDir, "out.txt.gz");
+    StringBuilder expected = new StringBuilder();
+    char[] line = "   some/entry/name.txt\n".toCharArray();
+
+    try (FileSink sink = new FileSink(output, true)) {
+      for (int i = 0; i < 100_000; i++) {
+        sink.write(line, 0, line.length);
+        expected.append(line);
+        if (i % 10_000 == 0) {
+          sink.flush();
+        }
+      }
+    }
+
+    byte[] bytes = readAll(new GZIPInputStream(new FileInputStream(output)));
+    assertEquals(expected.toString(), new String(bytes, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void testMissingDirectoryFailsOnOpen(@TempDir File tempDir) {
+    File output = new File(tempDir, "missing/out.txt");
+
+    assertThrows(IOException.class, () -> new FileSink(output, true));
+  }
+}
@@ -0,0 +1,63 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The default TreeSource: answers every question with the java.io.File method of
+ * the same name, so entries come straight from the filesystem.
+ */
+public class FileTreeSource implements TreeSource {
+
+  /**
+   * The shared instance. The class holds no state, so one is enough.
+   */
+  public static final FileTreeSource INSTANCE = new FileTreeSource();
+
+  @Override
+  public String[] list(File directory) {
+    return directory.list();
+  }
+
+  @Override
+  public boolean exists(File file) {
+    return file.exists();
+  }
+
+  @Override
+  public boolean isDirectory(File file) {
+    return file.isDirectory();
+  }
+
+  @Override
+  public long length(File file) {
+    return file.length();
+  }
+
+  @Override
+  public long lastModified(File file) {
+    return file.lastModified();
+  }
+
+  @Override
+  public boolean canRead(File file) {
+    return file.canRead();
+  }
+
+  @Override
+  public boolean canWrite(File file) {
+    return file.canWrite();
+  }
+
+  @Override
+  public boolean canExecute(File file) {
+    return file.canExecute();
+  }
+
+  @Override
+  public String getCanonicalPath(File file) {
+    try {
+      return file.getCanonicalPath();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+}
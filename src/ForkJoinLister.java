@@ -0,0 +1,192 @@
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A DirectoryLister that lists and sorts the tree on a fork-join pool.
+ *
+ * Starting from the root, every directory is listed by its own task, which forks a
+ * new task for each subdirectory it finds. The printer then asks for directories in
+ * its usual depth-first order and joins the matching task, so listing runs on all
+ * workers while printing stays on one thread in a deterministic order.
+ *
+ * At most maxPending tasks are running or waiting for the printer at any time, so
+ * the listings held never run far ahead of the output. When that limit is reached
+ * no further tasks are forked, and the printer lists the directories it reaches on
+ * its own thread instead, forking tasks for their subdirectories as permits free
+ * up. Finished listings are dropped once the printer consumes them.
+ */
+public class ForkJoinLister implements DirectoryLister {
+
+  /**
+   * Default limit on the directories listed ahead of the printer.
+   */
+  public static final int DEFAULT_MAX_PENDING = 4096;
+
+  /**
+   * The pool that runs the listing tasks.
+   */
+  private final ForkJoinPool pool;
+
+  /**
+   * Reads a single directory on behalf of the tasks.
+   */
+  private final DirectoryLister reader;
+
+  /**
+   * The deepest level of entries that is listed, or 0 for no limit.
+   */
+  private final int maxDepth;
+
+  /**
+   * One permit for each task that may be running or waiting for the printer.
+   */
+  private final Semaphore permits;
+
+  /**
+   * Listing tasks that have been started but not yet consumed by the printer.
+   */
+  private final Map<File, ListTask> pending = new ConcurrentHashMap<>();
+
+  /**
+   * The level below the root of each subdirectory found while no permit was free,
+   * so the printer knows how deep it is when it lists the directory itself.
+   */
+  private final Map<File, Integer> depths = new ConcurrentHashMap<>();
+
+  /**
+   * Constructs a ForkJoinLister with its own pool.
+   *
+   * @param reader      reads a single directory; called from several threads at once
+   * @param parallelism the number of worker threads to use
+   */
+  public ForkJoinLister(DirectoryLister reader, int parallelism) {
+    this(reader, parallelism, 0);
+  }
+
+  /**
+   * Constructs a ForkJoinLister with its own pool that does not list directories
+   * whose entries would lie deeper than maxDepth levels below the root.
+   *
+   * @param reader      reads a single directory; called from several threads at once
+   * @param parallelism the number of worker threads to use
+   * @param maxDepth    the number of levels of entries to list, or 0 for no limit
+   */
+  public ForkJoinLister(DirectoryLister reader, int parallelism, int maxDepth) {
+    this(reader, parallelism, maxDepth, DEFAULT_MAX_PENDING);
+  }
+
+  /**
+   * Constructs a ForkJoinLister with its own pool that lists at most maxPending
+   * directories ahead of the printer.
+   *
+   * @param reader      reads a single directory; called from several threads at once
+   * @param parallelism the number of worker threads to use
+   * @param maxDepth    the number of levels of entries to list, or 0 for no limit
+   * @param maxPending  the most tasks running or waiting for the printer at once
+   */
+  public ForkJoinLister(DirectoryLister reader, int parallelism, int maxDepth, int maxPending) {
+    this.reader = reader;
+    this.pool = new ForkJoinPool(parallelism);
+    this.maxDepth = maxDepth;
+    this.permits = new Semaphore(maxPending);
+  }
+
+  /**
+   * Starts listing the tree below the given root in the background.
+   *
+   * @param root the root directory of the tree
+   */
+  public void start(File root) {
+    permits.acquireUninterruptibly();
+    ListTask task = new ListTask(root, 0);
+    pending.put(root, task);
+    pool.execute(task);
+  }
+
+  @Override
+  public FileEntry[] list(File directory) {
+    ListTask task = pending.remove(directory);
+    if (task == null) {
+      Integer known = depths.remove(directory);
+      int depth = known == null ? 0 : known;
+      FileEntry[] entries = reader.list(directory);
+      forkChildren(entries, depth, false);
+      return entries;
+    }
+    try {
+      return task.join();
+    } finally {
+      permits.release();
+    }
+  }
+
+  @Override
+  public void close() {
+    pool.shutdownNow();
+    pending.clear();
+    depths.clear();
+    reader.close();
+  }
+
+  /**
+   * Returns the number of tasks running or waiting for the printer.
+   */
+  int pendingListings() {
+    return pending.size();
+  }
+
+  /**
+   * Starts a task for each subdirectory in a listing that is within the depth limit,
+   * for as many as there are permits.
+   *
+   * @param entries the listing, or null
+   * @param depth   the level of the listed directory below the root, 0 for the root
+   * @param inPool  whether the caller is one of the pool's tasks
+   */
+  private void forkChildren(FileEntry[] entries, int depth, boolean inPool) {
+    if (entries == null || (maxDepth > 0 && depth + 1 >= maxDepth)) return;
+
+    for (FileEntry entry : entries) {
+      if (entry.canDescend()) {
+        File child = entry.getFile();
+        if (!permits.tryAcquire()) {
+          depths.put(child, depth + 1);
+          continue;
+        }
+        ListTask task = new ListTask(child, depth + 1);
+        pending.put(child, task);
+        if (inPool) {
+          task.fork();
+        } else {
+          pool.execute(task);
+        }
+      }
+    }
+  }
+
+  /**
+   * Lists a single directory and forks a task for each of its subdirectories that
+   * is within the depth limit.
+   */
+  @SuppressWarnings("serial")
+  private class ListTask extends RecursiveTask<FileEntry[]> {
+    private final File directory;
+    private final int depth;
+
+    ListTask(File directory, int depth) {
+      this.directory = directory;
+      this.depth = depth;
+    }
+
+    @Override
+    protected FileEntry[] compute() {
+      FileEntry[] entries = reader.list(directory);
+      forkChildren(entries, depth, true);
+      return entries;
+    }
+  }
+}
@@ -0,0 +1,64 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ForkJoinListerTest {
+
+  private static final File ROOT = new File("root");
+
+  private static MemoryTreeSource wideTree() {
+    MemoryTreeSource source = new MemoryTreeSource(ROOT);
+    for (int i = 0; i < 10; i++) {
+      for (int j = 0; j < 10; j++) {
+        source.addFile(new File(ROOT, "d" + i + "/e" + j + "/f.txt"), 1);
+      }
+    }
+    return source;
+  }
+
+  private static String print(TruffulaOptions options, DirectoryLister lister) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new TruffulaPrinter(options, new PrintStream(out)).printTree(lister);
+    return out.toString();
+  }
+
+  @Test
+  void testOutputMatchesSerial() {
+    TruffulaOptions options = new TruffulaOptions(wideTree(), ROOT, false, false);
+    DirectoryLister reader = directory -> DirectoryLister.readDirectory(directory, options);
+    ForkJoinLister lister = new ForkJoinLister(reader, 4);
+    lister.start(ROOT);
+
+    assertEquals(print(options, reader), print(options, lister));
+  }
+
+  @Test
+  void testListingsRunAtMostMaxPendingAhead() {
+    TruffulaOptions options = new TruffulaOptions(wideTree(), ROOT, false, false);
+    AtomicReference<ForkJoinLister> holder = new AtomicReference<>();
+    AtomicInteger mostPending = new AtomicInteger();
+    DirectoryLister reader = directory -> {
+      ForkJoinLister lister = holder.get();
+      if (lister != null) {
+        mostPending.accumulateAndGet(lister.pendingListings(), Math::max);
+      }
+      return DirectoryLister.readDirectory(directory, options);
+    };
+    String serial = print(options, reader);
+
+    // The 111 directories are listed at most five ahead of the printer.
+    ForkJoinLister lister = new ForkJoinLister(reader, 4, 0, 5);
+    holder.set(lister);
+    lister.start(ROOT);
+    assertEquals(serial, print(options, lister));
+    assertTrue(mostPending.get() <= 5, "held " + mostPending.get() + " listings");
+    assertEquals(0, lister.pendingListings());
+  }
+}
@@ -0,0 +1,121 @@
+import java.util.regex.Pattern;
+
+/**
+ * A single compiled glob pattern, in the syntax used by .gitignore files.
+ * 
+ * Supported syntax:
+ * - *      : any run of characters except '/'
+ * - ?      : any single character except '/'
+ * - [abc]  : one character from the set; [!abc] negates it; ranges like [a-z] work
+ * - **     : any run of characters including '/', when it forms a whole path segment
+ * - \x     : the character x, literally
+ * 
+ * Patterns without any of these are matched with String.equals, and patterns of the
+ * form "*.ext" with String.endsWith, so only the remaining patterns pay for a regular
+ * expression. Every pattern is compiled once, when it is created.
+ */
+public class GlobPattern {
+
+  private final String glob;
+  private final String literal;
+  private final String suffix;
+  private final Pattern regex;
+
+  /**
+   * Compiles a glob pattern.
+   *
+   * @param glob the pattern to compile
+   * @throws IllegalArgumentException if the pattern has an unclosed character set
+   */
+  public GlobPattern(String glob) {
+    this.glob = glob;
+    if (!hasWildcards(glob)) {
+      this.literal = glob;
+      this.suffix = null;
+      this.regex = null;
+    } else if (glob.startsWith("*") && !hasWildcards(glob.substring(1)) && glob.indexOf('/') < 0) {
+      this.literal = null;
+      this.suffix = glob.substring(1);
+      this.regex = null;
+    } else {
+      this.literal = null;
+      this.suffix = null;
+      this.regex = Pattern.compile(toRegex(glob));
+    }
+  }
+
+  /**
+   * Tests whether the given name or slash-separated relative path matches the pattern.
+   *
+   * @param text the name or path to test
+   * @return true if it matches
+   */
+  public boolean matches(String text) {
+    if (literal != null) return literal.equals(text);
+    if (suffix != null) return text.endsWith(suffix) && text.lastIndexOf('/') < 0;
+    return regex.matcher(text).matches();
+  }
+
+  @Override
+  public String toString() {
+    return glob;
+  }
+
+  private static boolean hasWildcards(String glob) {
+    for (int i = 0; i < glob.length(); i++) {
+      char c = glob.charAt(i);
+      if (c == '*' || c == '?' || c == '[' || c == '\\') return true;
+    }
+    return false;
+  }
+
+  /**
+   * Translates a glob into an equivalent regular expression.
+   */
+  private static String toRegex(String glob) {
+    StringBuilder regex = new StringBuilder();
+    int i = 0;
+    while (i < glob.length()) {
+      char c = glob.charAt(i);
+      if (c == '*') {
+        boolean segmentStart = i == 0 || glob.charAt(i - 1) == '/';
+        if (i + 1 < glob.length() && glob.charAt(i + 1) == '*' && segmentStart) {
+          if (i + 2 == glob.length()) {
+            regex.append(".*");
+            i += 2;
+            continue;
+          }
+          if (glob.charAt(i + 2) == '/') {
+            regex.append("(?:.*/)?");
+            i += 3;
+            continue;
+          }
+        }
+        regex.append("[^/]*");
+      } else if (c == '?') {
+        regex.append("[^/]");
+      } else if (c == '[') {
+        int end = glob.indexOf(']', i + 2);
+        if (end < 0) {
+          throw new IllegalArgumentException("Unclosed character set in pattern: " + glob);
+        }
+        String set = glob.substring(i + 1, end);
+        regex.append('[');
+        if (set.startsWith("!")) {
+          regex.append('^');
+          set = set.substring(1);
+        }
+        regex.append(set.replace("\\", "\\\\").replace("[", "\\[").replace("&&", "\\&\\&"));
+        regex.append(']');
+        i = end;
+      } else if (c == '\\' && i + 1 < glob.length()) {
+        i++;
+        regex.append(Pattern.quote(String.valueOf(glob.charAt(i))));
+      } else {
+        regex.append(Pattern.quote(String.valueOf(c)));
+      }
+      i++;
+    }
+    return regex.toString();
+  }
+}
@@ -0,0 +1,62 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GlobPatternTest {
+
+  @Test
+  void testLiteralMatchesOnlyExactName() {
+    GlobPattern pattern = new GlobPattern("build");
+
+    assertTrue(pattern.matches("build"));
+    assertFalse(pattern.matches("builds"));
+    assertFalse(pattern.matches("Build"));
+  }
+
+  @Test
+  void testSuffixPattern() {
+    GlobPattern pattern = new GlobPattern("*.java");
+
+    assertTrue(pattern.matches("App.java"));
+    assertTrue(pattern.matches(".java"));
+    assertFalse(pattern.matches("App.java.bak"));
+    assertFalse(pattern.matches("src/App.java"));
+  }
+
+  @Test
+  void testQuestionMarkAndCharacterSets() {
+    assertTrue(new GlobPattern("file?.txt").matches("file1.txt"));
+    assertFalse(new GlobPattern("file?.txt").matches("file10.txt"));
+    assertTrue(new GlobPattern("[a-c]*.log").matches("b.log"));
+    assertFalse(new GlobPattern("[a-c]*.log").matches("d.log"));
+    assertTrue(new GlobPattern("[!a-c]*.log").matches("d.log"));
+    assertFalse(new GlobPattern("[!a-c]*.log").matches("a.log"));
+  }
+
+  @Test
+  void testStarDoesNotCrossSlashButDoubleStarDoes() {
+    assertTrue(new GlobPattern("docs/*.md").matches("docs/readme.md"));
+    assertFalse(new GlobPattern("docs/*.md").matches("docs/guide/readme.md"));
+    assertTrue(new GlobPattern("docs/**/*.md").matches("docs/readme.md"));
+    assertTrue(new GlobPattern("docs/**/*.md").matches("docs/guide/intro/readme.md"));
+    assertTrue(new GlobPattern("**/target").matches("a/b/target"));
+    assertTrue(new GlobPattern("**/target").matches("target"));
+    assertTrue(new GlobPattern("out/**").matches("out/a/b"));
+  }
+
+  @Test
+  void testEscapedAndRegexCharactersAreLiteral() {
+    assertTrue(new GlobPattern("a+b(1).txt").matches("a+b(1).txt"));
+    assertTrue(new GlobPattern("\\*.txt").matches("*.txt"));
+    assertFalse(new GlobPattern("\\*.txt").matches("a.txt"));
+    assertTrue(new GlobPattern("v1.?").matches("v1.2"));
+    assertFalse(new GlobPattern("v1.?").matches("v1x2"));
+  }
+
+  @Test
+  void testUnclosedSetIsRejected() {
+    assertThrows(IllegalArgumentException.class, () -> new GlobPattern("[abc"));
+  }
+}
@@ -0,0 +1,172 @@
+import java.io.File;
+
+/**
+ * Writes tree entries as JSON records while the tree is being walked, for tools
+ * that read truffula's output.
+ *
+ * Each entry becomes one object holding its path, its depth below the root (1 for
+ * the root's own entries), its type and whichever of size, modification time and
+ * permissions were read. The path starts with the root as it was given, so a tree
+ * printed for "project" has records such as:
+ *
+ * {"path":"project/src/App.java","depth":2,"type":"file","size":1024,"modified":1697620200000}
+ *
+ * Directories have type "directory"; one reached through a symbolic link that is
+ * not followed also has a note, such as "recursive, not followed". In place of
+ * entries left out by --max-entries there is a record of type "omitted" whose path
+ * is the directory and whose count is the number of entries left out. A root that
+ * cannot be printed, one of several given, is a record of type "error" at depth 0
+ * with the root's path and an "error" message. Modification times are in
+ * milliseconds since the epoch.
+ *
+ * In NDJSON mode every record is printed on its own line as soon as it is written.
+ * In JSON mode the records are elements of one array, opened by start() and closed
+ * by finish(). Nothing is kept once a record is written, and every record is built
+ * in the same StringBuilder and copied from there into the ColorPrinter's buffer,
+ * so the heap used does not grow with the size of the tree.
+ */
+public class JsonTreeWriter {
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final ColorPrinter out;
+  private final boolean array;
+  private final StringBuilder record = new StringBuilder(256);
+  private boolean first;
+
+  /**
+   * Constructs a writer printing to the given printer, which should have no color set.
+   *
+   * @param out   the printer to write records to
+   * @param array true to write one JSON array, false to write one record per line
+   */
+  public JsonTreeWriter(ColorPrinter out, boolean array) {
+    this.out = out;
+    this.array = array;
+  }
+
+  /**
+   * Starts a new document. In JSON mode this opens the array.
+   */
+  public void start() {
+    first = true;
+    if (array) {
+      out.print("[");
+    }
+  }
+
+  /**
+   * Builds the record for one entry. The record is not printed until write() is
+   * called, so building and writing can be timed separately.
+   *
+   * @param entry the entry
+   * @param depth the entry's depth below the root, starting at 1
+   * @return the builder holding the record, valid until the next call
+   */
+  public StringBuilder render(FileEntry entry, int depth) {
+    StringBuilder line = record;
+    line.setLength(0);
+    if (array) {
+      line.append(first ? "\n  " : ",\n  ");
+    }
+    first = false;
+
+    line.append("{\"path\":");
+    appendString(line, entry.getFile().getPath());
+    line.append(",\"depth\":").append(depth);
+    if (entry.getOmittedCount() > 0) {
+      line.append(",\"type\":\"omitted\",\"count\":").append(entry.getOmittedCount());
+    } else {
+      line.append(",\"type\":").append(entry.isDirectory() ? "\"directory\"" : "\"file\"");
+      int attributes = entry.getAttributes();
+      if ((attributes & FileEntry.SIZE) != 0) {
+        line.append(",\"size\":").append(entry.getSize());
+      }
+      if ((attributes & FileEntry.MODIFIED) != 0) {
+        line.append(",\"modified\":").append(entry.getLastModified());
+      }
+      if ((attributes & FileEntry.PERMISSIONS) != 0) {
+        line.append(",\"permissions\":");
+        appendString(line, entry.getPermissions());
+      }
+      if (entry.getNote() != null) {
+        line.append(",\"note\":");
+        appendString(line, entry.getNote());
+      }
+    }
+    line.append('}');
+    return line;
+  }
+
+  /**
+   * Builds the record reporting that a root could not be printed.
+   *
+   * @param root    the root as it was given
+   * @param message what went wrong
+   * @return the builder holding the record, valid until the next call
+   */
+  public StringBuilder renderError(File root, String message) {
+    StringBuilder line = record;
+    line.setLength(0);
+    if (array) {
+      line.append(first ? "\n  " : ",\n  ");
+    }
+    first = false;
+
+    line.append("{\"path\":");
+    appendString(line, root.getPath());
+    line.append(",\"depth\":0,\"type\":\"error\",\"error\":");
+    appendString(line, message);
+    line.append('}');
+    return line;
+  }
+
+  /**
+   * Prints the record built by the last call to render() or renderError().
+   */
+  public void write() {
+    if (array) {
+      out.print(record);
+    } else {
+      out.println(record);
+    }
+  }
+
+  /**
+   * Ends the document. In JSON mode this closes the array.
+   */
+  public void finish() {
+    if (array) {
+      out.println(first ? "]" : "\n]");
+    }
+  }
+
+  /**
+   * Appends a JSON string literal, escaping quotes, backslashes and control
+   * characters.
+   *
+   * @param line the builder to append to
+   * @param text the text to quote
+   */
+  static void appendString(StringBuilder line, String text) {
+    line.append('"');
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c == '"' || c == '\\') {
+        line.append('\\').append(c);
+      } else if (c == '\n') {
+        line.append("\\n");
+      } else if (c == '\r') {
+        line.append("\\r");
+      } else if (c == '\t') {
+        line.append("\\t");
+      } else if (c < 0x20) {
+        line.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+      } else {
+        line.append(c);
+      }
+    }
+    line.append('"');
+  }
+}
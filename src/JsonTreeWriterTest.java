@@ -0,0 +1,54 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class JsonTreeWriterTest {
+
+  private static String quote(String text) {
+    StringBuilder line = new StringBuilder();
+    JsonTreeWriter.appendString(line, text);
+    return line.toString();
+  }
+
+  @Test
+  void testStringsAreEscaped() {
+    assertEquals("\"plain.txt\"", quote("plain.txt"));
+    assertEquals("\"a\\\"b\\\\c\"", quote("a\"b\\c"));
+    assertEquals("\"line\\nbreak\\ttab\\r\"", quote("line\nbreak\ttab\r"));
+    assertEquals("\"\\u0001\\u001f\"", quote("\u0001\u001f"));
+    assertEquals("\"café 猫\"", quote("café 猫"));
+  }
+
+  @Test
+  void testRecordHoldsOnlyAttributesThatWereRead() {
+    File file = new File("dir", "f.txt");
+    FileEntry plain = new FileEntry(file, false, 0, 0, 0, null);
+    FileEntry full = new FileEntry(file, false, FileEntry.SIZE | FileEntry.MODIFIED | FileEntry.PERMISSIONS,
+        42, 1000, "-rw-");
+    String path = quote(file.getPath());
+
+    JsonTreeWriter writer = new JsonTreeWriter(new ColorPrinter(new PrintStream(new ByteArrayOutputStream())), false);
+
+    assertEquals("{\"path\":" + path + ",\"depth\":3,\"type\":\"file\"}", writer.render(plain, 3).toString());
+    assertEquals("{\"path\":" + path + ",\"depth\":1,\"type\":\"file\",\"size\":42,\"modified\":1000,"
+        + "\"permissions\":\"-rw-\"}", writer.render(full, 1).toString());
+  }
+
+  @Test
+  void testRecordsStreamThroughUnbufferedPrinter() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ColorPrinter out = new ColorPrinter(new PrintStream(bytes), null);
+    JsonTreeWriter writer = new JsonTreeWriter(out, false);
+
+    writer.start();
+    writer.render(new FileEntry(new File("a"), true, 0, 0, 0, null), 1);
+    writer.write();
+    writer.finish();
+
+    assertEquals("{\"path\":\"a\",\"depth\":1,\"type\":\"directory\"}" + System.lineSeparator(), bytes.toString());
+  }
+}
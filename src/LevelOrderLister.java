@@ -0,0 +1,357 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A DirectoryLister that reads the tree one level at a time, listing all of a
+ * level's directories as one parallel batch.
+ *
+ * This suits storage that serves many requests at once well but each one slowly,
+ * such as object-store-backed FUSE mounts and RAID arrays: every batch keeps all
+ * the worker threads busy, where a depth-first walk would mostly wait on one
+ * directory at a time. Large levels are split into batches of a few directories per
+ * thread.
+ *
+ * The printer still asks for listings in depth-first order. Each request waits
+ * until the level-order walk has reached that directory, and the listing is dropped
+ * once handed over. Listings the printer has not consumed yet are held in memory,
+ * up to maxHeldEntries entries in total. When a listing takes the held entries over
+ * the limit, the level-order walk pauses until the printer has consumed enough of
+ * them to bring the count below half the limit, and then resumes its batches. While
+ * the walk is paused, the printer lists any directory it needs that is not held on
+ * its own thread, as the serial lister would, and the walk drops its own listing of
+ * that directory when it gets there. The output is the same either way.
+ *
+ * Several listers may share one thread pool and one count of held entries, so that
+ * the walks of several trees run at once within one thread limit and one memory
+ * limit. Each walk then pauses while the entries held by all of them are over the
+ * limit.
+ *
+ * walkLevels() runs the same level-order walk on the calling thread and hands each
+ * listing to a consumer as soon as its batch is done, for printing the tree level
+ * by level. Only the directories of the next level are kept.
+ */
+public class LevelOrderLister implements DirectoryLister {
+
+  /**
+   * Directories per worker thread in one batch.
+   */
+  private static final int BATCH_PER_THREAD = 64;
+
+  /**
+   * Default limit on the entries held for the printer.
+   */
+  public static final long DEFAULT_MAX_HELD_ENTRIES = 1_000_000;
+
+  private final DirectoryLister reader;
+  private final ExecutorService executor;
+  private final boolean ownExecutor;
+  private final int batchSize;
+  private final int maxDepth;
+  private final long maxHeldEntries;
+
+  /**
+   * The number of entries held in listings, possibly shared with other listers.
+   */
+  private final AtomicLong heldEntries;
+
+  /**
+   * Listings read by the level-order walk and not yet consumed, by directory.
+   * Guarded by itself.
+   */
+  private final Map<File, FileEntry[]> listings = new HashMap<>();
+
+  /**
+   * Directories the printer listed itself while the walk was paused, whose listings
+   * the walk drops when it gets to them. Guarded by listings.
+   */
+  private final Set<File> listedByPrinter = new HashSet<>();
+
+  /**
+   * Whether the level-order walk has ended. Guarded by listings.
+   */
+  private boolean stopped;
+
+  /**
+   * Whether the level-order walk is waiting for the printer to consume held entries.
+   * Guarded by listings.
+   */
+  private boolean paused;
+
+  /**
+   * Constructs a LevelOrderLister with its own threads.
+   *
+   * @param reader         reads a single directory; called from several threads at once
+   * @param parallelism    the number of directories listed at once
+   * @param maxDepth       the number of levels of entries to list, or 0 for no limit
+   * @param maxHeldEntries the most entries held for the printer before the walk pauses
+   */
+  public LevelOrderLister(DirectoryLister reader, int parallelism, int maxDepth, long maxHeldEntries) {
+    this(reader, newPool(parallelism), true, parallelism, maxDepth, maxHeldEntries, new AtomicLong());
+  }
+
+  /**
+   * Constructs a LevelOrderLister that lists on a pool shared with other listers and
+   * counts the entries it holds together with theirs. Closing the lister leaves the
+   * pool running.
+   *
+   * @param reader         reads a single directory; called from several threads at once
+   * @param executor       the shared pool
+   * @param parallelism    the number of threads in the pool
+   * @param maxDepth       the number of levels of entries to list, or 0 for no limit
+   * @param maxHeldEntries the most entries held by all the listers before a walk pauses
+   * @param heldEntries    the count of entries held by all the listers
+   */
+  public LevelOrderLister(DirectoryLister reader, ExecutorService executor, int parallelism, int maxDepth,
+      long maxHeldEntries, AtomicLong heldEntries) {
+    this(reader, executor, false, parallelism, maxDepth, maxHeldEntries, heldEntries);
+  }
+
+  private LevelOrderLister(DirectoryLister reader, ExecutorService executor, boolean ownExecutor,
+      int parallelism, int maxDepth, long maxHeldEntries, AtomicLong heldEntries) {
+    this.reader = reader;
+    this.executor = executor;
+    this.ownExecutor = ownExecutor;
+    this.maxDepth = maxDepth;
+    this.maxHeldEntries = maxHeldEntries;
+    this.heldEntries = heldEntries;
+    this.batchSize = parallelism * BATCH_PER_THREAD;
+  }
+
+  /**
+   * Creates a pool of daemon threads for listing directories.
+   *
+   * @param parallelism the number of threads
+   * @return the pool
+   */
+  public static ExecutorService newPool(int parallelism) {
+    return Executors.newFixedThreadPool(parallelism, task -> {
+      Thread thread = new Thread(task, "truffula-level");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Starts the level-order walk below the given root in the background.
+   *
+   * @param root the root directory of the tree
+   */
+  public void start(File root) {
+    Thread walker = new Thread(() -> walk(root), "truffula-level-walk");
+    walker.setDaemon(true);
+    walker.start();
+  }
+
+  /**
+   * Receives the listings of a level-order walk.
+   */
+  public interface LevelConsumer {
+
+    /**
+     * Receives the listing of one directory. Directories arrive level by level, and
+     * within a level in the order of their parents' listings. The walk does not read
+     * the listing again, so the consumer may keep or change it.
+     *
+     * @param depth     the directory's level below the root, 0 for the root
+     * @param directory the directory
+     * @param entries   its listing, or null if it could not be listed
+     * @return false to stop the walk once the current batch has been handed over
+     */
+    boolean accept(int depth, File directory, FileEntry[] entries);
+  }
+
+  /**
+   * Walks the tree below the root in level order on the calling thread, listing
+   * each batch in parallel.
+   *
+   * @param root     the root directory of the tree
+   * @param consumer receives every listing
+   * @throws InterruptedException if interrupted while a batch is being listed
+   */
+  public void walkLevels(File root, LevelConsumer consumer) throws InterruptedException {
+    List<File> level = List.of(root);
+    for (int depth = 0; !level.isEmpty(); depth++) {
+      boolean descend = maxDepth == 0 || depth + 1 < maxDepth;
+      List<File> next = new ArrayList<>();
+      for (int from = 0; from < level.size(); from += batchSize) {
+        List<File> batch = level.subList(from, Math.min(level.size(), from + batchSize));
+        FileEntry[][] results = listBatch(batch);
+        boolean proceed = true;
+        for (int i = 0; i < results.length; i++) {
+          // The consumer may hand the listing on to be changed, so it is read first.
+          if (descend && results[i] != null) {
+            for (FileEntry entry : results[i]) {
+              if (entry.canDescend()) {
+                next.add(entry.getFile());
+              }
+            }
+          }
+          proceed &= consumer.accept(depth, batch.get(i), results[i]);
+        }
+        if (!proceed) return;
+      }
+      level = next;
+    }
+  }
+
+  /**
+   * Lists a batch of directories in parallel and waits for all of them. A listing
+   * that fails on a worker is read again on the calling thread.
+   */
+  private FileEntry[][] listBatch(List<File> directories) throws InterruptedException {
+    List<Callable<FileEntry[]>> tasks = new ArrayList<>(directories.size());
+    for (File directory : directories) {
+      tasks.add(() -> reader.list(directory));
+    }
+    List<Future<FileEntry[]>> futures = executor.invokeAll(tasks);
+    FileEntry[][] results = new FileEntry[futures.size()][];
+    for (int i = 0; i < results.length; i++) {
+      try {
+        results[i] = futures.get(i).get();
+      } catch (ExecutionException e) {
+        results[i] = reader.list(directories.get(i));
+      }
+    }
+    return results;
+  }
+
+  @Override
+  public FileEntry[] list(File directory) {
+    synchronized (listings) {
+      while (!listings.containsKey(directory) && !stopped && !paused) {
+        try {
+          listings.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+      if (listings.containsKey(directory)) {
+        FileEntry[] entries = listings.remove(directory);
+        release(entries);
+        return entries;
+      }
+      if (paused && !stopped) {
+        listedByPrinter.add(directory);
+      }
+    }
+    return reader.list(directory);
+  }
+
+  @Override
+  public void close() {
+    if (ownExecutor) {
+      executor.shutdownNow();
+    }
+    synchronized (listings) {
+      stopped = true;
+      for (FileEntry[] entries : listings.values()) {
+        release(entries);
+      }
+      listings.clear();
+      listedByPrinter.clear();
+      listings.notifyAll();
+    }
+    synchronized (heldEntries) {
+      heldEntries.notifyAll();
+    }
+    reader.close();
+  }
+
+  /**
+   * Takes a consumed listing off the held entries, and wakes paused walks once the
+   * count falls below the low-water mark.
+   */
+  private void release(FileEntry[] entries) {
+    if (entries == null || entries.length == 0) return;
+    long held = heldEntries.addAndGet(-entries.length);
+    if (held < lowWaterMark() && held + entries.length >= lowWaterMark()) {
+      synchronized (heldEntries) {
+        heldEntries.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * The count of held entries below which a paused walk resumes.
+   */
+  private long lowWaterMark() {
+    return maxHeldEntries / 2;
+  }
+
+  /**
+   * Indicates whether the walk is paused until the printer catches up.
+   */
+  boolean isPaused() {
+    synchronized (listings) {
+      return paused;
+    }
+  }
+
+  /**
+   * Runs the level-order walk in the background until the tree is read or the
+   * lister is closed.
+   */
+  private void walk(File root) {
+    try {
+      walkLevels(root, this::publish);
+    } catch (InterruptedException | RejectedExecutionException e) {
+      // Closed while a batch was being listed.
+    } finally {
+      synchronized (listings) {
+        stopped = true;
+        listings.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Hands a listing to the printer, unless the printer has listed the directory
+   * itself, and pauses while the held entries are over the limit.
+   *
+   * @return false once the walk should stop
+   */
+  private boolean publish(int depth, File directory, FileEntry[] entries) {
+    long held;
+    synchronized (listings) {
+      if (stopped) return false;
+      if (listedByPrinter.remove(directory)) return true;
+      listings.put(directory, entries);
+      held = heldEntries.addAndGet(entries == null ? 0 : entries.length);
+      listings.notifyAll();
+      if (held <= maxHeldEntries) return true;
+      paused = true;
+    }
+    try {
+      synchronized (heldEntries) {
+        while (heldEntries.get() >= lowWaterMark() && !isStopped()) {
+          heldEntries.wait();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (listings) {
+      paused = false;
+      return !stopped && !Thread.currentThread().isInterrupted();
+    }
+  }
+
+  private boolean isStopped() {
+    synchronized (listings) {
+      return stopped;
+    }
+  }
+}
@@ -0,0 +1,241 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LevelOrderListerTest {
+
+  private static final String NL = System.lineSeparator();
+
+  private static String print(TruffulaOptions options) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new TruffulaPrinter(options, new PrintStream(out)).printTree();
+    return out.toString();
+  }
+
+  private static String print(TruffulaOptions options, DirectoryLister lister) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new TruffulaPrinter(options, new PrintStream(out)).printTree(lister);
+    return out.toString();
+  }
+
+  private static void createTree(File parent, int depth, int fanOut) throws IOException {
+    for (int i = 0; i < fanOut; i++) {
+      new File(parent, "file" + i + ".txt").createNewFile();
+      if (depth > 0) {
+        File child = new File(parent, "dir" + i);
+        assertTrue(child.mkdir());
+        createTree(child, depth - 1, fanOut);
+      }
+    }
+  }
+
+  @Test
+  void testNestedOutputMatchesSerial(@TempDir File tempDir) throws IOException {
+    createTree(tempDir, 3, 4);
+    String path = tempDir.getPath();
+
+    String serial = print(new TruffulaOptions(new String[]{"-nc", "-s", path}));
+    String levelOrder = print(new TruffulaOptions(new String[]{"-nc", "-s", "--level-order", "-j", "3", path}));
+
+    assertEquals(serial, levelOrder);
+  }
+
+  private static void awaitPausedHolding(LevelOrderLister lister, AtomicLong held, long entries)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + 10_000_000_000L;
+    while (!(lister.isPaused() && held.get() == entries)) {
+      assertTrue(System.nanoTime() < deadline, "walk did not pause holding " + entries + " entries");
+      Thread.sleep(1);
+    }
+  }
+
+  @Test
+  void testWalkPausesAtTheHeldEntryLimitAndResumes() throws InterruptedException {
+    File root = new File("root");
+    MemoryTreeSource source = new MemoryTreeSource(root);
+    for (int i = 0; i < 5; i++) {
+      source.addFile(new File(root, "d" + i + "/sub/f.txt"), 1);
+    }
+    source.addFile(new File(root, "d4/x.txt"), 1);
+    source.addFile(new File(root, "d4/y.txt"), 1);
+    TruffulaOptions options = new TruffulaOptions(source, root, false, false);
+    List<File> listed = new ArrayList<>();
+    List<File> listedByPrinter = new CopyOnWriteArrayList<>();
+    Thread test = Thread.currentThread();
+    DirectoryLister reader = directory -> {
+      synchronized (listed) {
+        listed.add(directory);
+      }
+      if (Thread.currentThread() == test) {
+        listedByPrinter.add(directory);
+      }
+      return DirectoryLister.readDirectory(directory, options);
+    };
+    ExecutorService pool = LevelOrderLister.newPool(2);
+    AtomicLong held = new AtomicLong();
+    LevelOrderLister lister = new LevelOrderLister(reader, pool, 2, 0, 4, held);
+
+    // Every level holds more than the limit of four entries, so the walk pauses after
+    // each one and resumes once the printer has consumed it down to two.
+    lister.start(root);
+    awaitPausedHolding(lister, held, 5);
+    assertEquals(5, lister.list(root).length);
+    awaitPausedHolding(lister, held, 7);
+    for (int i = 0; i < 5; i++) {
+      assertEquals(i < 4 ? 1 : 3, lister.list(new File(root, "d" + i)).length);
+    }
+    awaitPausedHolding(lister, held, 5);
+    for (int i = 0; i < 5; i++) {
+      assertEquals(1, lister.list(new File(root, "d" + i + "/sub")).length);
+    }
+    lister.close();
+    pool.shutdownNow();
+
+    assertEquals(1 + 5 + 5, listed.size());
+    assertEquals(List.of(), listedByPrinter);
+    assertEquals(0, held.get());
+  }
+
+  @Test
+  void testPausedWalkPrintsTheSameTree(@TempDir File tempDir) throws IOException {
+    createTree(tempDir, 3, 4);
+    TruffulaOptions options = new TruffulaOptions(new String[]{"-nc", tempDir.getPath()});
+    String serial = print(options);
+
+    // The printer lists some directories itself while the walk is paused.
+    for (int i = 0; i < 20; i++) {
+      LevelOrderLister lister = new LevelOrderLister(
+          directory -> DirectoryLister.readDirectory(directory, options), 2, 0, 6);
+      lister.start(tempDir);
+      assertEquals(serial, print(options, lister));
+    }
+  }
+
+  @Test
+  void testWalkLevelsVisitsOneLevelAtATime() throws InterruptedException {
+    File root = new File("root");
+    MemoryTreeSource source = new MemoryTreeSource(root);
+    source.addFile(new File(root, "a/b/c.txt"), 1);
+    source.addFile(new File(root, "d/e.txt"), 1);
+    TruffulaOptions options = new TruffulaOptions(source, root, false, false);
+    LevelOrderLister lister = new LevelOrderLister(
+        directory -> DirectoryLister.readDirectory(directory, options), 2, 0, 0);
+
+    List<String> visited = new ArrayList<>();
+    lister.walkLevels(root, (depth, directory, entries) -> {
+      visited.add(depth + " " + directory.getName() + " " + entries.length);
+      return true;
+    });
+    lister.close();
+
+    assertEquals(List.of("0 root 2", "1 a 1", "1 d 1", "2 b 1"), visited);
+  }
+
+  @Test
+  void testByLevelPrintsPathsLevelByLevel(@TempDir File tempDir) throws IOException {
+    assertTrue(new File(tempDir, "a/b").mkdirs());
+    new File(tempDir, "a/b/c.txt").createNewFile();
+    new File(tempDir, "a/x.txt").createNewFile();
+    new File(tempDir, "z.txt").createNewFile();
+
+    String sep = File.separator;
+    assertEquals("a/" + NL
+        + "z.txt" + NL
+        + "a" + sep + "b/" + NL
+        + "a" + sep + "x.txt" + NL
+        + "a" + sep + "b" + sep + "c.txt" + NL,
+        print(new TruffulaOptions(new String[]{"-nc", "--by-level", tempDir.getPath()})));
+  }
+
+  @Test
+  void testByLevelRespectsTheDepthLimit(@TempDir File tempDir) throws IOException {
+    createTree(tempDir, 3, 2);
+    String path = tempDir.getPath();
+
+    String output = print(new TruffulaOptions(new String[]{"-nc", "--by-level", "-L", "2", path}));
+
+    assertEquals(4 + 8, output.split(NL).length);
+    assertTrue(output.startsWith("dir0/" + NL + "dir1/" + NL + "file0.txt" + NL + "file1.txt" + NL));
+  }
+
+  @Test
+  void testListersShareOnePoolAndOneLimit() {
+    File root = new File("root");
+    MemoryTreeSource source = new MemoryTreeSource(root);
+    for (int i = 0; i < 3; i++) {
+      source.addFile(new File(root, "d" + i + "/f.txt"), 1);
+    }
+    TruffulaOptions options = new TruffulaOptions(source, root, false, false);
+    DirectoryLister reader = directory -> DirectoryLister.readDirectory(directory, options);
+    ExecutorService pool = LevelOrderLister.newPool(2);
+    AtomicLong held = new AtomicLong();
+
+    // Together the two walks hold more than the limit allows, yet each tree prints
+    // in full, and closing the listers releases every held entry.
+    LevelOrderLister first = new LevelOrderLister(reader, pool, 2, 0, 4, held);
+    LevelOrderLister second = new LevelOrderLister(reader, pool, 2, 0, 4, held);
+    first.start(root);
+    second.start(root);
+    String expected = print(options);
+    assertEquals(expected, print(options, first));
+    assertEquals(expected, print(options, second));
+    assertEquals(0, held.get());
+    assertFalse(pool.isShutdown());
+    pool.shutdownNow();
+  }
+
+  @Test
+  void testConsumersMayClearTheListingsTheyAreGiven() throws InterruptedException {
+    File root = new File("root");
+    MemoryTreeSource source = new MemoryTreeSource(root);
+    source.addFile(new File(root, "a/b/c.txt"), 1);
+    source.addFile(new File(root, "d/e.txt"), 1);
+    TruffulaOptions options = new TruffulaOptions(source, root, false, false);
+    LevelOrderLister lister = new LevelOrderLister(
+        directory -> DirectoryLister.readDirectory(directory, options), 2, 0, 0);
+
+    // The printer clears each entry as it prints it.
+    List<String> visited = new ArrayList<>();
+    lister.walkLevels(root, (depth, directory, entries) -> {
+      visited.add(directory.getName());
+      Arrays.fill(entries, null);
+      return true;
+    });
+    lister.close();
+
+    assertEquals(List.of("root", "a", "d", "b"), visited);
+  }
+
+  @Test
+  void testWalkerThreadDoesNotFail(@TempDir File tempDir) throws IOException, InterruptedException {
+    createTree(tempDir, 3, 6);
+    List<Throwable> failures = new CopyOnWriteArrayList<>();
+    Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+    Thread.setDefaultUncaughtExceptionHandler((thread, e) -> failures.add(e));
+    try {
+      String serial = print(new TruffulaOptions(new String[]{"-nc", tempDir.getPath()}));
+      for (int i = 0; i < 20; i++) {
+        assertEquals(serial, print(new TruffulaOptions(new String[]{"-nc", "--level-order", "-j", "2", tempDir.getPath()})));
+      }
+      Thread.sleep(100);
+    } finally {
+      Thread.setDefaultUncaughtExceptionHandler(previous);
+    }
+
+    assertTrue(failures.isEmpty(), () -> failures.size() + " walker threads failed: " + failures.get(0));
+  }
+}
@@ -0,0 +1,387 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A DirectoryLister that remembers sorted directory listings on disk between runs.
+ * 
+ * Each listing is stored under the directory's path together with the directory's
+ * last-modified time. Creating, deleting or renaming an entry changes that time, so
+ * a directory whose time still matches can be served from the cache without calling
+ * listFiles() or checking which entries are directories. Any other directory is read
+ * from the filesystem and its new listing replaces the old one.
+ * 
+ * The cache stores every entry, hidden or not, with only its name and whether it is
+ * a directory. Hidden entries are filtered out when the listing is served, and the
+ * size, time and permission columns are always read fresh, because changing a file's
+ * contents does not change its parent directory's time.
+ * 
+ * The cache holds at most maxEntries entries in total. When it grows past that, the
+ * least recently used listings are evicted. A cache file that is missing, truncated,
+ * corrupt, or from another version is ignored and the tree is listed in full. The
+ * file is rewritten when the lister is closed.
+ * 
+ * A cache without a file lives only in memory. Since a listing does not depend on
+ * the options it was read with, such a cache can serve requests with different
+ * options at once, each passing its own to list(File, TruffulaOptions).
+ */
+public class ListingCache implements DirectoryLister {
+
+  /**
+   * Default limit on the total number of entries held across all listings.
+   */
+  public static final int DEFAULT_MAX_ENTRIES = 1_000_000;
+
+  /**
+   * Identifies a truffula cache file.
+   */
+  private static final int MAGIC = 0x54524643;
+
+  /**
+   * Bumped whenever the file layout changes, so old files are ignored.
+   */
+  private static final int VERSION = 1;
+
+  /**
+   * Listings whose directory changed less than this long before being read are not
+   * cached, since a further change within the same timestamp tick would go unseen.
+   */
+  private static final long RACY_WINDOW_MILLIS = 2000;
+
+  private final File cacheFile;
+  private final TruffulaOptions options;
+  private final int maxEntries;
+
+  /**
+   * Cached listings by directory path, least recently used first.
+   */
+  private final LinkedHashMap<String, Listing> listings = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * The number of entries held across all listings.
+   */
+  private long entryCount;
+
+  /**
+   * Whether any listing was added or evicted since the cache file was read.
+   */
+  private boolean changed;
+
+  /**
+   * Constructs a ListingCache backed by the given file, reading whatever it holds.
+   *
+   * @param cacheFile  the file the cache is read from and written to
+   * @param options    the options deciding which entries are kept and which attributes are read
+   * @param maxEntries the maximum number of entries held across all listings
+   */
+  public ListingCache(File cacheFile, TruffulaOptions options, int maxEntries) {
+    this.cacheFile = cacheFile;
+    this.options = options;
+    this.maxEntries = maxEntries;
+    load();
+  }
+
+  /**
+   * Constructs an in-memory ListingCache with no file, for use with
+   * list(File, TruffulaOptions) only.
+   *
+   * @param maxEntries the maximum number of entries held across all listings
+   */
+  public ListingCache(int maxEntries) {
+    this.cacheFile = null;
+    this.options = null;
+    this.maxEntries = maxEntries;
+  }
+
+  @Override
+  public FileEntry[] list(File directory) {
+    return list(directory, options);
+  }
+
+  /**
+   * Returns the listing of a directory as the given options would have it, from the
+   * cache if the directory has not changed since it was cached. May be called from
+   * several threads at once.
+   *
+   * @param directory the directory to list
+   * @param options   the options deciding which entries are kept and which attributes are read
+   * @return the sorted children, or null if the directory could not be listed
+   */
+  public FileEntry[] list(File directory, TruffulaOptions options) {
+    String note = options.getLinks().check(directory);
+    if (note != null) return DirectoryLister.unlisted(directory, note);
+
+    TruffulaEvents.Listing event = TruffulaEvents.beginListing();
+    TreeStats stats = options.getStats();
+    long start = stats == null ? 0 : System.nanoTime();
+    String path = directory.getAbsolutePath();
+    TreeSource source = options.getSource();
+    long modified = source.lastModified(directory);
+
+    Listing listing;
+    synchronized (this) {
+      listing = listings.get(path);
+    }
+    if (listing == null || listing.modified != modified || modified == 0) {
+      listing = readListing(source, stats, directory, modified);
+      if (listing == null) {
+        if (stats != null) stats.recordListing(directory, 0, null, 0, 0, System.nanoTime() - start);
+        DirectoryLister.commitListing(event, directory, null);
+        return null;
+      }
+      if (System.currentTimeMillis() - modified >= RACY_WINDOW_MILLIS) {
+        store(path, listing);
+      }
+    }
+    FileEntry[] entries = listing.toEntries(directory, options, start);
+    DirectoryLister.commitListing(event, directory, entries);
+    return entries;
+  }
+
+  /**
+   * Writes the cache back to its file if anything changed.
+   */
+  @Override
+  public synchronized void close() {
+    if (!changed || cacheFile == null) return;
+    try {
+      save();
+      changed = false;
+    } catch (IOException e) {
+      // A cache that cannot be written only costs a full listing next time.
+    }
+  }
+
+  /**
+   * Returns the number of directories currently cached.
+   *
+   * @return the number of cached listings
+   */
+  public synchronized int size() {
+    return listings.size();
+  }
+
+  /**
+   * Lists a directory from the filesystem, keeping hidden entries so the listing
+   * can serve any options.
+   */
+  private static Listing readListing(TreeSource source, TreeStats stats, File directory, long modified) {
+    String[] files = source.list(directory);
+    if (files == null) return null;
+
+    FileEntry[] entries = new FileEntry[files.length];
+    for (int i = 0; i < files.length; i++) {
+      entries[i] = FileEntry.read(source, new File(directory, files[i]), 0);
+    }
+    TreeStats.Timer sortTimer = TreeStats.start(stats, TreeStats.Phase.SORT);
+    AlphabeticalFileSorter.sort(entries);
+    TreeStats.stop(sortTimer);
+
+    String[] names = new String[entries.length];
+    boolean[] directories = new boolean[entries.length];
+    for (int i = 0; i < entries.length; i++) {
+      names[i] = entries[i].getName();
+      directories[i] = entries[i].isDirectory();
+    }
+    return new Listing(modified, names, directories);
+  }
+
+  private synchronized void store(String path, Listing listing) {
+    Listing previous = listings.put(path, listing);
+    if (previous != null) {
+      entryCount -= previous.names.length;
+    }
+    entryCount += listing.names.length;
+    changed = true;
+
+    Iterator<Listing> eldest = listings.values().iterator();
+    while (entryCount > maxEntries && eldest.hasNext()) {
+      entryCount -= eldest.next().names.length;
+      eldest.remove();
+    }
+  }
+
+  /**
+   * Reads the cache file. Anything unreadable leaves the cache empty.
+   */
+  private void load() {
+    if (cacheFile == null || !cacheFile.isFile()) return;
+
+    long fileLength = cacheFile.length();
+    CRC32 checksum = new CRC32();
+    try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+        new BufferedInputStream(new FileInputStream(cacheFile)), checksum))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) return;
+
+      int count = in.readInt();
+      Map<String, Listing> loaded = new LinkedHashMap<>();
+      long loadedEntries = 0;
+      for (int i = 0; i < count; i++) {
+        String path = in.readUTF();
+        long modified = in.readLong();
+        int size = in.readInt();
+        if (size < 0 || size > fileLength) return;
+        String[] names = new String[size];
+        boolean[] directories = new boolean[size];
+        for (int j = 0; j < size; j++) {
+          names[j] = in.readUTF();
+          directories[j] = in.readBoolean();
+        }
+        loaded.put(path, new Listing(modified, names, directories));
+        loadedEntries += size;
+      }
+
+      long expected = checksum.getValue();
+      if (in.readLong() != expected) return;
+
+      listings.putAll(loaded);
+      entryCount = loadedEntries;
+    } catch (EOFException e) {
+      // Truncated file: start empty.
+    } catch (IOException e) {
+      // Unreadable file: start empty.
+    }
+  }
+
+  /**
+   * Writes the cache to a temporary file and moves it into place, so a reader never
+   * sees a half-written cache.
+   */
+  private void save() throws IOException {
+    File parent = cacheFile.getAbsoluteFile().getParentFile();
+    if (parent != null) {
+      parent.mkdirs();
+    }
+    File temp = new File(cacheFile.getPath() + ".tmp");
+
+    CRC32 checksum = new CRC32();
+    try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+        new BufferedOutputStream(new FileOutputStream(temp), 64 * 1024), checksum))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+
+      Map<String, Listing> writable = new LinkedHashMap<>();
+      for (Map.Entry<String, Listing> entry : listings.entrySet()) {
+        if (isWritable(entry.getKey(), entry.getValue())) {
+          writable.put(entry.getKey(), entry.getValue());
+        }
+      }
+
+      out.writeInt(writable.size());
+      for (Map.Entry<String, Listing> entry : writable.entrySet()) {
+        Listing listing = entry.getValue();
+        out.writeUTF(entry.getKey());
+        out.writeLong(listing.modified);
+        out.writeInt(listing.names.length);
+        for (int i = 0; i < listing.names.length; i++) {
+          out.writeUTF(listing.names[i]);
+          out.writeBoolean(listing.directories[i]);
+        }
+      }
+      out.flush();
+      out.writeLong(checksum.getValue());
+    }
+
+    if (!temp.renameTo(cacheFile)) {
+      cacheFile.delete();
+      if (!temp.renameTo(cacheFile)) {
+        temp.delete();
+        throw new IOException("Could not replace cache file: " + cacheFile);
+      }
+    }
+  }
+
+  /**
+   * Checks that every string of a listing fits writeUTF's 64KB limit.
+   */
+  private static boolean isWritable(String path, Listing listing) {
+    if (!fitsUtf(path)) return false;
+    for (String name : listing.names) {
+      if (!fitsUtf(name)) return false;
+    }
+    return true;
+  }
+
+  private static boolean fitsUtf(String value) {
+    // Each char takes at most 3 bytes in modified UTF-8.
+    return value.length() <= 65535 / 3;
+  }
+
+  /**
+   * The sorted names of a directory's entries and which of them are directories.
+   */
+  private static class Listing {
+    private final long modified;
+    private final String[] names;
+    private final boolean[] directories;
+
+    Listing(long modified, String[] names, boolean[] directories) {
+      this.modified = modified;
+      this.names = names;
+      this.directories = directories;
+    }
+
+    /**
+     * Builds the entries to print, dropping hidden and filtered ones, applying the
+     * entry cap, and reading any requested column attributes. With --stats on, the
+     * listing is recorded as having started at the given time.
+     */
+    FileEntry[] toEntries(File directory, TruffulaOptions options, long start) {
+      TreeSource source = options.getSource();
+      boolean showHidden = options.isShowHidden();
+      int attributes = options.getAttributes();
+      EntryFilter filter = options.getFilter();
+      // Without patterns the cap is known up front, so entries past it are only counted.
+      int limit = options.getMaxEntries() > 0 ? options.getMaxEntries() : Integer.MAX_VALUE;
+      int readLimit = filter == null ? limit : names.length;
+      FileEntry[] entries = new FileEntry[Math.min(names.length, readLimit)];
+      int count = 0;
+      int skipped = 0;
+      boolean hasIgnoreFile = false;
+      for (int i = 0; i < names.length; i++) {
+        if (names[i].equals(EntryFilter.GITIGNORE)) {
+          hasIgnoreFile = true;
+        }
+        if (showHidden || !names[i].startsWith(".")) {
+          if (count < readLimit) {
+            entries[count++] = FileEntry.read(source, new File(directory, names[i]), directories[i], attributes);
+          } else {
+            skipped++;
+          }
+        }
+      }
+      entries = count == entries.length ? entries : Arrays.copyOf(entries, count);
+      int excluded = 0;
+      if (filter != null) {
+        int before = entries.length;
+        entries = filter.filter(directory, entries, hasIgnoreFile);
+        excluded = before - entries.length;
+        if (entries.length > limit) {
+          skipped = entries.length - limit;
+          entries = Arrays.copyOf(entries, limit);
+        }
+      }
+      FileEntry[] result = skipped > 0 ? DirectoryLister.withOmitted(directory, entries, skipped) : entries;
+
+      TreeStats stats = options.getStats();
+      if (stats != null) {
+        int hidden = names.length - count - (filter == null ? skipped : 0);
+        stats.recordListing(directory, names.length, result, hidden, excluded, System.nanoTime() - start);
+      }
+      return result;
+    }
+  }
+}
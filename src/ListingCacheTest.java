@@ -0,0 +1,131 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ListingCacheTest {
+
+  private static final long AN_HOUR_AGO = System.currentTimeMillis() - 3_600_000;
+
+  private static File createTree(File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    File docs = new File(root, "Docs");
+    assertTrue(docs.mkdirs());
+    new File(root, "b.txt").createNewFile();
+    new File(root, ".hidden").createNewFile();
+    new File(docs, "a.txt").createNewFile();
+    assertTrue(docs.setLastModified(AN_HOUR_AGO));
+    assertTrue(root.setLastModified(AN_HOUR_AGO));
+    return root;
+  }
+
+  private static String print(String... args) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new TruffulaPrinter(new TruffulaOptions(args), new PrintStream(out)).printTree();
+    return out.toString();
+  }
+
+  @Test
+  void testCachedOutputMatchesUncached(@TempDir File tempDir) throws IOException {
+    File root = createTree(tempDir);
+    String cache = new File(tempDir, "cache.bin").getAbsolutePath();
+    String path = root.getAbsolutePath();
+
+    String uncached = print(path);
+    String firstRun = print("--cache", cache, path);
+    String secondRun = print("--cache", cache, path);
+    String withHidden = print("-h", "--cache", cache, path);
+
+    assertEquals(uncached, firstRun);
+    assertEquals(uncached, secondRun);
+    assertEquals(print("-h", path), withHidden);
+    assertTrue(new File(cache).isFile());
+  }
+
+  @Test
+  void testUnchangedDirectoryIsServedFromCache(@TempDir File tempDir) throws IOException {
+    File root = createTree(tempDir);
+    File docs = new File(root, "Docs");
+    String cache = new File(tempDir, "cache.bin").getAbsolutePath();
+    String path = root.getAbsolutePath();
+    print("--cache", cache, path);
+
+    // Sneak a file in without changing the directory's time: a cache hit cannot see it.
+    new File(docs, "sneaky.txt").createNewFile();
+    assertTrue(docs.setLastModified(AN_HOUR_AGO));
+    assertFalse(print("--cache", cache, path).contains("sneaky.txt"));
+
+    // Once the directory's time moves, it is listed again.
+    assertTrue(docs.setLastModified(AN_HOUR_AGO + 60_000));
+    assertTrue(print("--cache", cache, path).contains("sneaky.txt"));
+  }
+
+  @Test
+  void testRecentlyChangedDirectoryIsNotCached(@TempDir File tempDir) throws IOException {
+    File root = createTree(tempDir);
+    File cacheFile = new File(tempDir, "cache.bin");
+    TruffulaOptions options = new TruffulaOptions(root, false, false);
+
+    ListingCache cache = new ListingCache(cacheFile, options, ListingCache.DEFAULT_MAX_ENTRIES);
+    assertTrue(root.setLastModified(System.currentTimeMillis()));
+    cache.list(root);
+    cache.list(new File(root, "Docs"));
+
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  void testCorruptCacheFallsBackToFullListing(@TempDir File tempDir) throws IOException {
+    File root = createTree(tempDir);
+    File cacheFile = new File(tempDir, "cache.bin");
+    String path = root.getAbsolutePath();
+    String expected = print(path);
+
+    try (FileOutputStream out = new FileOutputStream(cacheFile)) {
+      out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+    }
+    assertEquals(expected, print("--cache", cacheFile.getAbsolutePath(), path));
+
+    // Flip a byte in the middle of a valid cache: the checksum rejects it.
+    try (RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+      file.seek(file.length() / 2);
+      int b = file.read();
+      file.seek(file.length() / 2);
+      file.write(b ^ 0xFF);
+    }
+    assertEquals(0, new ListingCache(cacheFile, new TruffulaOptions(root, false, false), 100).size());
+    assertEquals(expected, print("--cache", cacheFile.getAbsolutePath(), path));
+  }
+
+  @Test
+  void testEvictsLeastRecentlyUsedListingsPastLimit(@TempDir File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    for (int i = 0; i < 5; i++) {
+      File dir = new File(root, "dir" + i);
+      assertTrue(dir.mkdirs());
+      new File(dir, "one.txt").createNewFile();
+      new File(dir, "two.txt").createNewFile();
+      assertTrue(dir.setLastModified(AN_HOUR_AGO));
+    }
+    File cacheFile = new File(tempDir, "cache.bin");
+    TruffulaOptions options = new TruffulaOptions(root, false, false);
+
+    ListingCache cache = new ListingCache(cacheFile, options, 5);
+    for (int i = 0; i < 5; i++) {
+      cache.list(new File(root, "dir" + i));
+    }
+    assertEquals(2, cache.size());
+    cache.close();
+
+    assertEquals(2, new ListingCache(cacheFile, options, 5).size());
+  }
+}
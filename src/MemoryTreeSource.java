@@ -0,0 +1,405 @@
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * A TreeSource that holds a whole tree in memory, for tests and benchmarks that should
+ * not depend on the disk, and for trees built from other sources.
+ *
+ * The tree is stored column-wise: every node is an index into a handful of primitive
+ * arrays, and all names share one char array. A node costs about 50 bytes plus two
+ * per name character, with no object of its own, so millions of nodes fit in a few
+ * hundred megabytes and put no load on the garbage collector. Children are found
+ * through a single open-addressing hash table keyed on parent and name, so resolving
+ * a path takes one probe per path segment and allocates nothing. Paths below the
+ * directory listed last are resolved from that directory, so reading the entries of
+ * a listing costs one probe each, however deep the tree.
+ *
+ * All paths are java.io.File paths below the root given to the constructor. Adding
+ * an entry creates any missing parent directories, like File.mkdirs(), and moves the
+ * parent's last-modified time to the entry's. Build the tree before listing it:
+ * any number of threads may read it at once, but not while it is being changed.
+ */
+public class MemoryTreeSource implements TreeSource {
+
+  private static final int ROOT = 0;
+  private static final int NONE = -1;
+
+  private static final byte DIRECTORY = 1;
+  private static final byte READABLE = 2;
+  private static final byte WRITABLE = 4;
+  private static final byte EXECUTABLE = 8;
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final String rootPath;
+
+  // One slot per node.
+  private int count;
+  private int[] parent;
+  private int[] firstChild;
+  private int[] nextSibling;
+  private int[] nameStart;
+  private short[] nameLength;
+  private long[] size;
+  private long[] modified;
+  private byte[] flags;
+
+  // The names of all nodes, back to back.
+  private char[] names = new char[INITIAL_CAPACITY * 8];
+  private int namesUsed;
+
+  // Node index + 1 by hash of parent and name; 0 marks an empty slot.
+  private int[] table = new int[INITIAL_CAPACITY * 2];
+
+  // The directory listed last. Its entries are usually asked about next, so paths
+  // below it are resolved from there instead of from the root.
+  private volatile Resolved lastListed;
+
+  /**
+   * Constructs a tree holding only its root directory.
+   *
+   * @param root the path of the root directory; every entry added must lie below it
+   */
+  public MemoryTreeSource(File root) {
+    this.rootPath = root.getPath();
+    parent = new int[INITIAL_CAPACITY];
+    firstChild = new int[INITIAL_CAPACITY];
+    nextSibling = new int[INITIAL_CAPACITY];
+    nameStart = new int[INITIAL_CAPACITY];
+    nameLength = new short[INITIAL_CAPACITY];
+    size = new long[INITIAL_CAPACITY];
+    modified = new long[INITIAL_CAPACITY];
+    flags = new byte[INITIAL_CAPACITY];
+
+    count = 1;
+    parent[ROOT] = NONE;
+    firstChild[ROOT] = NONE;
+    nextSibling[ROOT] = NONE;
+    modified[ROOT] = System.currentTimeMillis();
+    flags[ROOT] = DIRECTORY | READABLE | WRITABLE | EXECUTABLE;
+  }
+
+  /**
+   * Adds a directory, and any missing parents. Does nothing if it already exists.
+   *
+   * @param directory the path of the directory
+   * @throws IllegalArgumentException if the path is not below the root, or a file
+   *                                  is in the way
+   */
+  public void addDirectory(File directory) {
+    resolve(directory.getPath(), true);
+  }
+
+  /**
+   * Adds a file, and any missing parent directories. An existing file is replaced.
+   *
+   * @param file   the path of the file
+   * @param length the size of the file in bytes
+   * @throws IllegalArgumentException if the path is not below the root, or names an
+   *                                  existing directory
+   */
+  public void addFile(File file, long length) {
+    String path = file.getPath();
+    int start = relativeStart(path);
+    int end = path.lastIndexOf(File.separatorChar);
+    if (start < 0 || end < start - 1) {
+      throw new IllegalArgumentException("Path is not below " + rootPath + ": " + path);
+    }
+    int directory = end < start ? ROOT : resolve(path.substring(0, end), true);
+    int node = child(directory, path, end + 1, path.length());
+    if (node == NONE) {
+      node = add(directory, path, end + 1, path.length(), READABLE | WRITABLE);
+    } else if ((flags[node] & DIRECTORY) != 0) {
+      throw new IllegalArgumentException("A directory is in the way: " + path);
+    }
+    size[node] = length;
+    modified[node] = modified[directory];
+  }
+
+  /**
+   * Sets the last-modified time of an entry.
+   *
+   * @param file the entry
+   * @param time the time in milliseconds since the epoch
+   * @return true if the entry exists
+   */
+  public boolean setLastModified(File file, long time) {
+    int node = find(file);
+    if (node == NONE) return false;
+    modified[node] = time;
+    return true;
+  }
+
+  /**
+   * Sets the access the current user has to an entry. An unreadable directory
+   * cannot be listed.
+   *
+   * @param file       the entry
+   * @param readable   whether it can be read
+   * @param writable   whether it can be written
+   * @param executable whether it can be executed, or entered if it is a directory
+   * @return true if the entry exists
+   */
+  public boolean setPermissions(File file, boolean readable, boolean writable, boolean executable) {
+    int node = find(file);
+    if (node == NONE) return false;
+    flags[node] = (byte) ((flags[node] & DIRECTORY)
+        | (readable ? READABLE : 0) | (writable ? WRITABLE : 0) | (executable ? EXECUTABLE : 0));
+    return true;
+  }
+
+  /**
+   * Returns the number of entries in the tree, counting the root.
+   *
+   * @return the number of entries
+   */
+  public int size() {
+    return count;
+  }
+
+  @Override
+  public String[] list(File directory) {
+    int node = find(directory);
+    if (node == NONE || (flags[node] & (DIRECTORY | READABLE)) != (DIRECTORY | READABLE)) return null;
+    lastListed = new Resolved(directory.getPath(), node);
+
+    int children = 0;
+    for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+      children++;
+    }
+    String[] result = new String[children];
+    int i = 0;
+    for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+      result[i++] = new String(names, nameStart[child], nameLength[child]);
+    }
+    return result;
+  }
+
+  @Override
+  public boolean exists(File file) {
+    return find(file) != NONE;
+  }
+
+  @Override
+  public boolean isDirectory(File file) {
+    return hasFlag(file, DIRECTORY);
+  }
+
+  @Override
+  public long length(File file) {
+    int node = find(file);
+    return node == NONE ? 0 : size[node];
+  }
+
+  @Override
+  public long lastModified(File file) {
+    int node = find(file);
+    return node == NONE ? 0 : modified[node];
+  }
+
+  @Override
+  public boolean canRead(File file) {
+    return hasFlag(file, READABLE);
+  }
+
+  @Override
+  public boolean canWrite(File file) {
+    return hasFlag(file, WRITABLE);
+  }
+
+  @Override
+  public boolean canExecute(File file) {
+    return hasFlag(file, EXECUTABLE);
+  }
+
+  private boolean hasFlag(File file, byte flag) {
+    int node = find(file);
+    return node != NONE && (flags[node] & flag) != 0;
+  }
+
+  /**
+   * Returns the node for a path, or NONE if there is none.
+   */
+  private int find(File file) {
+    String path = file.getPath();
+    Resolved last = lastListed;
+    if (last != null && path.length() > last.path.length() + 1 && path.startsWith(last.path)
+        && path.charAt(last.path.length()) == File.separatorChar) {
+      return walk(last.node, path, last.path.length() + 1, false);
+    }
+    return resolve(path, false);
+  }
+
+  /**
+   * Walks a path segment by segment from the root, optionally creating missing
+   * directories on the way.
+   *
+   * @return the node the path names, or NONE if it does not exist and create is false
+   */
+  private int resolve(String path, boolean create) {
+    int start = relativeStart(path);
+    if (start < 0) {
+      if (create) throw new IllegalArgumentException("Path is not below " + rootPath + ": " + path);
+      return NONE;
+    }
+
+    return walk(ROOT, path, start, create);
+  }
+
+  /**
+   * Walks path from index start down from the given node.
+   */
+  private int walk(int node, String path, int start, boolean create) {
+    while (start < path.length()) {
+      int end = path.indexOf(File.separatorChar, start);
+      if (end < 0) {
+        end = path.length();
+      }
+      if (end > start) {
+        if (create && (flags[node] & DIRECTORY) == 0) {
+          throw new IllegalArgumentException("A file is in the way: " + path.substring(0, start - 1));
+        }
+        int next = child(node, path, start, end);
+        if (next == NONE) {
+          if (!create) return NONE;
+          next = add(node, path, start, end, DIRECTORY | READABLE | WRITABLE | EXECUTABLE);
+        }
+        node = next;
+      }
+      start = end + 1;
+    }
+    if (create && (flags[node] & DIRECTORY) == 0) {
+      throw new IllegalArgumentException("A file is in the way: " + path);
+    }
+    return node;
+  }
+
+  /**
+   * Returns the index in path where the part below the root starts, or -1 if the
+   * path is not the root or below it.
+   */
+  private int relativeStart(String path) {
+    if (!path.startsWith(rootPath)) return -1;
+    if (path.length() == rootPath.length()) return path.length();
+    if (rootPath.endsWith(File.separator)) return rootPath.length();
+    return path.charAt(rootPath.length()) == File.separatorChar ? rootPath.length() + 1 : -1;
+  }
+
+  /**
+   * Returns the child of a node named by path[start, end), or NONE.
+   */
+  private int child(int node, String path, int start, int end) {
+    int mask = table.length - 1;
+    for (int slot = hash(node, path, start, end) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+      int candidate = table[slot] - 1;
+      if (parent[candidate] == node && nameEquals(candidate, path, start, end)) {
+        return candidate;
+      }
+    }
+    return NONE;
+  }
+
+  /**
+   * Appends a node named path[start, end) as the first child of a directory.
+   */
+  private int add(int directory, String path, int start, int end, int nodeFlags) {
+    int length = end - start;
+    if (length > Short.MAX_VALUE) {
+      throw new IllegalArgumentException("Name too long: " + path.substring(start, end));
+    }
+    if (count == parent.length) {
+      grow();
+    }
+    if (namesUsed + length > names.length) {
+      names = Arrays.copyOf(names, Math.max(names.length * 2, namesUsed + length));
+    }
+
+    int node = count++;
+    path.getChars(start, end, names, namesUsed);
+    nameStart[node] = namesUsed;
+    nameLength[node] = (short) length;
+    namesUsed += length;
+    parent[node] = directory;
+    firstChild[node] = NONE;
+    nextSibling[node] = firstChild[directory];
+    firstChild[directory] = node;
+    size[node] = 0;
+    modified[node] = System.currentTimeMillis();
+    flags[node] = (byte) nodeFlags;
+    modified[directory] = modified[node];
+
+    if (count * 2 > table.length) {
+      rehash(table.length * 2);
+    } else {
+      insert(node);
+    }
+    return node;
+  }
+
+  private void grow() {
+    int capacity = parent.length * 2;
+    parent = Arrays.copyOf(parent, capacity);
+    firstChild = Arrays.copyOf(firstChild, capacity);
+    nextSibling = Arrays.copyOf(nextSibling, capacity);
+    nameStart = Arrays.copyOf(nameStart, capacity);
+    nameLength = Arrays.copyOf(nameLength, capacity);
+    size = Arrays.copyOf(size, capacity);
+    modified = Arrays.copyOf(modified, capacity);
+    flags = Arrays.copyOf(flags, capacity);
+  }
+
+  private void rehash(int capacity) {
+    table = new int[capacity];
+    for (int node = 1; node < count; node++) {
+      insert(node);
+    }
+  }
+
+  private void insert(int node) {
+    int mask = table.length - 1;
+    int start = nameStart[node];
+    int slot = hash(parent[node], names, start, start + nameLength[node]) & mask;
+    while (table[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = node + 1;
+  }
+
+  private boolean nameEquals(int node, String path, int start, int end) {
+    if (nameLength[node] != end - start) return false;
+    int offset = nameStart[node] - start;
+    for (int i = start; i < end; i++) {
+      if (names[offset + i] != path.charAt(i)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * A path and the node it resolved to.
+   */
+  private static class Resolved {
+    private final String path;
+    private final int node;
+
+    Resolved(String path, int node) {
+      this.path = path;
+      this.node = node;
+    }
+  }
+
+  private static int hash(int node, String path, int start, int end) {
+    int h = node * 0x9E3779B9;
+    for (int i = start; i < end; i++) {
+      h = 31 * h + path.charAt(i);
+    }
+    return h ^ (h >>> 16);
+  }
+
+  private static int hash(int node, char[] chars, int start, int end) {
+    int h = node * 0x9E3779B9;
+    for (int i = start; i < end; i++) {
+      h = 31 * h + chars[i];
+    }
+    return h ^ (h >>> 16);
+  }
+}
@@ -0,0 +1,109 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MemoryTreeSourceTest {
+
+  private static final File ROOT = new File("memory-root");
+
+  private static String[] sortedList(TreeSource source, File directory) {
+    String[] names = source.list(directory);
+    Arrays.sort(names);
+    return names;
+  }
+
+  @Test
+  void testAddCreatesMissingParents() {
+    MemoryTreeSource source = new MemoryTreeSource(ROOT);
+
+    source.addFile(new File(ROOT, "a/b/c.txt"), 12);
+    source.addDirectory(new File(ROOT, "a/d"));
+
+    assertEquals(5, source.size());
+    assertTrue(source.isDirectory(new File(ROOT, "a/b")));
+    assertFalse(source.isDirectory(new File(ROOT, "a/b/c.txt")));
+    assertTrue(source.exists(new File(ROOT, "a/b/c.txt")));
+    assertEquals(12, source.length(new File(ROOT, "a/b/c.txt")));
+    assertArrayEquals(new String[]{"b", "d"}, sortedList(source, new File(ROOT, "a")));
+    assertArrayEquals(new String[]{"a"}, source.list(ROOT));
+  }
+
+  @Test
+  void testMissingEntriesAnswerLikeFile() {
+    MemoryTreeSource source = new MemoryTreeSource(ROOT);
+    source.addFile(new File(ROOT, "file.txt"), 1);
+    File missing = new File(ROOT, "missing");
+
+    assertFalse(source.exists(missing));
+    assertFalse(source.isDirectory(missing));
+    assertEquals(0, source.length(missing));
+    assertEquals(0, source.lastModified(missing));
+    assertFalse(source.canRead(missing));
+    assertNull(source.list(missing));
+    assertNull(source.list(new File(ROOT, "file.txt")));
+    assertFalse(source.exists(new File("elsewhere/file.txt")));
+  }
+
+  @Test
+  void testAttributesCanBeSet() {
+    MemoryTreeSource source = new MemoryTreeSource(ROOT);
+    File directory = new File(ROOT, "locked");
+    source.addFile(new File(directory, "secret.txt"), 3);
+
+    assertTrue(source.setLastModified(directory, 1234));
+    assertTrue(source.setPermissions(directory, false, false, true));
+
+    assertEquals(1234, source.lastModified(directory));
+    assertFalse(source.canRead(directory));
+    assertFalse(source.canWrite(directory));
+    assertTrue(source.canExecute(directory));
+    assertNull(source.list(directory));
+    assertFalse(source.setLastModified(new File(ROOT, "missing"), 1));
+  }
+
+  @Test
+  void testAddingAnEntryUpdatesParentTime() {
+    MemoryTreeSource source = new MemoryTreeSource(ROOT);
+    File directory = new File(ROOT, "dir");
+    source.addDirectory(directory);
+    source.setLastModified(directory, 1);
+
+    source.addFile(new File(directory, "new.txt"), 0);
+
+    assertTrue(source.lastModified(directory) > 1);
+  }
+
+  @Test
+  void testRejectsPathsOutsideRootOrThroughFiles() {
+    MemoryTreeSource source = new MemoryTreeSource(ROOT);
+    source.addFile(new File(ROOT, "file.txt"), 1);
+
+    assertThrows(IllegalArgumentException.class, () -> source.addFile(new File("elsewhere/file.txt"), 1));
+    assertThrows(IllegalArgumentException.class, () -> source.addFile(new File("memory-rootx/file.txt"), 1));
+    assertThrows(IllegalArgumentException.class, () -> source.addFile(new File(ROOT, "file.txt/inner"), 1));
+    assertThrows(IllegalArgumentException.class, () -> source.addDirectory(new File(ROOT, "file.txt")));
+  }
+
+  @Test
+  void testHoldsAMillionEntries() {
+    MemoryTreeSource source = new MemoryTreeSource(ROOT);
+    for (int d = 0; d < 1000; d++) {
+      File directory = new File(ROOT, "dir" + d);
+      for (int f = 0; f < 1000; f++) {
+        source.addFile(new File(directory, "file" + f + ".txt"), f);
+      }
+    }
+
+    assertEquals(1 + 1000 + 1000 * 1000, source.size());
+    assertEquals(1000, source.list(new File(ROOT, "dir999")).length);
+    assertEquals(123, source.length(new File(ROOT, "dir500/file123.txt")));
+  }
+}
@@ -0,0 +1,132 @@
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A DirectoryLister that lists directories ahead of the printer on virtual threads.
+ * 
+ * This is meant for filesystems where every listFiles() and isDirectory() call is a
+ * slow round trip, such as NFS or FUSE mounts. Whoever lists a directory, a worker
+ * or the printer itself, also takes a snapshot of every entry and queues listings
+ * for the subdirectories. The printer then finds most listings already finished
+ * when it reaches them in tree order.
+ * 
+ * At most maxBuffered directories are in flight or waiting to be printed at any
+ * time. When that limit is reached no further listings are queued, and the printer
+ * lists the directories it reaches on its own thread instead.
+ */
+public class PrefetchingLister implements DirectoryLister {
+
+  /**
+   * Runs the listing tasks, one virtual thread per task.
+   */
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  /**
+   * One permit for each directory that may be in flight or buffered.
+   */
+  private final Semaphore buffered;
+
+  /**
+   * Reads a single directory on behalf of the workers and the printer.
+   */
+  private final DirectoryLister reader;
+
+  /**
+   * Listings that have been queued but not yet consumed by the printer.
+   */
+  private final Map<File, Future<FileEntry[]>> pending = new ConcurrentHashMap<>();
+
+  /**
+   * The level below the root of the entries in each subdirectory seen so far and not
+   * yet handed to the printer, so listings are not queued past the depth limit.
+   * Removed only by the printer, so a listing it has to read again itself keeps its
+   * depth.
+   */
+  private final Map<File, Integer> depths = new ConcurrentHashMap<>();
+
+  /**
+   * The number of levels of entries to list, or 0 for no limit.
+   */
+  private final int maxDepth;
+
+  /**
+   * Constructs a PrefetchingLister.
+   *
+   * @param reader      reads a single directory; called from several threads at once
+   * @param maxBuffered the maximum number of directories listed ahead of the printer
+   */
+  public PrefetchingLister(DirectoryLister reader, int maxBuffered) {
+    this(reader, maxBuffered, 0);
+  }
+
+  /**
+   * Constructs a PrefetchingLister that does not queue directories whose entries
+   * would lie deeper than maxDepth levels below the root.
+   *
+   * @param reader      reads a single directory; called from several threads at once
+   * @param maxBuffered the maximum number of directories listed ahead of the printer
+   * @param maxDepth    the number of levels of entries to list, or 0 for no limit
+   */
+  public PrefetchingLister(DirectoryLister reader, int maxBuffered, int maxDepth) {
+    this.reader = reader;
+    this.buffered = new Semaphore(maxBuffered);
+    this.maxDepth = maxDepth;
+  }
+
+  @Override
+  public FileEntry[] list(File directory) {
+    Integer known = depths.remove(directory);
+    int depth = known == null ? 0 : known;
+    Future<FileEntry[]> listing = pending.remove(directory);
+    if (listing == null) {
+      return listAndPrefetch(directory, depth);
+    }
+    try {
+      return listing.get();
+    } catch (ExecutionException e) {
+      return listAndPrefetch(directory, depth);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return listAndPrefetch(directory, depth);
+    } finally {
+      buffered.release();
+    }
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    pending.clear();
+    depths.clear();
+    reader.close();
+  }
+
+  /**
+   * Lists a directory and queues listings for as many of its subdirectories as the
+   * buffer and depth limits allow, in tree order.
+   *
+   * @param depth the level of the directory below the root, 0 for the root
+   */
+  private FileEntry[] listAndPrefetch(File directory, int depth) {
+    FileEntry[] entries = reader.list(directory);
+    if (entries == null || (maxDepth > 0 && depth + 1 >= maxDepth)) return entries;
+
+    for (FileEntry entry : entries) {
+      if (entry.canDescend()) {
+        File child = entry.getFile();
+        int childDepth = depth + 1;
+        depths.put(child, childDepth);
+        if (buffered.tryAcquire()) {
+          pending.put(child, executor.submit(() -> listAndPrefetch(child, childDepth)));
+        }
+      }
+    }
+    return entries;
+  }
+}
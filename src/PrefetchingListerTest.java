@@ -0,0 +1,138 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PrefetchingListerTest {
+
+    private static final long LATENCY_MILLIS = 1;
+
+    /**
+     * Stands in for a network filesystem: the listing and every entry's stat each pay
+     * a fixed round-trip delay.
+     */
+    private static FileEntry[] slowReadDirectory(File directory, TruffulaOptions options) {
+        FileEntry[] entries = DirectoryLister.readDirectory(directory, options);
+        int roundTrips = 1 + (entries == null ? 0 : entries.length);
+        try {
+            Thread.sleep(LATENCY_MILLIS * roundTrips);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return entries;
+    }
+
+    private static void createTree(File parent, int depth, int fanOut) throws IOException {
+        for (int i = 0; i < fanOut; i++) {
+            new File(parent, "file" + i + ".txt").createNewFile();
+            new File(parent, ".hidden" + i).createNewFile();
+            if (depth > 0) {
+                File child = new File(parent, "Dir" + i);
+                assertTrue(child.mkdir());
+                createTree(child, depth - 1, fanOut);
+            }
+        }
+    }
+
+    private static String print(TruffulaOptions options, DirectoryLister lister) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new TruffulaPrinter(options, new PrintStream(out)).printTree(lister);
+        return out.toString();
+    }
+
+    @Test
+    void testPrefetchedOutputMatchesSerial(@TempDir File tempDir) throws IOException {
+        createTree(tempDir, 3, 3);
+
+        TruffulaOptions options = new TruffulaOptions(tempDir, false, true);
+        DirectoryLister reader = directory -> DirectoryLister.readDirectory(directory, options);
+
+        String serial = print(options, reader);
+        String prefetched = print(options, new PrefetchingLister(reader, 8));
+
+        assertEquals(serial, prefetched);
+    }
+
+    @Test
+    void testPrefetchedOutputMatchesSerial_WithBufferOfOne(@TempDir File tempDir) throws IOException {
+        createTree(tempDir, 2, 4);
+
+        TruffulaOptions options = new TruffulaOptions(tempDir, false, true);
+        DirectoryLister reader = directory -> DirectoryLister.readDirectory(directory, options);
+
+        String serial = print(options, reader);
+        String prefetched = print(options, new PrefetchingLister(reader, 1));
+
+        assertEquals(serial, prefetched);
+    }
+
+    @Test
+    void testPrefetchHidesLatency(@TempDir File tempDir) throws IOException {
+        createTree(tempDir, 3, 4);
+
+        TruffulaOptions options = new TruffulaOptions(tempDir, false, true);
+        DirectoryLister slowReader = directory -> slowReadDirectory(directory, options);
+
+        long start = System.nanoTime();
+        String serial = print(options, slowReader);
+        long serialNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        String prefetched = print(options, new PrefetchingLister(slowReader, 64));
+        long prefetchedNanos = System.nanoTime() - start;
+
+        assertEquals(serial, prefetched);
+        assertTrue(prefetchedNanos * 2 < serialNanos,
+            "prefetching took " + prefetchedNanos / 1_000_000 + "ms, serial took " + serialNanos / 1_000_000 + "ms");
+    }
+
+    @Test
+    void testPrefetchFlagUsesSameOutput(@TempDir File tempDir) throws IOException {
+        createTree(tempDir, 2, 3);
+        String path = tempDir.getAbsolutePath();
+
+        ByteArrayOutputStream serial = new ByteArrayOutputStream();
+        new TruffulaPrinter(new TruffulaOptions(new String[]{path}), new PrintStream(serial)).printTree();
+        ByteArrayOutputStream prefetched = new ByteArrayOutputStream();
+        new TruffulaPrinter(new TruffulaOptions(new String[]{"--prefetch", "4", path}), new PrintStream(prefetched))
+            .printTree();
+
+        assertEquals(serial.toString(), prefetched.toString());
+    }
+
+    @Test
+    void testDepthLimitHoldsWhenAWorkerFails() {
+        File root = new File("root");
+        MemoryTreeSource source = new MemoryTreeSource(root);
+        source.addFile(new File(root, "a/b/c/d/e.txt"), 1);
+        TruffulaOptions options = new TruffulaOptions(source, root, false, false);
+        Set<String> queued = ConcurrentHashMap.newKeySet();
+
+        // Every listing on a worker fails, so the printer reads "a" again itself. With
+        // -L 2 that must not queue "b", whose entries lie three levels down.
+        DirectoryLister failingOnWorkers = directory -> {
+            if (Thread.currentThread().isVirtual()) {
+                queued.add(directory.getName());
+                throw new IllegalStateException("unreachable mount");
+            }
+            return DirectoryLister.readDirectory(directory, options);
+        };
+        PrefetchingLister lister = new PrefetchingLister(failingOnWorkers, 8, 2);
+        lister.list(root);
+        lister.list(new File(root, "a"));
+        lister.list(new File(root, "a/b"));
+        lister.close();
+
+        assertTrue(queued.contains("a"));
+        assertFalse(queued.contains("b"));
+    }
+}
@@ -0,0 +1,152 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Creates a class-data-sharing (CDS) archive of the truffula classes, which lets
+ * later runs start faster.
+ *
+ * On a small tree most of a run's time goes to starting the JVM and loading and
+ * verifying classes. An application CDS archive holds those classes already parsed
+ * and verified, so a JVM started with it maps them from the archive instead. The
+ * archive is written by a training run: a child JVM started with
+ * -XX:ArchiveClassesAtExit runs truffula once with the given arguments, and every
+ * class it loaded goes into the archive. Runs that use the archive must use the same
+ * JVM and the same class path, so the command to use is printed afterwards:
+ *
+ *    java -XX:SharedArchiveFile=truffula.jsa -cp truffula.jsa.jar App [arguments] path
+ *
+ * CDS only archives classes loaded from JAR files. When truffula runs from a
+ * directory of classes, they are first packed into a JAR named after the archive
+ * with ".jar" added, next to it, and that JAR is the class path to use. Creating
+ * the same archive again replaces that JAR; any other file is left alone. A JVM that cannot use the archive, such as a
+ * different version, ignores it and starts as usual.
+ */
+public class StartupArchive {
+
+  /**
+   * The arguments of the training run when none are given: a shallow plain-text
+   * walk of the working directory, which loads the classes a usual run needs.
+   */
+  private static final String[] DEFAULT_TRAINING = {"-nc", "-L", "2", "."};
+
+  private StartupArchive() {
+  }
+
+  /**
+   * Creates the archive by running truffula once with the given arguments in a
+   * child JVM, discarding its output.
+   *
+   * @param archive  the archive file to write
+   * @param training arguments for the training run, or none for a shallow walk of
+   *                 the working directory
+   * @return the class path runs using the archive must be started with
+   * @throws IOException if the JAR cannot be written or the training run fails
+   * @throws InterruptedException if interrupted while waiting for the training run
+   */
+  public static String create(File archive, String[] training) throws IOException, InterruptedException {
+    File classes = codeSource();
+    String classPath;
+    if (classes.isFile()) {
+      classPath = classes.getAbsolutePath();
+    } else {
+      File jar = new File(archive.getAbsoluteFile().getParentFile(), archive.getName() + ".jar");
+      packClasses(classes, jar);
+      classPath = jar.getAbsolutePath();
+    }
+
+    List<String> command = new ArrayList<>();
+    command.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath());
+    command.add("-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath());
+    command.add("-cp");
+    command.add(classPath);
+    command.add("App");
+    for (String arg : training.length == 0 ? DEFAULT_TRAINING : training) {
+      command.add(arg);
+    }
+
+    archive.delete();
+    Process process = new ProcessBuilder(command)
+        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+        .redirectError(ProcessBuilder.Redirect.INHERIT)
+        .start();
+    int status = process.waitFor();
+    if (status != 0 || !archive.isFile()) {
+      throw new IOException("Training run failed to write " + archive + " (exit status " + status + ")");
+    }
+    return classPath;
+  }
+
+  /**
+   * Runs --create-cds from the command line and prints how to use the archive.
+   *
+   * Arguments Format: --create-cds archive [arguments... path]
+   *
+   * @param args command-line arguments starting with --create-cds
+   * @throws IllegalArgumentException if the archive is missing
+   * @throws IOException if the archive cannot be created
+   * @throws InterruptedException if interrupted while waiting for the training run
+   */
+  static void run(String[] args) throws IOException, InterruptedException {
+    if (args.length < 2) {
+      throw new IllegalArgumentException("Missing value for flag: --create-cds");
+    }
+    File archive = new File(args[1]);
+    String[] training = new String[args.length - 2];
+    System.arraycopy(args, 2, training, 0, training.length);
+
+    String classPath = create(archive, training);
+    System.out.println("Created " + archive.getAbsolutePath() + ". Start truffula with:");
+    System.out.println("java -XX:SharedArchiveFile=" + archive.getAbsolutePath() + " -cp " + classPath + " App ...");
+  }
+
+  /**
+   * Returns the JAR or directory the truffula classes were loaded from.
+   */
+  private static File codeSource() throws IOException {
+    CodeSource source = App.class.getProtectionDomain().getCodeSource();
+    try {
+      if (source != null && source.getLocation() != null) {
+        return new File(source.getLocation().toURI());
+      }
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      // Not a file URI; reported below.
+    }
+    throw new IOException("Cannot tell where the truffula classes were loaded from");
+  }
+
+  /**
+   * Packs the class files of a directory into a JAR, leaving out tests.
+   */
+  private static void packClasses(File directory, File jar) throws IOException {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      throw new IOException("Cannot list " + directory);
+    }
+    byte[] buffer = new byte[64 * 1024];
+    try (JarOutputStream out = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(jar)))) {
+      for (File file : files) {
+        String name = file.getName();
+        if (!file.isFile() || !name.endsWith(".class") || name.matches(".*Test(\\$.*)?\\.class")) continue;
+
+        out.putNextEntry(new ZipEntry(name));
+        try (InputStream in = new FileInputStream(file)) {
+          int read;
+          while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+          }
+        }
+        out.closeEntry();
+      }
+    }
+  }
+}
@@ -0,0 +1,55 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StartupArchiveTest {
+
+  private static final String NL = System.lineSeparator();
+
+  @Test
+  void testArchiveFromTrainingRunIsUsable(@TempDir File tempDir) throws Exception {
+    File tree = new File(tempDir, "tree");
+    assertTrue(new File(tree, "a").mkdirs());
+    new File(tree, "a/b.txt").createNewFile();
+    File archive = new File(tempDir, "truffula.jsa");
+    File unrelated = new File(tempDir, "truffula.jar");
+    unrelated.createNewFile();
+
+    String classPath = StartupArchive.create(archive, new String[]{"-nc", tree.getPath()});
+
+    assertTrue(archive.isFile());
+    assertTrue(new File(classPath).isFile(), classPath);
+    if (new File(App.class.getProtectionDomain().getCodeSource().getLocation().toURI()).isDirectory()) {
+      assertEquals(new File(tempDir, "truffula.jsa.jar").getAbsolutePath(), classPath);
+    }
+    assertEquals(0, unrelated.length());
+
+    String java = new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath();
+    Process process = new ProcessBuilder(java, "-Xshare:auto", "-XX:SharedArchiveFile=" + archive.getPath(),
+        "-cp", classPath, "App", "-nc", tree.getPath())
+        .redirectError(ProcessBuilder.Redirect.DISCARD)
+        .start();
+    String output = readAll(process.getInputStream());
+    assertEquals(0, process.waitFor());
+    assertEquals("a/" + NL + "   b.txt" + NL, output);
+  }
+
+  @Test
+  void testMissingArchiveIsRejected() {
+    assertThrows(IllegalArgumentException.class, () -> StartupArchive.run(new String[]{"--create-cds"}));
+  }
+
+  private static String readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    in.transferTo(out);
+    return out.toString();
+  }
+}
@@ -0,0 +1,297 @@
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Decides which directories reached through symbolic links the walk descends into.
+ *
+ * java.io.File.isDirectory() follows links, so without a guard a link pointing back
+ * up the tree would be walked forever. Each directory is checked once, when the walk
+ * is about to list it, and one that must not be listed is shown with a note in
+ * place of its entries. Directories that are never entered, such as those at the
+ * depth limit, cost nothing.
+ *
+ * When links are followed, a directory is a loop if it is the same directory as one
+ * of the directories on its own path from the root. It is printed with the note
+ * "[recursive, not followed]". Whether a directory is a loop depends only on its
+ * path, never on which listings were made first, so every lister and thread count
+ * cuts the same links. A directory reached through several links that do not form
+ * a loop is shown under each of them.
+ *
+ * When links are not followed, a directory whose real location is not the one its
+ * path names is a link. It is printed with the note "[symlink, not followed]". The
+ * root is followed either way.
+ *
+ * java.io has neither device and inode numbers nor a way to tell a link from a
+ * directory without resolving it. So in follow mode the guard keeps, for each
+ * directory it has entered, a node holding its last-modified time and a link to its
+ * parent's node; the nodes form the ancestry of every directory in the tree.
+ * Entering a directory costs one stat for its own time, and a 64-bit mask of the
+ * times along its path rules out most matches at once. Only a directory whose time
+ * matches an ancestor's is resolved, and it is a loop only if its canonical path is
+ * that ancestor's. Nodes hold no paths, and are found by a 64-bit hash of their
+ * directory's path in an open-addressing table. A directory changed while the tree
+ * is walked can slip past the times once, but the next time round the loop its copy
+ * is caught. In no-follow mode a directory entered costs one canonical path, the
+ * only link test java.io has, compared with the path it would have below the root's
+ * canonical path. Sources without links, such as MemoryTreeSource, return no
+ * canonical paths and the guard does nothing for them. All methods may be called
+ * from several threads.
+ */
+public class SymlinkGuard {
+
+  /**
+   * The note printed after a link back to a directory shown elsewhere in the tree.
+   */
+  public static final String RECURSIVE = "recursive, not followed";
+
+  /**
+   * The note printed after a link to a directory when links are not followed.
+   */
+  public static final String NOT_FOLLOWED = "symlink, not followed";
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final TreeSource source;
+  private final File root;
+  private final boolean follow;
+
+  /**
+   * The canonical path of the root, or null if the source has no links, in which
+   * case no directory is a loop or a link.
+   */
+  private final String rootCanonical;
+
+  // The node of each directory seen, by hash of its path; a key of 0 marks an
+  // empty slot.
+  private long[] keys = new long[INITIAL_CAPACITY];
+  private Ancestor[] nodes = new Ancestor[INITIAL_CAPACITY];
+  private int size;
+
+  /**
+   * Constructs a guard for a walk of the given tree.
+   *
+   * @param source the source the tree is read from
+   * @param root   the root of the walk
+   * @param follow whether links to directories are followed
+   */
+  public SymlinkGuard(TreeSource source, File root, boolean follow) {
+    this.source = source;
+    this.root = root;
+    this.follow = follow;
+    this.rootCanonical = source.getCanonicalPath(root);
+  }
+
+  /**
+   * Indicates whether links to directories are followed.
+   *
+   * @return true if links are followed, with loops cut
+   */
+  public boolean isFollow() {
+    return follow;
+  }
+
+  /**
+   * Checks a directory the walk is about to list.
+   *
+   * @param directory the directory to list
+   * @return the note to show the directory with instead of listing it, or null if
+   *         it is listed
+   */
+  public String check(File directory) {
+    if (rootCanonical == null || directory.equals(root)) return null;
+    File parentFile = directory.getParentFile();
+    if (parentFile == null) return null;
+
+    if (follow) {
+      Ancestor parent = ancestry(parentFile);
+      long time = source.lastModified(directory);
+      if (isLoop(directory, time, parent)) return RECURSIVE;
+      put(hash(directory.getPath()), new Ancestor(time, parent));
+      return null;
+    }
+
+    String canonical = source.getCanonicalPath(directory);
+    if (canonical == null) return null;
+    // No link below the root was entered, so the parent is where its path says.
+    String parent = belowRoot(parentFile);
+    if (parent == null) {
+      parent = source.getCanonicalPath(parentFile);
+      if (parent == null) return null;
+    }
+    return isChild(canonical, parent, directory.getName()) ? null : NOT_FOLLOWED;
+  }
+
+  /**
+   * Returns the canonical path a directory has if no link lies between it and the
+   * root, or null if its path does not start with the root's.
+   */
+  private String belowRoot(File directory) {
+    String path = directory.getPath();
+    String rootPath = root.getPath();
+    if (path.equals(rootPath)) return rootCanonical;
+    if (!path.startsWith(rootPath)) return null;
+    int start = rootPath.length();
+    if (!rootPath.endsWith(File.separator)) {
+      if (path.charAt(start) != File.separatorChar) return null;
+      start++;
+    }
+    return rootCanonical.endsWith(File.separator)
+        ? rootCanonical + path.substring(start)
+        : rootCanonical + File.separatorChar + path.substring(start);
+  }
+
+  /**
+   * Tests whether a directory is the same directory as one of its ancestors.
+   *
+   * @param file   the directory
+   * @param time   its last-modified time
+   * @param parent the node of the directory it was listed from
+   */
+  private boolean isLoop(File file, long time, Ancestor parent) {
+    if ((parent.mask & bit(time)) == 0) return false;
+
+    long canonical = 0;
+    File ancestor = file.getParentFile();
+    for (Ancestor node = parent; node != null && ancestor != null; node = node.parent) {
+      if (node.time == time) {
+        if (canonical == 0) {
+          String path = source.getCanonicalPath(file);
+          if (path == null) return false;
+          canonical = hash(path);
+        }
+        if (node.canonical(source, ancestor) == canonical) return true;
+      }
+      ancestor = ancestor.getParentFile();
+    }
+    return false;
+  }
+
+  /**
+   * Returns the node of a directory, creating it and any missing nodes above it.
+   * Nodes are missing for the root and for directories listed again without their
+   * parents, as in watch mode.
+   */
+  private Ancestor ancestry(File directory) {
+    Deque<File> missing = new ArrayDeque<>();
+    Ancestor node = null;
+    for (File file = directory; file != null; file = file.getParentFile()) {
+      node = get(hash(file.getPath()));
+      if (node != null) break;
+      missing.push(file);
+      if (file.equals(root)) break;
+    }
+    while (!missing.isEmpty()) {
+      File file = missing.pop();
+      node = new Ancestor(source.lastModified(file), node);
+      put(hash(file.getPath()), node);
+    }
+    return node;
+  }
+
+  /**
+   * A directory the walk has descended into, and its ancestry.
+   */
+  private static final class Ancestor {
+    private final long time;
+    private final long mask;
+    private final Ancestor parent;
+
+    /**
+     * The hash of the directory's canonical path, or 0 until it is needed.
+     */
+    private volatile long canonical;
+
+    Ancestor(long time, Ancestor parent) {
+      this.time = time;
+      this.parent = parent;
+      this.mask = (parent == null ? 0 : parent.mask) | bit(time);
+    }
+
+    long canonical(TreeSource source, File directory) {
+      long hash = canonical;
+      if (hash == 0) {
+        String path = source.getCanonicalPath(directory);
+        hash = path == null ? 1 : hash(path);
+        canonical = hash;
+      }
+      return hash;
+    }
+  }
+
+  /**
+   * Picks the bit of the ancestry masks that stands for a time.
+   */
+  private static long bit(long time) {
+    long h = time * 0x9e3779b97f4a7c15L;
+    return 1L << (h >>> 58);
+  }
+
+  /**
+   * Tests whether a canonical path names the given child of a canonical directory,
+   * which it does unless the child is a link.
+   */
+  private static boolean isChild(String canonical, String parent, String name) {
+    int prefix = parent.endsWith(File.separator) ? parent.length() : parent.length() + 1;
+    return canonical.length() == prefix + name.length()
+        && canonical.startsWith(parent)
+        && canonical.charAt(prefix - 1) == File.separatorChar
+        && canonical.endsWith(name);
+  }
+
+  private synchronized Ancestor get(long key) {
+    int mask = keys.length - 1;
+    for (int slot = (int) key & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) return nodes[slot];
+    }
+    return null;
+  }
+
+  private synchronized void put(long key, Ancestor node) {
+    int mask = keys.length - 1;
+    int slot = (int) key & mask;
+    while (keys[slot] != 0) {
+      if (keys[slot] == key) {
+        nodes[slot] = node;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    nodes[slot] = node;
+    if (++size * 2 > keys.length) {
+      rehash();
+    }
+  }
+
+  private void rehash() {
+    long[] oldKeys = keys;
+    Ancestor[] oldNodes = nodes;
+    keys = new long[oldKeys.length * 2];
+    nodes = new Ancestor[oldKeys.length * 2];
+    int mask = keys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] == 0) continue;
+      int slot = (int) oldKeys[i] & mask;
+      while (keys[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = oldKeys[i];
+      nodes[slot] = oldNodes[i];
+    }
+  }
+
+  /**
+   * Hashes a path to 64 bits with FNV-1a and a final mix, never returning 0.
+   */
+  static long hash(String path) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < path.length(); i++) {
+      h = (h ^ path.charAt(i)) * 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    return h == 0 ? 1 : h;
+  }
+}
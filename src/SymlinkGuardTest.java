@@ -0,0 +1,187 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class SymlinkGuardTest {
+
+  private static void link(File link, File target) {
+    try {
+      Files.createSymbolicLink(link.toPath(), target.toPath());
+    } catch (IOException | UnsupportedOperationException e) {
+      assumeTrue(false, "symbolic links are not supported here");
+    }
+  }
+
+  private static String print(String... args) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new TruffulaPrinter(new TruffulaOptions(args), new PrintStream(out)).printTree();
+    return out.toString();
+  }
+
+  @Test
+  void testLinkToAncestorIsNotFollowed(@TempDir File tempDir) throws IOException {
+    File a = new File(tempDir, "a");
+    assertTrue(a.mkdir());
+    new File(a, "f.txt").createNewFile();
+    link(new File(a, "up"), tempDir);
+    String nl = System.lineSeparator();
+
+    String expected = "a/" + nl
+        + "   f.txt" + nl
+        + "   up/ [recursive, not followed]" + nl;
+
+    assertEquals(expected, print("-nc", tempDir.getPath()));
+    assertEquals(expected, print("-nc", "-j", "4", tempDir.getPath()));
+    assertEquals(expected, print("-nc", "--prefetch", "8", tempDir.getPath()));
+  }
+
+  @Test
+  void testLoopThroughTwoLinksIsCut(@TempDir File tempDir) throws IOException {
+    File a = new File(tempDir, "a");
+    File b = new File(tempDir, "b");
+    assertTrue(a.mkdir());
+    assertTrue(b.mkdir());
+    link(new File(a, "toB"), b);
+    link(new File(b, "toA"), a);
+
+    String output = print("-nc", "--du", tempDir.getPath());
+
+    assertTrue(output.contains("[recursive, not followed]"), output);
+    assertTrue(output.split(System.lineSeparator()).length < 8, output);
+  }
+
+  @Test
+  void testLinksAreFollowedOrNot(@TempDir File tempDir) throws IOException {
+    File outside = new File(tempDir, "outside");
+    File tree = new File(tempDir, "tree");
+    assertTrue(outside.mkdir());
+    assertTrue(tree.mkdir());
+    new File(outside, "f.txt").createNewFile();
+    link(new File(tree, "link"), outside);
+    String nl = System.lineSeparator();
+
+    assertEquals("link/" + nl + "   f.txt" + nl, print("-nc", "--follow", tree.getPath()));
+    assertEquals("link/ [symlink, not followed]" + nl, print("-nc", "--no-follow", tree.getPath()));
+  }
+
+  @Test
+  void testSeveralLinksToOneDirectoryAreAllFollowed(@TempDir File tempDir) throws IOException {
+    File shared = new File(tempDir, "shared");
+    File tree = new File(tempDir, "tree");
+    assertTrue(shared.mkdir());
+    assertTrue(new File(tree, "deep").mkdirs());
+    new File(shared, "f.txt").createNewFile();
+    link(new File(tree, "one"), shared);
+    link(new File(tree, "deep/two"), shared);
+    String nl = System.lineSeparator();
+
+    String expected = "deep/" + nl
+        + "   two/" + nl
+        + "      f.txt" + nl
+        + "one/" + nl
+        + "   f.txt" + nl;
+
+    for (int i = 0; i < 5; i++) {
+      assertEquals(expected, print("-nc", tree.getPath()));
+      assertEquals(expected, print("-nc", "-j", "4", tree.getPath()));
+      assertEquals(expected, print("-nc", "--prefetch", "8", tree.getPath()));
+      assertEquals(expected, print("-nc", "--level-order", "-j", "4", tree.getPath()));
+    }
+  }
+
+  @Test
+  void testLoopsAreCutAtTheSameLinkByEveryLister(@TempDir File tempDir) throws IOException {
+    File a = new File(tempDir, "a");
+    File b = new File(tempDir, "b");
+    assertTrue(new File(a, "x").mkdirs());
+    assertTrue(new File(b, "y").mkdirs());
+    link(new File(a, "x/toB"), b);
+    link(new File(b, "y/toA"), a);
+    link(new File(b, "up"), tempDir);
+
+    String serial = print("-nc", tempDir.getPath());
+
+    assertTrue(serial.contains("[recursive, not followed]"), serial);
+    for (int i = 0; i < 5; i++) {
+      assertEquals(serial, print("-nc", "-j", "4", tempDir.getPath()));
+      assertEquals(serial, print("-nc", "--prefetch", "2", tempDir.getPath()));
+      assertEquals(serial, print("-nc", "--level-order", "-j", "4", tempDir.getPath()));
+    }
+  }
+
+  @Test
+  void testDirectoriesWithTheTimeOfAnAncestorAreNoLoop(@TempDir File tempDir) throws IOException {
+    File deepest = new File(tempDir, "a/b/c");
+    assertTrue(deepest.mkdirs());
+    for (File directory = deepest; !directory.equals(tempDir); directory = directory.getParentFile()) {
+      assertTrue(directory.setLastModified(1_000_000));
+    }
+    assertTrue(tempDir.setLastModified(1_000_000));
+    String nl = System.lineSeparator();
+
+    assertEquals("a/" + nl + "   b/" + nl + "      c/" + nl, print("-nc", tempDir.getPath()));
+  }
+
+  @Test
+  void testListingTheSameDirectoryAgainIsNoLoop(@TempDir File tempDir) throws IOException {
+    File sub = new File(tempDir, "sub");
+    assertTrue(sub.mkdir());
+    TruffulaOptions options = new TruffulaOptions(new String[]{tempDir.getPath()});
+
+    // Watch mode lists changed directories again with the same guard.
+    for (int i = 0; i < 2; i++) {
+      FileEntry[] entries = DirectoryLister.readDirectory(tempDir, options);
+      assertEquals(1, entries.length);
+      assertNull(entries[0].getNote());
+      assertTrue(entries[0].canDescend());
+    }
+  }
+
+  @Test
+  void testDirectoriesThatAreNotEnteredAreNotChecked(@TempDir File tempDir) throws IOException {
+    File withDirectories = new File(tempDir, "directories");
+    File withFiles = new File(tempDir, "files");
+    assertTrue(withFiles.mkdir());
+    for (int i = 0; i < 10; i++) {
+      assertTrue(new File(withDirectories, "d" + i).mkdirs());
+      new File(withFiles, "d" + i).createNewFile();
+    }
+
+    // At the depth limit the subdirectories cost what files do: one stat each.
+    for (String mode : new String[]{"--follow", "--no-follow"}) {
+      TruffulaOptions directories = new TruffulaOptions(new String[]{mode, "--stats", "-L", "1", withDirectories.getPath()});
+      TruffulaOptions files = new TruffulaOptions(new String[]{mode, "--stats", "-L", "1", withFiles.getPath()});
+      new TruffulaPrinter(directories, new PrintStream(new ByteArrayOutputStream())).printTree();
+      new TruffulaPrinter(files, new PrintStream(new ByteArrayOutputStream())).printTree();
+
+      assertEquals(files.getStats().getSourceCalls(), directories.getStats().getSourceCalls(), mode);
+    }
+  }
+
+  @Test
+  void testMemorySourceNeedsNoGuard() {
+    File root = new File("root");
+    MemoryTreeSource source = new MemoryTreeSource(root);
+    source.addDirectory(new File(root, "a/b"));
+    SymlinkGuard guard = new SymlinkGuard(source, root, false);
+
+    assertNull(guard.check(new File(root, "a")));
+    assertNull(guard.check(new File(root, "a/b")));
+  }
+
+  @Test
+  void testHashNeverReturnsZero() {
+    assertTrue(SymlinkGuard.hash("") != 0);
+    assertTrue(SymlinkGuard.hash("/a/b") != SymlinkGuard.hash("/a/c"));
+  }
+}
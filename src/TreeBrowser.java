@@ -0,0 +1,250 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An interactive view of a tree that lists a directory only when it is expanded.
+ *
+ * At first only the root is listed. Each directory in view is numbered, and typing
+ * its number and Enter expands it, listing and sorting it if needed, or collapses it
+ * again. The view is redrawn after every command, with the same indentation and
+ * per-depth colors as TruffulaPrinter:
+ *
+ *    1 + docs/
+ *    2 - src/
+ *          App.java
+ *    3 +    util/
+ *
+ * Commands:
+ * - N : Expand or collapse directory N.
+ * - r : Forget every listing and list the expanded directories again.
+ * - q : Quit. The end of the input quits too.
+ *
+ * Listings are kept in an LRU cache holding at most maxEntries entries in total, so
+ * browsing a huge tree for a long time does not use more and more memory. An
+ * expanded directory whose listing was evicted is listed again when it is redrawn.
+ * Collapsing a directory keeps its subdirectories' state, so expanding it again
+ * shows them as they were.
+ *
+ * Input is read a line at a time, since java.io cannot put a terminal in raw mode.
+ */
+public class TreeBrowser {
+
+  /**
+   * Default limit on the total number of entries held across all cached listings.
+   */
+  public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+  private static final String PROMPT = "[number] expand/collapse, r refresh, q quit> ";
+
+  private final TruffulaOptions options;
+  private final BufferedReader in;
+  private final ColorPrinter out;
+  private final List<ConsoleColor> colorSequence;
+  private final int maxEntries;
+
+  /**
+   * Cached listings by directory, least recently used first.
+   */
+  private final LinkedHashMap<File, FileEntry[]> listings = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * The number of entries held across all cached listings.
+   */
+  private long entryCount;
+
+  /**
+   * The number of directories listed so far, cached or not.
+   */
+  private int listingsRead;
+
+  /**
+   * The directories that are expanded.
+   */
+  private final Set<File> expanded = new HashSet<>();
+
+  /**
+   * The directories in view, by number minus one, as of the last redraw.
+   */
+  private final List<File> numbered = new ArrayList<>();
+
+  /**
+   * Constructs a browser for the terminal: commands come from System.in and the
+   * tree is drawn on System.out in the default colors.
+   *
+   * @param options the options deciding what is listed and how it is shown
+   */
+  public TreeBrowser(TruffulaOptions options) {
+    this(options, System.in, System.out, TruffulaPrinter.DEFAULT_COLOR_SEQUENCE, DEFAULT_MAX_ENTRIES);
+  }
+
+  /**
+   * Constructs a browser reading commands from the given stream.
+   *
+   * @param options       the options deciding what is listed and how it is shown
+   * @param in            where commands are read from
+   * @param out           where the tree is drawn
+   * @param colorSequence the colors cycled through by depth
+   * @param maxEntries    the maximum number of entries held across cached listings
+   */
+  public TreeBrowser(TruffulaOptions options, InputStream in, PrintStream out,
+      List<ConsoleColor> colorSequence, int maxEntries) {
+    this.options = options;
+    this.in = new BufferedReader(new InputStreamReader(in));
+    this.out = new ColorPrinter(out);
+    this.colorSequence = colorSequence;
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * Draws the tree and runs commands until q or the end of the input.
+   *
+   * @throws IOException if the commands cannot be read
+   */
+  public void run() throws IOException {
+    File root = options.getRoot();
+    if (!options.getSource().exists(root)) {
+      out.setCurrentColor(null);
+      out.println("Error: Path does not exist.");
+      out.flush();
+      return;
+    }
+    expanded.add(root);
+
+    draw();
+    String line;
+    while ((line = in.readLine()) != null) {
+      String command = line.trim();
+      if (command.equals("q")) {
+        break;
+      } else if (command.equals("r")) {
+        listings.clear();
+        entryCount = 0;
+      } else if (!command.isEmpty() && !toggle(command)) {
+        out.setCurrentColor(null);
+        out.println("Unknown command: " + command);
+      }
+      draw();
+    }
+    out.setCurrentColor(null);
+    out.println("");
+    out.flush();
+  }
+
+  /**
+   * Returns the number of directories listed so far, counting each time an evicted
+   * or refreshed listing was read again.
+   *
+   * @return the number of listings read
+   */
+  public int getListingsRead() {
+    return listingsRead;
+  }
+
+  /**
+   * Expands or collapses a directory named by its number.
+   *
+   * @return false if the command is not the number of a directory in view
+   */
+  private boolean toggle(String command) {
+    int number;
+    try {
+      number = Integer.parseInt(command);
+    } catch (NumberFormatException e) {
+      return false;
+    }
+    if (number < 1 || number > numbered.size()) return false;
+
+    File directory = numbered.get(number - 1);
+    if (!expanded.remove(directory)) {
+      expanded.add(directory);
+    }
+    return true;
+  }
+
+  /**
+   * Draws the expanded part of the tree, numbering every directory in view, then
+   * the prompt.
+   */
+  private void draw() {
+    numbered.clear();
+    StringBuilder line = new StringBuilder();
+    drawDirectory(options.getRoot(), 0, line);
+    out.setCurrentColor(null);
+    out.print(PROMPT);
+    out.flush();
+  }
+
+  /**
+   * Draws the entries of an expanded directory, and those of its expanded
+   * subdirectories below them. Recursion depth is bounded by how far the user has
+   * expanded, not by the depth of the tree.
+   */
+  private void drawDirectory(File directory, int depth, StringBuilder line) {
+    FileEntry[] entries = list(directory);
+    if (entries == null) return;
+
+    String indent = "   ".repeat(depth);
+    for (FileEntry entry : entries) {
+      boolean open = entry.canDescend() && expanded.contains(entry.getFile());
+      if (open) {
+        String note = DirectoryLister.unlistedNote(entry.getFile(), list(entry.getFile()));
+        if (note != null) {
+          entry = entry.withNote(note);
+          open = false;
+        }
+      }
+      line.setLength(0);
+      if (entry.canDescend()) {
+        numbered.add(entry.getFile());
+        String number = Integer.toString(numbered.size());
+        for (int i = number.length(); i < 4; i++) line.append(' ');
+        line.append(number).append(open ? " - " : " + ");
+      } else {
+        line.append("       ");
+      }
+      out.setCurrentColor(null);
+      out.print(line.toString());
+
+      line.setLength(0);
+      entry.appendLine(line, indent, "");
+      out.setCurrentColor(TruffulaPrinter.depthColor(options, colorSequence, depth));
+      out.println(line.toString());
+
+      if (open) {
+        drawDirectory(entry.getFile(), depth + 1, line);
+      }
+    }
+  }
+
+  /**
+   * Returns the listing of a directory from the cache, listing and caching it if it
+   * is not there.
+   */
+  private FileEntry[] list(File directory) {
+    FileEntry[] entries = listings.get(directory);
+    if (entries != null) return entries;
+
+    entries = DirectoryLister.readDirectory(directory, options);
+    listingsRead++;
+    if (entries == null) return null;
+
+    listings.put(directory, entries);
+    entryCount += entries.length;
+    Iterator<FileEntry[]> eldest = listings.values().iterator();
+    while (entryCount > maxEntries && listings.size() > 1 && eldest.hasNext()) {
+      entryCount -= eldest.next().length;
+      eldest.remove();
+    }
+    return entries;
+  }
+}
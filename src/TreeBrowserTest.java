@@ -0,0 +1,84 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TreeBrowserTest {
+
+  private static final String NL = System.lineSeparator();
+  private static final String PROMPT = "[number] expand/collapse, r refresh, q quit> ";
+
+  private static MemoryTreeSource createTree(File root) {
+    MemoryTreeSource source = new MemoryTreeSource(root);
+    source.addFile(new File(root, "docs/guide.md"), 1);
+    source.addFile(new File(root, "src/App.java"), 1);
+    source.addFile(new File(root, "src/util/Strings.java"), 1);
+    source.addFile(new File(root, "README.md"), 1);
+    return source;
+  }
+
+  private static TreeBrowser browse(TruffulaOptions options, String input, ByteArrayOutputStream out, int maxEntries)
+      throws IOException {
+    TreeBrowser browser = new TreeBrowser(options, new ByteArrayInputStream(input.getBytes()),
+        new PrintStream(out), TruffulaPrinter.DEFAULT_COLOR_SEQUENCE, maxEntries);
+    browser.run();
+    return browser;
+  }
+
+  @Test
+  void testDirectoriesAreListedWhenExpanded() throws IOException {
+    File root = new File("root");
+    TruffulaOptions options = new TruffulaOptions(createTree(root), root, false, false);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    TreeBrowser browser = browse(options, "2\n3\n2\nq\n", out, TreeBrowser.DEFAULT_MAX_ENTRIES);
+
+    String rootView = "   1 + docs/" + NL
+        + "       README.md" + NL
+        + "   2 + src/" + NL;
+    String srcOpen = "   1 + docs/" + NL
+        + "       README.md" + NL
+        + "   2 - src/" + NL
+        + "          App.java" + NL
+        + "   3 +    util/" + NL;
+    String utilOpen = "   1 + docs/" + NL
+        + "       README.md" + NL
+        + "   2 - src/" + NL
+        + "          App.java" + NL
+        + "   3 -    util/" + NL
+        + "             Strings.java" + NL;
+    assertEquals(rootView + PROMPT + srcOpen + PROMPT + utilOpen + PROMPT + rootView + PROMPT + NL, out.toString());
+    // The root, src and util were listed; docs never was.
+    assertEquals(3, browser.getListingsRead());
+  }
+
+  @Test
+  void testEvictedListingsAreReadAgain() throws IOException {
+    File root = new File("root");
+    TruffulaOptions options = new TruffulaOptions(createTree(root), root, false, false);
+
+    // The cache holds three entries: the root's listing, or one other.
+    TreeBrowser browser = browse(options, "1\n\n", new ByteArrayOutputStream(), 3);
+
+    // The root; then docs, which evicts the root; then both again on the redraw.
+    assertEquals(1 + 1 + 2, browser.getListingsRead());
+  }
+
+  @Test
+  void testUnknownCommandsAreReported() throws IOException {
+    File root = new File("root");
+    TruffulaOptions options = new TruffulaOptions(createTree(root), root, false, false);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    browse(options, "9\nexpand\n", out, TreeBrowser.DEFAULT_MAX_ENTRIES);
+
+    assertTrue(out.toString().contains("Unknown command: 9" + NL), out.toString());
+    assertTrue(out.toString().contains("Unknown command: expand" + NL), out.toString());
+  }
+}
@@ -0,0 +1,94 @@
+import java.io.File;
+
+/**
+ * Where the entries of a tree and their attributes come from.
+ * 
+ * Entries are named by java.io.File paths, but a File is only used as a path here:
+ * every question about the entry behind it goes to the source. The default source,
+ * FileTreeSource, asks the filesystem; MemoryTreeSource holds a whole tree in memory.
+ * 
+ * Each method answers the way the java.io.File method of the same name does, so a
+ * missing entry is not a directory, has length and time 0, and cannot be listed.
+ * Sources must allow calls from several threads at once, because directories may be
+ * listed in parallel.
+ */
+public interface TreeSource {
+
+  /**
+   * Returns the names of the entries in a directory, in no particular order.
+   *
+   * @param directory the directory to list
+   * @return the names, or null if the path is not a directory or cannot be listed
+   */
+  String[] list(File directory);
+
+  /**
+   * Tests whether an entry exists.
+   *
+   * @param file the entry
+   * @return true if it exists
+   */
+  boolean exists(File file);
+
+  /**
+   * Tests whether an entry is a directory.
+   *
+   * @param file the entry
+   * @return true if it exists and is a directory
+   */
+  boolean isDirectory(File file);
+
+  /**
+   * Returns the size of an entry.
+   *
+   * @param file the entry
+   * @return the size in bytes, or 0 if it does not exist
+   */
+  long length(File file);
+
+  /**
+   * Returns the last-modified time of an entry.
+   *
+   * @param file the entry
+   * @return the time in milliseconds since the epoch, or 0 if it does not exist
+   */
+  long lastModified(File file);
+
+  /**
+   * Tests whether the current user can read an entry.
+   *
+   * @param file the entry
+   * @return true if it exists and can be read
+   */
+  boolean canRead(File file);
+
+  /**
+   * Tests whether the current user can write an entry.
+   *
+   * @param file the entry
+   * @return true if it exists and can be written
+   */
+  boolean canWrite(File file);
+
+  /**
+   * Tests whether the current user can execute an entry, or enter it if it is a
+   * directory.
+   *
+   * @param file the entry
+   * @return true if it exists and can be executed
+   */
+  boolean canExecute(File file);
+
+  /**
+   * Returns the real location of an entry, with every symbolic link on its path
+   * resolved, like java.io.File.getCanonicalPath(). The default suits sources
+   * without links and returns null.
+   *
+   * @param file the entry
+   * @return the canonical path, or null if the source has no links or the path
+   *         cannot be resolved
+   */
+  default String getCanonicalPath(File file) {
+    return null;
+  }
+}
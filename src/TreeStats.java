@@ -0,0 +1,333 @@
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and per-phase timings for one run, reported by --stats.
+ *
+ * Phases:
+ * - list   : asking the tree source for the names in a directory (listFiles)
+ * - stat   : asking the tree source about single entries (isDirectory, length, ...)
+ * - sort   : AlphabeticalFileSorter
+ * - render : building the text of each line
+ * - write  : handing lines to the ColorPrinter, including its writes to the stream
+ *
+ * Wall and CPU time are summed over every thread that works on a phase, so with -j
+ * or --prefetch they can add up to more than the run took.
+ *
+ * Nothing is counted unless the options carry a TreeStats, and every call site
+ * checks for that first: with --stats off the hot paths pay one null check, and the
+ * tree source is not wrapped at all. All methods may be called from several threads.
+ */
+public class TreeStats {
+
+  /**
+   * The parts of a run that are timed separately.
+   */
+  public enum Phase {
+    LIST, STAT, SORT, RENDER, WRITE
+  }
+
+  // An instance field, so runs without --stats never load the management classes.
+  private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+  private final boolean cpuTimeSupported = threads.isCurrentThreadCpuTimeSupported();
+  private final long startNanos = System.nanoTime();
+
+  private final LongAdder[] calls = adders();
+  private final LongAdder[] wallNanos = adders();
+  private final LongAdder[] cpuNanos = adders();
+
+  private final LongAdder directories = new LongAdder();
+  private final LongAdder subdirectories = new LongAdder();
+  private final LongAdder files = new LongAdder();
+  private final LongAdder hidden = new LongAdder();
+  private final LongAdder excluded = new LongAdder();
+  private final LongAdder capped = new LongAdder();
+
+  private File largestDirectory;
+  private long largestEntries = -1;
+  private File slowestDirectory;
+  private long slowestNanos = -1;
+
+  private static LongAdder[] adders() {
+    LongAdder[] adders = new LongAdder[Phase.values().length];
+    for (int i = 0; i < adders.length; i++) {
+      adders[i] = new LongAdder();
+    }
+    return adders;
+  }
+
+  /**
+   * Starts timing a phase on the current thread.
+   *
+   * @param stats the run's stats, or null if stats are off
+   * @param phase the phase to time
+   * @return the running timer, or null if stats are off
+   */
+  public static Timer start(TreeStats stats, Phase phase) {
+    return stats == null ? null : stats.new Timer(phase);
+  }
+
+  /**
+   * Stops a timer returned by start(), adding its time to its phase.
+   *
+   * @param timer the timer, or null if stats are off
+   */
+  public static void stop(Timer timer) {
+    if (timer != null) {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Records one directory listing.
+   *
+   * @param directory the directory that was listed
+   * @param names     the number of names the directory holds
+   * @param entries   the entries kept, or null if the directory could not be listed
+   * @param hidden    the number of hidden entries dropped
+   * @param excluded  the number of entries dropped by include, exclude or .gitignore patterns
+   * @param nanos     how long the whole listing took
+   */
+  public void recordListing(File directory, int names, FileEntry[] entries, int hidden, int excluded, long nanos) {
+    directories.increment();
+    this.hidden.add(hidden);
+    this.excluded.add(excluded);
+    if (entries != null) {
+      for (FileEntry entry : entries) {
+        if (entry.getOmittedCount() > 0) {
+          capped.add(entry.getOmittedCount());
+        } else if (entry.isDirectory()) {
+          subdirectories.increment();
+        } else {
+          files.increment();
+        }
+      }
+    }
+    synchronized (this) {
+      if (names > largestEntries) {
+        largestEntries = names;
+        largestDirectory = directory;
+      }
+      if (nanos > slowestNanos) {
+        slowestNanos = nanos;
+        slowestDirectory = directory;
+      }
+    }
+  }
+
+  /**
+   * Wraps a tree source so that every call to it is counted and timed.
+   *
+   * @param source the source to wrap
+   * @return the counting source
+   */
+  public TreeSource count(TreeSource source) {
+    return new CountingSource(source);
+  }
+
+  /**
+   * Returns the number of calls made to the tree source, each of which is a system
+   * call for a FileTreeSource.
+   *
+   * @return the number of tree source calls
+   */
+  public long getSourceCalls() {
+    return calls[Phase.LIST.ordinal()].sum() + calls[Phase.STAT.ordinal()].sum();
+  }
+
+  /**
+   * Returns the number of directories listed.
+   *
+   * @return the number of listings
+   */
+  public long getDirectories() {
+    return directories.sum();
+  }
+
+  /**
+   * Returns the number of file entries kept across all listings.
+   *
+   * @return the number of files
+   */
+  public long getFiles() {
+    return files.sum();
+  }
+
+  /**
+   * Returns the number of times a phase was timed.
+   *
+   * @param phase the phase
+   * @return the number of calls
+   */
+  public long getCalls(Phase phase) {
+    return calls[phase.ordinal()].sum();
+  }
+
+  /**
+   * Prints the report.
+   *
+   * @param out the stream to print to, normally System.err
+   */
+  public void print(PrintStream out) {
+    long elapsed = System.nanoTime() - startNanos;
+    out.println("--- truffula stats ---");
+    out.printf(Locale.ROOT, "directories listed  %,d%n", directories.sum());
+    out.printf(Locale.ROOT, "subdirectories      %,d%n", subdirectories.sum());
+    out.printf(Locale.ROOT, "files               %,d%n", files.sum());
+    out.printf(Locale.ROOT, "filtered            %,d hidden, %,d by pattern, %,d over --max-entries%n",
+        hidden.sum(), excluded.sum(), capped.sum());
+    out.printf(Locale.ROOT, "source calls        %,d (%,d list, %,d stat)%n", getSourceCalls(),
+        calls[Phase.LIST.ordinal()].sum(), calls[Phase.STAT.ordinal()].sum());
+    synchronized (this) {
+      if (largestDirectory != null) {
+        out.printf(Locale.ROOT, "largest directory   %s (%,d entries)%n", largestDirectory.getPath(), largestEntries);
+        out.printf(Locale.ROOT, "slowest listing     %s (%s)%n", slowestDirectory.getPath(), millis(slowestNanos));
+      }
+    }
+    out.printf(Locale.ROOT, "%-8s %12s %12s %12s%n", "phase", "calls", "wall", "cpu");
+    for (Phase phase : Phase.values()) {
+      int i = phase.ordinal();
+      out.printf(Locale.ROOT, "%-8s %,12d %12s %12s%n", phase.name().toLowerCase(Locale.ROOT), calls[i].sum(),
+          millis(wallNanos[i].sum()), cpuTimeSupported ? millis(cpuNanos[i].sum()) : "n/a");
+    }
+    out.printf(Locale.ROOT, "total    %12s %12s%n", "", millis(elapsed));
+    out.flush();
+  }
+
+  private static String millis(long nanos) {
+    return String.format(Locale.ROOT, "%.1f ms", nanos / 1_000_000.0);
+  }
+
+  private long cpuTime() {
+    return cpuTimeSupported ? threads.getCurrentThreadCpuTime() : 0;
+  }
+
+  /**
+   * One running measurement of a phase on the current thread.
+   */
+  public class Timer {
+    private final Phase phase;
+    private final long wallStart;
+    private final long cpuStart;
+
+    private Timer(Phase phase) {
+      this.phase = phase;
+      this.cpuStart = cpuTime();
+      this.wallStart = System.nanoTime();
+    }
+
+    private void stop() {
+      long wall = System.nanoTime() - wallStart;
+      int i = phase.ordinal();
+      calls[i].increment();
+      wallNanos[i].add(wall);
+      cpuNanos[i].add(cpuTime() - cpuStart);
+    }
+  }
+
+  /**
+   * Counts and times every call to the source it wraps.
+   */
+  private class CountingSource implements TreeSource {
+    private final TreeSource source;
+
+    CountingSource(TreeSource source) {
+      this.source = source;
+    }
+
+    @Override
+    public String[] list(File directory) {
+      Timer timer = new Timer(Phase.LIST);
+      try {
+        return source.list(directory);
+      } finally {
+        timer.stop();
+      }
+    }
+
+    @Override
+    public boolean exists(File file) {
+      Timer timer = new Timer(Phase.STAT);
+      try {
+        return source.exists(file);
+      } finally {
+        timer.stop();
+      }
+    }
+
+    @Override
+    public boolean isDirectory(File file) {
+      Timer timer = new Timer(Phase.STAT);
+      try {
+        return source.isDirectory(file);
+      } finally {
+        timer.stop();
+      }
+    }
+
+    @Override
+    public long length(File file) {
+      Timer timer = new Timer(Phase.STAT);
+      try {
+        return source.length(file);
+      } finally {
+        timer.stop();
+      }
+    }
+
+    @Override
+    public long lastModified(File file) {
+      Timer timer = new Timer(Phase.STAT);
+      try {
+        return source.lastModified(file);
+      } finally {
+        timer.stop();
+      }
+    }
+
+    @Override
+    public boolean canRead(File file) {
+      Timer timer = new Timer(Phase.STAT);
+      try {
+        return source.canRead(file);
+      } finally {
+        timer.stop();
+      }
+    }
+
+    @Override
+    public boolean canWrite(File file) {
+      Timer timer = new Timer(Phase.STAT);
+      try {
+        return source.canWrite(file);
+      } finally {
+        timer.stop();
+      }
+    }
+
+    @Override
+    public boolean canExecute(File file) {
+      Timer timer = new Timer(Phase.STAT);
+      try {
+        return source.canExecute(file);
+      } finally {
+        timer.stop();
+      }
+    }
+
+    @Override
+    public String getCanonicalPath(File file) {
+      Timer timer = new Timer(Phase.STAT);
+      try {
+        return source.getCanonicalPath(file);
+      } finally {
+        timer.stop();
+      }
+    }
+  }
+}
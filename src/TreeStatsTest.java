@@ -0,0 +1,88 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TreeStatsTest {
+
+  private static void createTree(File root) throws IOException {
+    File sub = new File(root, "sub");
+    assertTrue(sub.mkdir());
+    new File(root, "a.txt").createNewFile();
+    new File(root, ".hidden").createNewFile();
+    new File(sub, "b.txt").createNewFile();
+    new File(sub, "c.log").createNewFile();
+    new File(sub, "d.txt").createNewFile();
+  }
+
+  private static TreeStats print(String... args) throws IOException {
+    TruffulaOptions options = new TruffulaOptions(args);
+    new TruffulaPrinter(options, new PrintStream(new ByteArrayOutputStream())).printTree();
+    return options.getStats();
+  }
+
+  @Test
+  void testStatsAreOffByDefault(@TempDir File tempDir) throws IOException {
+    TruffulaOptions options = new TruffulaOptions(new String[]{tempDir.getPath()});
+
+    assertNull(options.getStats());
+    assertTrue(options.getSource() instanceof FileTreeSource);
+  }
+
+  @Test
+  void testCountsListingsEntriesAndSourceCalls(@TempDir File tempDir) throws IOException {
+    createTree(tempDir);
+    assertTrue(tempDir.setLastModified(1_000_000));
+    assertTrue(new File(tempDir, "sub").setLastModified(2_000_000));
+
+    TreeStats stats = print("--stats", "--exclude", "*.log", tempDir.getPath());
+
+    assertEquals(2, stats.getDirectories());
+    assertEquals(3, stats.getFiles());
+    // One exists() for the root, two lists, one isDirectory() per visible entry, one
+    // getCanonicalPath() for the root, and one lastModified() for the root and each
+    // subdirectory; sub's time is not the root's, so it is not resolved.
+    assertEquals(1 + 2 + 5 + 1 + 2, stats.getSourceCalls());
+    assertEquals(2, stats.getCalls(TreeStats.Phase.SORT));
+    assertEquals(4, stats.getCalls(TreeStats.Phase.RENDER));
+    assertEquals(4 + 1, stats.getCalls(TreeStats.Phase.WRITE));
+  }
+
+  @Test
+  void testCachedListingsAreCounted(@TempDir File tempDir) throws IOException {
+    File tree = new File(tempDir, "tree");
+    assertTrue(tree.mkdir());
+    createTree(tree);
+    String cache = new File(tempDir, "cache").getPath();
+
+    TreeStats stats = print("--stats", "--cache", cache, tree.getPath());
+
+    assertEquals(2, stats.getDirectories());
+    assertEquals(4, stats.getFiles());
+  }
+
+  @Test
+  void testReportNamesEveryPhase(@TempDir File tempDir) throws IOException {
+    createTree(tempDir);
+    new File(tempDir, "sub/e.txt").createNewFile();
+    TreeStats stats = print("--stats", "-j", "2", tempDir.getPath());
+    ByteArrayOutputStream report = new ByteArrayOutputStream();
+
+    stats.print(new PrintStream(report));
+
+    String text = report.toString();
+    assertTrue(text.contains("directories listed  2"), text);
+    assertTrue(text.contains("filtered            1 hidden"), text);
+    assertTrue(text.contains("largest directory   " + new File(tempDir, "sub").getPath() + " (4 entries)"), text);
+    for (TreeStats.Phase phase : TreeStats.Phase.values()) {
+      assertTrue(text.contains(phase.name().toLowerCase()), text);
+    }
+  }
+}
@@ -0,0 +1,247 @@
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps an in-memory copy of a directory tree current as entries are created,
+ * deleted or renamed, and serves it to the TruffulaPrinter as a DirectoryLister.
+ * 
+ * java.io has no change notifications, so the watcher polls. Every entry created,
+ * deleted or renamed in a directory changes that directory's last-modified time,
+ * so a poll costs one lastModified() call per known directory. Only directories
+ * whose time moved are listed again. Subdirectories that appear are scanned, and
+ * subdirectories that disappear are dropped with everything below them.
+ * 
+ * Changing a file's contents does not change its directory's time, so the size and
+ * time columns of existing files are only refreshed when their directory changes
+ * for another reason.
+ */
+public class TreeWatcher implements DirectoryLister {
+
+  /**
+   * Answers for the last-modified times of directories.
+   */
+  private final TreeSource source;
+
+  /**
+   * Reads a single directory from the filesystem.
+   */
+  private final DirectoryLister reader;
+
+  /**
+   * The root directory of the watched tree.
+   */
+  private final File root;
+
+  /**
+   * The number of levels of entries to list, or 0 for no limit.
+   */
+  private final int maxDepth;
+
+  /**
+   * Every known directory of the tree and its current listing.
+   */
+  private final Map<File, Node> nodes = new HashMap<>();
+
+  /**
+   * The number of directory listings read since the watcher was created.
+   */
+  private long listingsRead;
+
+  /**
+   * Constructs a TreeWatcher. Call scan() before using it.
+   *
+   * @param reader reads a single directory from the filesystem
+   * @param root   the root directory of the tree to watch
+   */
+  public TreeWatcher(DirectoryLister reader, File root) {
+    this(reader, root, 0);
+  }
+
+  /**
+   * Constructs a TreeWatcher that only watches directories whose entries lie within
+   * maxDepth levels below the root. Call scan() before using it.
+   *
+   * @param reader   reads a single directory from the filesystem
+   * @param root     the root directory of the tree to watch
+   * @param maxDepth the number of levels of entries to list, or 0 for no limit
+   */
+  public TreeWatcher(DirectoryLister reader, File root, int maxDepth) {
+    this(FileTreeSource.INSTANCE, reader, root, maxDepth);
+  }
+
+  /**
+   * Constructs a TreeWatcher over a tree of the given source. Call scan() before
+   * using it.
+   *
+   * @param source   the source the reader lists directories from
+   * @param reader   reads a single directory from the source
+   * @param root     the root directory of the tree to watch
+   * @param maxDepth the number of levels of entries to list, or 0 for no limit
+   */
+  public TreeWatcher(TreeSource source, DirectoryLister reader, File root, int maxDepth) {
+    this.source = source;
+    this.reader = reader;
+    this.root = root;
+    this.maxDepth = maxDepth;
+  }
+
+  /**
+   * Lists the whole tree, replacing anything known before.
+   */
+  public void scan() {
+    nodes.clear();
+    scanSubtree(root, 0);
+  }
+
+  /**
+   * Checks every known directory once and lists again those that changed.
+   *
+   * @return true if any directory changed
+   */
+  public boolean poll() {
+    boolean changed = false;
+    for (File directory : new ArrayList<>(nodes.keySet())) {
+      Node node = nodes.get(directory);
+      if (node != null && source.lastModified(directory) != node.modified) {
+        relist(directory, node);
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Waits for the tree to change, then keeps polling until it has been quiet for
+   * one poll interval or maxBatchMillis have passed, so a burst of changes is
+   * applied as a single batch.
+   *
+   * @param pollMillis     time between polls
+   * @param maxBatchMillis the longest a batch may keep growing once a change is seen
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public void awaitChanges(long pollMillis, long maxBatchMillis) throws InterruptedException {
+    while (!poll()) {
+      Thread.sleep(pollMillis);
+    }
+    long deadline = System.currentTimeMillis() + maxBatchMillis;
+    while (System.currentTimeMillis() < deadline) {
+      Thread.sleep(pollMillis);
+      if (!poll()) break;
+    }
+  }
+
+  @Override
+  public FileEntry[] list(File directory) {
+    Node node = nodes.get(directory);
+    return node == null || node.entries == null ? null : node.entries.clone();
+  }
+
+  /**
+   * Returns the number of directories being watched.
+   *
+   * @return the number of known directories
+   */
+  public int directoryCount() {
+    return nodes.size();
+  }
+
+  /**
+   * Returns the number of directory listings read so far, including the initial scan.
+   *
+   * @return the number of listings read
+   */
+  public long listingsRead() {
+    return listingsRead;
+  }
+
+  private void scanSubtree(File top, int topDepth) {
+    Deque<Node> pending = new ArrayDeque<>();
+    pending.push(read(top, topDepth));
+    while (!pending.isEmpty()) {
+      Node node = pending.pop();
+      nodes.put(node.directory, node);
+      for (File child : subdirectories(node)) {
+        pending.push(read(child, node.depth + 1));
+      }
+    }
+  }
+
+  private void relist(File directory, Node node) {
+    Set<File> before = new HashSet<>(subdirectories(node));
+    Node fresh = read(directory, node.depth);
+    nodes.put(directory, fresh);
+
+    for (File child : subdirectories(fresh)) {
+      if (!before.remove(child)) {
+        scanSubtree(child, node.depth + 1);
+      }
+    }
+    for (File gone : before) {
+      removeSubtree(gone);
+    }
+  }
+
+  private void removeSubtree(File top) {
+    Deque<File> pending = new ArrayDeque<>();
+    pending.push(top);
+    while (!pending.isEmpty()) {
+      Node node = nodes.remove(pending.pop());
+      if (node != null) {
+        for (File child : subdirectories(node)) {
+          pending.push(child);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads a directory, taking its time before listing so a change made while
+   * listing is caught by the next poll.
+   */
+  private Node read(File directory, int depth) {
+    long modified = source.lastModified(directory);
+    FileEntry[] entries = reader.list(directory);
+    listingsRead++;
+    return new Node(directory, depth, modified, entries);
+  }
+
+  /**
+   * Returns the subdirectories of a node that are within the depth limit.
+   */
+  private List<File> subdirectories(Node node) {
+    List<File> directories = new ArrayList<>();
+    if (node.entries != null && (maxDepth == 0 || node.depth + 1 < maxDepth)) {
+      for (FileEntry entry : node.entries) {
+        if (entry.canDescend()) {
+          directories.add(entry.getFile());
+        }
+      }
+    }
+    return directories;
+  }
+
+  /**
+   * A known directory: its listing, the level below the root of its entries, and the
+   * last-modified time it was read at.
+   */
+  private static class Node {
+    private final File directory;
+    private final int depth;
+    private final long modified;
+    private final FileEntry[] entries;
+
+    Node(File directory, int depth, long modified, FileEntry[] entries) {
+      this.directory = directory;
+      this.depth = depth;
+      this.modified = modified;
+      this.entries = entries;
+    }
+  }
+}
@@ -0,0 +1,115 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TreeWatcherTest {
+
+  private static final long AN_HOUR_AGO = System.currentTimeMillis() - 3_600_000;
+
+  private static File createTree(File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    assertTrue(new File(root, "a/deep").mkdirs());
+    assertTrue(new File(root, "b").mkdirs());
+    new File(root, "a/deep/file.txt").createNewFile();
+    new File(root, "b/other.txt").createNewFile();
+    for (String path : new String[]{"a/deep", "a", "b", ""}) {
+      assertTrue(new File(root, path).setLastModified(AN_HOUR_AGO));
+    }
+    return root;
+  }
+
+  private static TreeWatcher watch(File root) {
+    TruffulaOptions options = new TruffulaOptions(root, false, false);
+    TreeWatcher watcher = new TreeWatcher(directory -> DirectoryLister.readDirectory(directory, options), root);
+    watcher.scan();
+    return watcher;
+  }
+
+  private static String render(File root, TreeWatcher watcher) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new TruffulaPrinter(new TruffulaOptions(root, false, false), new PrintStream(out)).printTree(watcher);
+    return out.toString();
+  }
+
+  private static String print(File root) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new TruffulaPrinter(new TruffulaOptions(root, false, false), new PrintStream(out)).printTree();
+    return out.toString();
+  }
+
+  @Test
+  void testScanMatchesPrintTree(@TempDir File tempDir) throws IOException {
+    File root = createTree(tempDir);
+
+    TreeWatcher watcher = watch(root);
+
+    assertEquals(4, watcher.directoryCount());
+    assertEquals(print(root), render(root, watcher));
+    assertFalse(watcher.poll());
+  }
+
+  @Test
+  void testOnlyChangedDirectoryIsListedAgain(@TempDir File tempDir) throws IOException {
+    File root = createTree(tempDir);
+    TreeWatcher watcher = watch(root);
+    long listingsAfterScan = watcher.listingsRead();
+
+    new File(root, "a/deep/new.txt").createNewFile();
+    assertTrue(new File(root, "a/deep").setLastModified(AN_HOUR_AGO + 1000));
+
+    assertTrue(watcher.poll());
+    assertEquals(listingsAfterScan + 1, watcher.listingsRead());
+    assertEquals(print(root), render(root, watcher));
+  }
+
+  @Test
+  void testAddedAndRemovedSubtrees(@TempDir File tempDir) throws IOException {
+    File root = createTree(tempDir);
+    TreeWatcher watcher = watch(root);
+
+    assertTrue(new File(root, "c/inner").mkdirs());
+    new File(root, "c/inner/x.txt").createNewFile();
+    new File(root, "a/deep/file.txt").delete();
+    new File(root, "a/deep").delete();
+    assertTrue(root.setLastModified(AN_HOUR_AGO + 1000));
+    assertTrue(new File(root, "a").setLastModified(AN_HOUR_AGO + 1000));
+
+    assertTrue(watcher.poll());
+    assertEquals(5, watcher.directoryCount());
+    assertEquals(print(root), render(root, watcher));
+  }
+
+  @Test
+  void testWatchTreePrintsAgainAfterChange(@TempDir File tempDir) throws Exception {
+    File root = createTree(tempDir);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TruffulaPrinter printer = new TruffulaPrinter(new TruffulaOptions(root, false, false), new PrintStream(out));
+
+    Thread watching = new Thread(() -> {
+      try {
+        printer.watchTree(2, 10, 50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    watching.start();
+    Thread.sleep(100);
+    new File(root, "b/added.txt").createNewFile();
+    assertTrue(new File(root, "b").setLastModified(AN_HOUR_AGO + 1000));
+    watching.join(5000);
+
+    assertFalse(watching.isAlive());
+    String[] renders = out.toString().split(System.lineSeparator() + System.lineSeparator());
+    assertEquals(2, renders.length);
+    assertFalse(renders[0].contains("added.txt"));
+    assertTrue(renders[1].contains("added.txt"));
+  }
+}
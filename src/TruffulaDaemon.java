@@ -0,0 +1,431 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A resident truffula process that prints trees for clients, so repeated calls pay
+ * neither JVM startup nor a cold walk of the filesystem.
+ *
+ * The daemon listens on a loopback TCP port and keeps one in-memory ListingCache
+ * shared by every request. A request is the daemon's token followed by the usual
+ * command-line arguments, one per line in UTF-8, ending with an empty line:
+ *
+ *    3f9a...
+ *    -nc
+ *    -L
+ *    2
+ *    /path/to/directory
+ *
+ * The daemon prints the tree for those arguments back on the same connection,
+ * followed by the --stats report if asked for, and closes it. Arguments it cannot
+ * accept are answered with a single "Error: ..." line. Relative paths are resolved
+ * against the daemon's working directory, so clients should send absolute ones;
+ * connect() does. Watch mode, -i and -o are refused, since they would run on the
+ * daemon's side.
+ *
+ * The cache stays fresh the way ListingCache always does: java.io has no change
+ * notifications, so every request checks each directory's last-modified time, and
+ * a directory that changed is listed again. Serving a cached directory costs one
+ * lastModified() call instead of a listing. The cache holds at most maxEntries
+ * entries in total and evicts the least recently used listings past that. Requests
+ * with a tree inside an archive are read directly, without the cache.
+ *
+ * Each connection is served on its own virtual thread. Only the loopback interface
+ * is bound, but every local user can connect to a loopback port, and the daemon
+ * lists any directory its owner can read. So on startup the daemon writes a random
+ * token to a file in a directory only its owner can enter (mode 0700, by default
+ * ~/.truffula), and answers only requests that start with that token. Anyone who
+ * can read the token file can list what the daemon's owner can. The file is
+ * deleted when the daemon is closed.
+ */
+public class TruffulaDaemon implements Closeable {
+
+  /**
+   * The port the daemon listens on and clients connect to by default.
+   */
+  public static final int DEFAULT_PORT = 7367;
+
+  /**
+   * The most arguments a request may hold.
+   */
+  private static final int MAX_ARGUMENTS = 1024;
+
+  /**
+   * How long a client may take to send its request.
+   */
+  private static final int REQUEST_TIMEOUT_MILLIS = 10_000;
+
+  /**
+   * The length in bytes of the random token.
+   */
+  private static final int TOKEN_BYTES = 32;
+
+  private final ServerSocket server;
+  private final ListingCache cache;
+  private final File tokenFile;
+  private final byte[] token;
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  /**
+   * Constructs a daemon listening on the given loopback port and writes its token
+   * to tokenFile(tokenDirectory, port). Call serve() to start answering requests.
+   *
+   * @param port           the port to listen on, or 0 for any free port
+   * @param maxEntries     the maximum number of entries held across cached listings
+   * @param tokenDirectory the directory for the token file, created if missing and
+   *                       made private to its owner
+   * @throws IOException if the port cannot be bound or the token cannot be written
+   *                     privately
+   */
+  public TruffulaDaemon(int port, int maxEntries, File tokenDirectory) throws IOException {
+    this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    this.cache = new ListingCache(maxEntries);
+    this.tokenFile = tokenFile(tokenDirectory, server.getLocalPort());
+    try {
+      this.token = writeToken(tokenFile);
+    } catch (IOException e) {
+      server.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the directory token files are kept in unless another is given:
+   * .truffula in the user's home directory.
+   *
+   * @return the default token directory
+   */
+  public static File defaultTokenDirectory() {
+    return new File(System.getProperty("user.home"), ".truffula");
+  }
+
+  /**
+   * Returns the token file of the daemon listening on the given port.
+   *
+   * @param tokenDirectory the directory token files are kept in
+   * @param port           the daemon's port
+   * @return the token file
+   */
+  public static File tokenFile(File tokenDirectory, int port) {
+    return new File(tokenDirectory, "daemon-" + port + ".token");
+  }
+
+  /**
+   * Returns the port the daemon listens on.
+   *
+   * @return the local port
+   */
+  public int getPort() {
+    return server.getLocalPort();
+  }
+
+  /**
+   * Returns the number of directories currently cached.
+   *
+   * @return the number of cached listings
+   */
+  public int cachedDirectories() {
+    return cache.size();
+  }
+
+  /**
+   * Accepts connections and answers their requests until the daemon is closed.
+   *
+   * @throws IOException if accepting a connection fails for a reason other than
+   *                     the daemon being closed
+   */
+  public void serve() throws IOException {
+    while (!server.isClosed()) {
+      Socket socket;
+      try {
+        socket = server.accept();
+      } catch (SocketException e) {
+        if (server.isClosed()) return;
+        throw e;
+      }
+      executor.execute(() -> answer(socket));
+    }
+  }
+
+  /**
+   * Stops accepting connections and deletes the token file. Requests in progress
+   * are left to finish.
+   */
+  @Override
+  public void close() throws IOException {
+    server.close();
+    executor.shutdown();
+    tokenFile.delete();
+  }
+
+  /**
+   * Reads one request from a connection, prints the tree to it and closes it.
+   */
+  private void answer(Socket socket) {
+    try (socket) {
+      socket.setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+      PrintStream out = new PrintStream(socket.getOutputStream(), false, "UTF-8");
+      try {
+        print(readRequest(socket.getInputStream(), token), out);
+      } catch (IllegalArgumentException | FileNotFoundException e) {
+        out.println("Error: " + e.getMessage());
+      }
+      out.flush();
+    } catch (IOException e) {
+      // The client went away; there is nobody left to tell.
+    }
+  }
+
+  /**
+   * Prints the tree for one request's arguments.
+   */
+  private void print(String[] args, PrintStream out) throws FileNotFoundException {
+    TruffulaOptions options = new TruffulaOptions(args);
+    if (options.isWatch() || options.isInteractive() || options.getOutputFile() != null) {
+      throw new IllegalArgumentException("-w, -i and -o are not available from the daemon");
+    }
+    boolean archive = false;
+    for (TruffulaOptions rootOptions : options.getRootOptions()) {
+      archive |= rootOptions.getRoot().isFile();
+    }
+    TruffulaPrinter printer = archive
+        ? new TruffulaPrinter(options, out)
+        : new TruffulaPrinter(options, out, cache);
+    printer.printTree();
+    if (options.getStats() != null) {
+      options.getStats().print(out);
+    }
+  }
+
+  /**
+   * Checks the token a request starts with and reads its arguments, one per line up
+   * to an empty line or the end of the input.
+   *
+   * @throws IllegalArgumentException if the token is wrong or the request holds too
+   *                                  many arguments
+   */
+  private static String[] readRequest(InputStream in, byte[] token) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+    StringBuilder given = new StringBuilder();
+    for (int c = reader.read(); c != -1 && c != '\n' && given.length() <= token.length; c = reader.read()) {
+      given.append((char) c);
+    }
+    if (!MessageDigest.isEqual(token, given.toString().getBytes("UTF-8"))) {
+      throw new IllegalArgumentException("Not authorized; send the token from the daemon's token file");
+    }
+    List<String> args = new ArrayList<>();
+    String line;
+    while ((line = reader.readLine()) != null && !line.isEmpty()) {
+      if (args.size() == MAX_ARGUMENTS) {
+        throw new IllegalArgumentException("Too many arguments");
+      }
+      args.add(line);
+    }
+    return args.toArray(new String[0]);
+  }
+
+  /**
+   * Writes a new random token to a file that only its owner can read, in a
+   * directory that only its owner can enter. The directory is made private before
+   * the file is created, so the token is never readable by anyone else.
+   *
+   * @return the token as sent by clients
+   * @throws IOException if the directory cannot be made private or the file written
+   */
+  private static byte[] writeToken(File file) throws IOException {
+    File directory = file.getAbsoluteFile().getParentFile();
+    directory.mkdirs();
+    if (!directory.isDirectory() || !ownerOnly(directory, true)) {
+      throw new IOException("Cannot make the token directory private: " + directory);
+    }
+    byte[] secret = new byte[TOKEN_BYTES];
+    new SecureRandom().nextBytes(secret);
+    byte[] token = HexFormat.of().formatHex(secret).getBytes("UTF-8");
+
+    file.delete();
+    if (!file.createNewFile() || !ownerOnly(file, false)) {
+      throw new IOException("Cannot create the token file privately: " + file);
+    }
+    try (OutputStream out = new FileOutputStream(file)) {
+      out.write(token);
+      out.write('\n');
+    }
+    return token;
+  }
+
+  /**
+   * Takes every permission away from group and others, leaving the owner read and
+   * write access, and search access to a directory.
+   *
+   * @return true if every permission could be set
+   */
+  private static boolean ownerOnly(File file, boolean directory) {
+    return file.setReadable(false, false) && file.setReadable(true, true)
+        && file.setWritable(false, false) && file.setWritable(true, true)
+        && file.setExecutable(false, false) && (!directory || file.setExecutable(true, true));
+  }
+
+  /**
+   * Reads the token of the daemon listening on the given port.
+   *
+   * @throws IOException if the token file cannot be read
+   */
+  private static String readToken(File tokenFile) throws IOException {
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(new FileInputStream(tokenFile), "UTF-8"))) {
+      String token = reader.readLine();
+      if (token == null) {
+        throw new IOException("Empty token file: " + tokenFile);
+      }
+      return token;
+    } catch (FileNotFoundException e) {
+      throw new IOException("Cannot read " + tokenFile + "; is the daemon running on that port?", e);
+    }
+  }
+
+  /**
+   * Sends a request to a daemon and copies the tree it prints to the given stream.
+   * The paths at the end of the arguments are made absolute first; if the arguments
+   * cannot be parsed, only the last one is, and the daemon reports the error.
+   *
+   * @param port           the port the daemon listens on
+   * @param tokenDirectory the directory the daemon wrote its token file to
+   * @param args           command-line arguments, as for TruffulaOptions
+   * @param out            where the tree is copied to
+   * @throws IOException if the token cannot be read or the daemon cannot be reached
+   */
+  public static void connect(int port, File tokenDirectory, String[] args, OutputStream out) throws IOException {
+    String token = readToken(tokenFile(tokenDirectory, port));
+    int firstPath = args.length - 1;
+    try {
+      firstPath = args.length - new TruffulaOptions(args).getRootOptions().size();
+    } catch (IllegalArgumentException | FileNotFoundException e) {
+      // Sent as given; the daemon answers with the error.
+    }
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+      Writer request = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+      request.write(token);
+      request.write('\n');
+      for (int i = 0; i < args.length; i++) {
+        String arg = i >= firstPath ? new File(args[i]).getAbsolutePath() : args[i];
+        if (arg.isEmpty() || arg.indexOf('\n') >= 0 || arg.indexOf('\r') >= 0) {
+          throw new IllegalArgumentException("Argument cannot be sent to the daemon: " + arg);
+        }
+        request.write(arg);
+        request.write('\n');
+      }
+      request.write('\n');
+      request.flush();
+
+      InputStream in = socket.getInputStream();
+      byte[] buffer = new byte[64 * 1024];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      out.flush();
+    }
+  }
+
+  /**
+   * Runs the daemon or a client from the command line.
+   *
+   * Arguments Format: --daemon [--port port] [--cache-entries count]
+   *                   --connect [--port port] truffula-arguments... path...
+   *
+   * @param args command-line arguments starting with --daemon or --connect
+   * @throws IllegalArgumentException if the arguments are malformed
+   * @throws IOException if the port cannot be bound or the daemon cannot be reached
+   */
+  static void run(String[] args) throws IOException {
+    int port = DEFAULT_PORT;
+    int maxEntries = ListingCache.DEFAULT_MAX_ENTRIES;
+    int i = 1;
+    while (i < args.length) {
+      if (args[i].equals("--port")) {
+        port = parsePort(args, i + 1);
+      } else if (args[0].equals("--daemon") && args[i].equals("--cache-entries")) {
+        maxEntries = parseCount(args, i + 1);
+      } else {
+        break;
+      }
+      i += 2;
+    }
+
+    if (args[0].equals("--connect")) {
+      String[] request = new String[args.length - i];
+      System.arraycopy(args, i, request, 0, request.length);
+      if (request.length == 0) {
+        throw new IllegalArgumentException("argument is required.");
+      }
+      connect(port, defaultTokenDirectory(), request, System.out);
+      return;
+    }
+    if (i < args.length) {
+      throw new IllegalArgumentException("Invalid flag: " + args[i]);
+    }
+    TruffulaDaemon daemon = new TruffulaDaemon(port, maxEntries, defaultTokenDirectory());
+    // Removes the token file when the daemon is stopped by a signal.
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> closeQuietly(daemon)));
+    try {
+      System.err.println("truffula daemon listening on port " + daemon.getPort()
+          + ", token in " + tokenFile(defaultTokenDirectory(), daemon.getPort()));
+      daemon.serve();
+    } finally {
+      daemon.close();
+    }
+  }
+
+  private static void closeQuietly(TruffulaDaemon daemon) {
+    try {
+      daemon.close();
+    } catch (IOException e) {
+      // Exiting anyway.
+    }
+  }
+
+  private static int parsePort(String[] args, int index) {
+    int port = parseCount(args, index);
+    if (port > 65535) {
+      throw new IllegalArgumentException("Invalid value for flag --port: " + port);
+    }
+    return port;
+  }
+
+  private static int parseCount(String[] args, int index) {
+    if (index >= args.length) {
+      throw new IllegalArgumentException("Missing value for flag: " + args[index - 1]);
+    }
+    int value;
+    try {
+      value = Integer.parseInt(args[index]);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid value for flag " + args[index - 1] + ": " + args[index]);
+    }
+    if (value < 1) {
+      throw new IllegalArgumentException("Value for flag " + args[index - 1] + " must be at least 1: " + value);
+    }
+    return value;
+  }
+}
@@ -0,0 +1,143 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class TruffulaDaemonTest {
+
+  private static final String NL = System.lineSeparator();
+
+  @TempDir
+  File tokenDirectory;
+
+  private TruffulaDaemon daemon;
+  private Thread serving;
+
+  @BeforeEach
+  void startDaemon() throws IOException {
+    daemon = new TruffulaDaemon(0, 5, new File(tokenDirectory, "tokens"));
+    serving = new Thread(() -> {
+      try {
+        daemon.serve();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    serving.start();
+  }
+
+  @AfterEach
+  void stopDaemon() throws Exception {
+    daemon.close();
+    serving.join(5000);
+  }
+
+  private String request(String... args) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TruffulaDaemon.connect(daemon.getPort(), new File(tokenDirectory, "tokens"), args, out);
+    return out.toString(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  void testDaemonPrintsWhatTheCommandLineWould(@TempDir File tempDir) throws IOException {
+    assertTrue(new File(tempDir, "a/b").mkdirs());
+    new File(tempDir, "a/b/c.txt").createNewFile();
+    new File(tempDir, "d.txt").createNewFile();
+    new File(tempDir, ".hidden").createNewFile();
+    String path = tempDir.getPath();
+
+    ByteArrayOutputStream direct = new ByteArrayOutputStream();
+    new TruffulaPrinter(new TruffulaOptions(new String[]{"-h", path}), new PrintStream(direct)).printTree();
+
+    assertEquals(direct.toString(), request("-h", path));
+    assertEquals("a/" + NL + "d.txt" + NL, request("-nc", "-L", "1", path));
+  }
+
+  @Test
+  void testChangesAreSeenOnTheNextRequest(@TempDir File tempDir) throws IOException {
+    File a = new File(tempDir, "a");
+    assertTrue(a.mkdir());
+    new File(a, "one.txt").createNewFile();
+    // Back-date the directory so its listing is old enough to cache.
+    assertTrue(a.setLastModified(System.currentTimeMillis() - 60_000));
+    String path = tempDir.getPath();
+
+    assertEquals("a/" + NL + "   one.txt" + NL, request("-nc", path));
+    assertTrue(daemon.cachedDirectories() > 0);
+
+    new File(a, "two.txt").createNewFile();
+    assertTrue(a.setLastModified(System.currentTimeMillis() - 30_000));
+    assertEquals("a/" + NL + "   one.txt" + NL + "   two.txt" + NL, request("-nc", path));
+  }
+
+  @Test
+  void testCacheIsCappedByEntryCount(@TempDir File tempDir) throws IOException {
+    for (int i = 0; i < 4; i++) {
+      File directory = new File(tempDir, "d" + i);
+      assertTrue(directory.mkdir());
+      new File(directory, "x.txt").createNewFile();
+      new File(directory, "y.txt").createNewFile();
+      assertTrue(directory.setLastModified(System.currentTimeMillis() - 60_000));
+    }
+
+    request("-nc", tempDir.getPath());
+
+    assertTrue(daemon.cachedDirectories() <= 2, "cached " + daemon.cachedDirectories());
+  }
+
+  @Test
+  void testBadRequestsGetAnError(@TempDir File tempDir) throws IOException {
+    assertTrue(request("--bogus", tempDir.getPath()).startsWith("Error: Invalid flag: --bogus"));
+    assertTrue(request("-w", tempDir.getPath()).startsWith("Error: "));
+    assertTrue(request(new File(tempDir, "missing").getPath()).startsWith("Error: "));
+  }
+
+  @Test
+  void testRequestsWithoutTheTokenAreRefused(@TempDir File tempDir) throws IOException {
+    new File(tempDir, "secret.txt").createNewFile();
+
+    for (String token : new String[]{"", "0123456789abcdef", "-nc"}) {
+      try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+        Writer request = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        request.write(token + "\n-nc\n" + tempDir.getAbsolutePath() + "\n\n");
+        request.flush();
+        String answer = new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+
+        assertTrue(answer.startsWith("Error: Not authorized"), answer);
+        assertFalse(answer.contains("secret.txt"), answer);
+      }
+    }
+  }
+
+  @Test
+  void testTokenFileIsPrivateAndRemovedOnClose() throws IOException {
+    File tokenFile = TruffulaDaemon.tokenFile(new File(tokenDirectory, "tokens"), daemon.getPort());
+    assertTrue(tokenFile.isFile());
+    assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+
+    assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(tokenFile.toPath()));
+    assertEquals(PosixFilePermissions.fromString("rwx------"),
+        Files.getPosixFilePermissions(tokenFile.getParentFile().toPath()));
+
+    daemon.close();
+    assertFalse(tokenFile.exists());
+  }
+}
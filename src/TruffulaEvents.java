@@ -0,0 +1,122 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for the hot paths of a run: one per directory listing,
+ * one per sort and one per block of output the ColorPrinter writes. A recording of
+ * a slow run then shows which subtrees, sorts or writes took the time.
+ * 
+ * The events are disabled by default, so a recording with the default settings
+ * leaves them out. Enable them by name, for example:
+ * 
+ * java -XX:StartFlightRecording:filename=run.jfr,+truffula.DirectoryListing#enabled=true ...
+ * 
+ * or with a .jfc settings file that enables the "Truffula" category. When an event
+ * is not enabled, begin() and commit() do nothing and the JIT removes the event
+ * object, so the instrumented code costs essentially nothing. Callers fill in the
+ * fields only after shouldCommit() returns true.
+ * 
+ * Events are created through the begin methods, which return null until something
+ * has initialized the Flight Recorder, such as -XX:StartFlightRecording, jcmd
+ * JFR.start or a Recording. Until then no recording can want the events, and
+ * loading the first event class would pull in the recorder's metadata system, some
+ * seven hundred classes, at startup.
+ */
+final class TruffulaEvents {
+
+  private TruffulaEvents() {
+  }
+
+  /**
+   * Creates and begins a Listing event.
+   *
+   * @return the event, or null if the Flight Recorder is not initialized
+   */
+  static Listing beginListing() {
+    if (!FlightRecorder.isInitialized()) return null;
+    Listing event = new Listing();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Creates and begins a Sort event.
+   *
+   * @return the event, or null if the Flight Recorder is not initialized
+   */
+  static Sort beginSort() {
+    if (!FlightRecorder.isInitialized()) return null;
+    Sort event = new Sort();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Creates and begins a Flush event.
+   *
+   * @return the event, or null if the Flight Recorder is not initialized
+   */
+  static Flush beginFlush() {
+    if (!FlightRecorder.isInitialized()) return null;
+    Flush event = new Flush();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * One directory read from the tree source or the listing cache.
+   */
+  @Name("truffula.DirectoryListing")
+  @Label("Directory Listing")
+  @Category("Truffula")
+  @Description("A directory listed, filtered, snapshotted and sorted")
+  @Enabled(false)
+  @StackTrace(false)
+  static class Listing extends Event {
+    @Label("Path")
+    String path;
+
+    @Label("Entries")
+    @Description("The number of entries kept, or -1 if the directory could not be listed")
+    int entries;
+  }
+
+  /**
+   * One call to AlphabeticalFileSorter.
+   */
+  @Name("truffula.Sort")
+  @Label("Sort")
+  @Category("Truffula")
+  @Description("Entries of one directory put in order")
+  @Enabled(false)
+  @StackTrace(false)
+  static class Sort extends Event {
+    @Label("Size")
+    @Description("The number of entries sorted or selected from")
+    int size;
+
+    @Label("Kept")
+    @Description("The number of entries returned in order")
+    int kept;
+  }
+
+  /**
+   * One block of buffered output written to the ColorPrinter's stream.
+   */
+  @Name("truffula.OutputFlush")
+  @Label("Output Flush")
+  @Category("Truffula")
+  @Description("A block of output handed to the PrintStream")
+  @Enabled(false)
+  @StackTrace(false)
+  static class Flush extends Event {
+    @Label("Characters")
+    int chars;
+  }
+}
@@ -0,0 +1,90 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TruffulaEventsTest {
+
+  private static List<RecordedEvent> record(File tree, File recordingFile, boolean enable) throws IOException {
+    try (Recording recording = new Recording()) {
+      if (enable) {
+        recording.enable("truffula.DirectoryListing");
+        recording.enable("truffula.Sort");
+        recording.enable("truffula.OutputFlush");
+      }
+      recording.start();
+      TruffulaOptions options = new TruffulaOptions(new String[]{"-nc", tree.getPath()});
+      new TruffulaPrinter(options, new PrintStream(new ByteArrayOutputStream())).printTree();
+      recording.stop();
+      recording.dump(recordingFile.toPath());
+    }
+
+    List<RecordedEvent> events = new ArrayList<>();
+    for (RecordedEvent event : RecordingFile.readAllEvents(recordingFile.toPath())) {
+      if (event.getEventType().getName().startsWith("truffula.")) {
+        events.add(event);
+      }
+    }
+    return events;
+  }
+
+  private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+    List<RecordedEvent> result = new ArrayList<>();
+    for (RecordedEvent event : events) {
+      if (event.getEventType().getName().equals(name)) {
+        result.add(event);
+      }
+    }
+    return result;
+  }
+
+  @Test
+  void testEventsAreRecordedWhenEnabled(@TempDir File tempDir) throws IOException {
+    File tree = new File(tempDir, "tree");
+    File sub = new File(tree, "sub");
+    assertTrue(sub.mkdirs());
+    new File(tree, "a.txt").createNewFile();
+    new File(sub, "b.txt").createNewFile();
+    new File(sub, "c.txt").createNewFile();
+
+    List<RecordedEvent> events = record(tree, new File(tempDir, "run.jfr"), true);
+
+    List<RecordedEvent> listings = named(events, "truffula.DirectoryListing");
+    assertEquals(2, listings.size());
+    for (RecordedEvent listing : listings) {
+      String path = listing.getString("path");
+      assertEquals(2, listing.getInt("entries"));
+      assertTrue(path.equals(tree.getPath()) || path.equals(sub.getPath()), path);
+    }
+
+    List<RecordedEvent> sorts = named(events, "truffula.Sort");
+    assertEquals(2, sorts.size());
+    assertEquals(2, sorts.get(0).getInt("size"));
+
+    List<RecordedEvent> flushes = named(events, "truffula.OutputFlush");
+    assertTrue(flushes.size() >= 1);
+    assertTrue(flushes.get(0).getInt("chars") > 0);
+  }
+
+  @Test
+  void testEventsAreOffByDefault(@TempDir File tempDir) throws IOException {
+    File tree = new File(tempDir, "tree");
+    assertTrue(tree.mkdir());
+    new File(tree, "a.txt").createNewFile();
+    new File(tree, "b.txt").createNewFile();
+
+    assertEquals(0, record(tree, new File(tempDir, "run.jfr"), false).size());
+  }
+}
@@ -1,5 +1,9 @@
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Represents configuration options for controlling how a directory tree is displayed.
@@ -14,14 +18,73 @@ import java.io.FileNotFoundException;
  * 
  * Usage Example:
  * 
- * Arguments Format: [-h] [-nc] path
+ * Arguments Format: [-h] [-nc] [-s] [-D] [-p] [-w] [--du] [-L depth] [--max-entries count]
+ *                   [--include glob]... [--exclude glob]... [--gitignore]
+ *                   [-j threads] [--prefetch dirs] [--cache file] [--stats]
+ *                   [--format text|json|ndjson] [-o file [--gzip]]
+ *                   [--follow | --no-follow] [-i] [--time-budget millis]
+ *                   [--level-order | --by-level] path...
  * 
  * Flags:
  * - -h   : Show hidden files (defaults to false).
  * - -nc  : Do not use color (color is enabled by default).
+ * - -s   : Show the size of each entry in bytes.
+ * - -D   : Show the last-modified time of each entry.
+ * - -p   : Show whether the current user can read, write and execute each entry.
+ * - -w   : Watch mode: keep printing the tree as it changes until interrupted.
+ * - --du : Show each directory with the total size of the files below it, added up
+ *          on -j threads, or on every processor if -j is not given. A file with
+ *          several hard links is counted once per link. Watch mode shows plain
+ *          sizes.
+ * - -L N : Descend at most N levels below the root (no limit by default).
+ * - --max-entries K : Print at most the first K entries of each directory, followed
+ *                     by "... N more" (no limit by default).
+ * - --include GLOB : Print only files matching GLOB; may be repeated. Directories
+ *                    are always printed.
+ * - --exclude GLOB : Leave out and do not descend into entries matching GLOB; may be
+ *                    repeated. A GLOB containing "/", for either flag, is matched
+ *                    against the path below the root rather than the name.
+ * - --gitignore : Leave out entries ignored by .gitignore files in the tree.
+ * - -j N : List and sort directories on N worker threads (defaults to 1, serial).
+ *          --du, --level-order and several roots default to one per processor.
+ * - --prefetch N : List up to N directories ahead of the printer on virtual threads,
+ *                  for high-latency filesystems (off by default).
+ * - --cache FILE : Reuse directory listings saved in FILE by earlier runs for
+ *                  directories that have not changed since, and save new ones.
+ * - --stats : After the tree, print counters and per-phase times to stderr.
+ * - --format F : Print the tree as indented text (the default), as one JSON array
+ *                of entry records (json), or as one record per line (ndjson).
+ *                Records are written as the tree is walked; color is off.
+ * - -o FILE : Write the output to FILE in UTF-8 instead of to standard output,
+ *             without color.
+ * - --gzip : Compress the output file with gzip, on a separate thread. Needs -o.
+ *          Not allowed with -w, which ends before the gzip file could be finished.
+ * - --follow : Descend into directories reached through symbolic links (the
+ *              default). A link back to a directory on its own path from the
+ *              root, which would loop, is printed with "[recursive, not followed]".
+ * - --no-follow : Do not descend into directories reached through symbolic links;
+ *                 they are printed with "[symlink, not followed]".
+ * - -i   : Browse the tree interactively, listing each directory only when it is
+ *          expanded.
+ * - --time-budget MS : Read the tree breadth-first for at most MS milliseconds on
+ *                      -j threads, then print what was read; directories not read
+ *                      in time are printed with "[not scanned]".
+ * - --level-order : Read the tree a level at a time, listing each level's directories
+ *                   as one batch on -j threads, or on every processor if -j is not
+ *                   given. The output is the same; suits storage that is slow per
+ *                   request but handles many requests at once.
+ * - --by-level : Like --level-order, but print the tree level by level as it is
+ *                read, each entry as its path below the root.
  * 
  * Path:
  * - The absolute or relative path to the directory whose contents will be printed.
+ * - Or the path to a zip, jar, war or ear archive, whose contents are printed
+ *   straight from its central directory without extracting it.
+ * - Several paths may follow the flags. Their trees are read at the same time on
+ *   one pool of -j threads, or of one per processor, and printed one after another
+ *   in argument order, each under a "path:" header. With --time-budget all of them
+ *   are read within one budget. With --prefetch or --by-level the trees are read one
+ *   after another instead. Not with -w or -i.
  * 
  * Behavior:
  * - If color is disabled, all text will be printed in white.
@@ -43,15 +106,50 @@ import java.io.FileNotFoundException;
  * - Throws IllegalArgumentException if:
  *     - Unknown flags are provided.
  *     - The path argument is missing.
+ *     - The path points to an archive that cannot be read.
  * 
  * - Throws FileNotFoundException if:
  *     - The specified directory does not exist.
- *     - The path points to a file instead of a directory.
+ *     - The path points to a file that is neither a directory nor an archive.
  */
-public class TruffulaOptions  {
+public final class TruffulaOptions {
+
+  /**
+   * The ways the tree can be printed.
+   */
+  public enum Format {
+    /** Indented names, optionally in color. */
+    TEXT,
+    /** One JSON array holding a record per entry. */
+    JSON,
+    /** One JSON record per line. */
+    NDJSON
+  }
+
   private final File root;
   private final boolean showHidden;
   private final boolean useColor;
+  private final int parallelism;
+  private final boolean parallelismGiven;
+  private final int prefetchLimit;
+  private final int attributes;
+  private final File cacheFile;
+  private final boolean watch;
+  private final boolean interactive;
+  private final boolean diskUsage;
+  private final int maxDepth;
+  private final int maxEntries;
+  private final long timeBudget;
+  private final boolean levelOrder;
+  private final boolean byLevel;
+  private final EntryFilter filter;
+  private final TreeSource source;
+  private final TreeStats stats;
+  private final Format format;
+  private final File outputFile;
+  private final boolean gzip;
+  private final SymlinkGuard links;
+  private final List<TruffulaOptions> rootOptions;
 
   /**
    * Returns the root directory from which the directory tree will be printed.
@@ -71,9 +169,216 @@ public class TruffulaOptions  {
     return showHidden;
   }
 
+  /**
+   * Returns the number of worker threads used to list and sort directories.
+   * 
+   * A value of 1 means the tree is walked serially on the calling thread.
+   *
+   * @return the number of worker threads, always at least 1
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Indicates whether the thread count was given with -j, so that modes which
+   * default to one thread per processor can tell "-j 1" from no -j at all.
+   *
+   * @return true if -j was given
+   */
+  public boolean isParallelismGiven() {
+    return parallelismGiven;
+  }
+
+  /**
+   * Returns the maximum number of directories that may be listed ahead of the printer.
+   * 
+   * A value of 0 means directories are not prefetched.
+   *
+   * @return the prefetch limit, or 0 if prefetching is off
+   */
+  public int getPrefetchLimit() {
+    return prefetchLimit;
+  }
+
+  /**
+   * Returns which metadata columns are printed next to each entry, as a combination
+   * of FileEntry.SIZE, FileEntry.MODIFIED and FileEntry.PERMISSIONS.
+   *
+   * @return the attribute flags, or 0 if no columns are printed
+   */
+  public int getAttributes() {
+    return attributes;
+  }
+
+  /**
+   * Returns the file in which directory listings are cached between runs.
+   *
+   * @return the cache file, or null if listings are not cached
+   */
+  public File getCacheFile() {
+    return cacheFile;
+  }
+
+  /**
+   * Indicates whether the tree should be printed again whenever it changes.
+   *
+   * @return true if watch mode is on
+   */
+  public boolean isWatch() {
+    return watch;
+  }
+
+  /**
+   * Indicates whether the tree is browsed interactively instead of printed.
+   *
+   * @return true if -i was given
+   */
+  public boolean isInteractive() {
+    return interactive;
+  }
+
+  /**
+   * Indicates whether directories are shown with the total size of their contents.
+   * Implies the size column.
+   *
+   * @return true if disk-usage mode is on
+   */
+  public boolean isDiskUsage() {
+    return diskUsage;
+  }
+
+  /**
+   * Returns the number of levels below the root that are printed. With a limit of 1
+   * only the root's own entries are printed.
+   *
+   * @return the depth limit, or 0 for no limit
+   */
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  /**
+   * Returns the number of entries printed per directory before the rest are
+   * summarized as "... N more".
+   *
+   * @return the entry cap, or 0 for no cap
+   */
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /**
+   * Returns the time the tree may take to read before what was read is printed.
+   *
+   * @return the budget in milliseconds, or 0 for no budget
+   */
+  public long getTimeBudget() {
+    return timeBudget;
+  }
+
+  /**
+   * Indicates whether the tree is read a level at a time, each level's directories
+   * listed as one parallel batch.
+   *
+   * @return true if --level-order or --by-level was given
+   */
+  public boolean isLevelOrder() {
+    return levelOrder;
+  }
+
+  /**
+   * Indicates whether the tree is printed level by level instead of nested.
+   *
+   * @return true if --by-level was given
+   */
+  public boolean isByLevel() {
+    return byLevel;
+  }
+
+  /**
+   * Returns the compiled include, exclude and .gitignore patterns that decide which
+   * entries are printed.
+   *
+   * @return the filter, or null if every entry is printed
+   */
+  public EntryFilter getFilter() {
+    return filter;
+  }
+
+  /**
+   * Returns the source the tree's entries and their attributes are read from.
+   *
+   * @return the tree source; a FileTreeSource unless constructed with another
+   */
+  public TreeSource getSource() {
+    return source;
+  }
+
+  /**
+   * Returns the counters and timings collected for --stats. When stats are on, the
+   * tree source returned by getSource() counts every call made to it.
+   *
+   * @return the stats, or null if --stats is off
+   */
+  public TreeStats getStats() {
+    return stats;
+  }
+
+  /**
+   * Returns how the tree is printed.
+   *
+   * @return the output format, TEXT unless --format was given
+   */
+  public Format getFormat() {
+    return format;
+  }
+
+  /**
+   * Returns the file the output is written to instead of standard output.
+   *
+   * @return the output file, or null if the output goes to standard output
+   */
+  public File getOutputFile() {
+    return outputFile;
+  }
+
+  /**
+   * Indicates whether the output file is gzip-compressed.
+   *
+   * @return true if --gzip was given
+   */
+  public boolean isGzip() {
+    return gzip;
+  }
+
+  /**
+   * Returns the guard that decides which directories reached through symbolic links
+   * are descended into. One guard serves one walk of the tree.
+   *
+   * @return the symlink guard
+   */
+  public SymlinkGuard getLinks() {
+    return links;
+  }
+
+  /**
+   * Returns the options for each path given, in argument order; the first are these
+   * options themselves. The options for the other paths differ from these only in
+   * their root, the source it is read from, and the symlink guard and filter that
+   * belong to it.
+   *
+   * @return the options for every root, one or more
+   */
+  public List<TruffulaOptions> getRootOptions() {
+    return rootOptions;
+  }
+
   @Override
   public String toString() {
-    return "TruffulaOptions [root=" + root + ", showHidden=" + showHidden + ", useColor=" + useColor + "]";
+    return "TruffulaOptions [root=" + root + ", showHidden=" + showHidden + ", useColor=" + useColor
+        + ", parallelism=" + parallelism + ", prefetchLimit=" + prefetchLimit + ", attributes=" + attributes + ", cacheFile=" + cacheFile + ", watch=" + watch + ", interactive=" + interactive + ", diskUsage=" + diskUsage + ", maxDepth=" + maxDepth
+        + ", maxEntries=" + maxEntries + ", timeBudget=" + timeBudget + ", levelOrder=" + levelOrder + ", byLevel=" + byLevel + ", filter=" + filter + ", format=" + format + ", outputFile=" + outputFile + ", gzip=" + gzip + ", follow=" + links.isFollow() + ", roots=" + rootOptions.size() + "]";
   }
 
   /**
@@ -93,12 +398,45 @@ public class TruffulaOptions  {
    * Supported Flags:
    * - -h   : Show hidden files (defaults to false).
    * - -nc  : Do not use color (uses color by default).
+   * - -s   : Show the size of each entry.
+   * - -D   : Show the last-modified time of each entry.
+   * - -p   : Show the access of the current user to each entry.
+   * - -w   : Keep printing the tree as it changes.
+   * - --du : Show the total size of each directory's contents.
+   * - -L N : Descend at most N levels below the root.
+   * - --max-entries K : Print at most K entries per directory.
+   * - --include GLOB : Print only files matching GLOB (repeatable).
+   * - --exclude GLOB : Skip entries matching GLOB (repeatable).
+   * - --gitignore : Skip entries ignored by .gitignore files.
+   * - -j N : Use N worker threads to list and sort directories (defaults to 1).
+   * - --prefetch N : List up to N directories ahead of the printer (off by default).
+   * - --cache FILE : Cache directory listings in FILE between runs (off by default).
+   * - --stats : Report counters and per-phase times to stderr (off by default).
+   * - --format F : Print as text, json or ndjson (text by default).
+   * - -o FILE : Write the output to FILE, without color.
+   * - --gzip : Compress the output file. Needs -o; not allowed with -w.
+   * - --follow : Follow symbolic links to directories, cutting loops (the default).
+   * - --no-follow : Do not follow symbolic links to directories.
+   * - -i   : Browse the tree interactively.
+   * - --time-budget MS : Print what can be read in MS milliseconds (no limit by default).
+   * - --level-order : List each level of the tree as one parallel batch.
+   * - --by-level : Print the tree level by level.
    * 
-   * The last argument must be the path to the directory.
+   * The flags are followed by one or more paths to directories or archives.
    * 
-   * @param args command-line arguments in the format [-h] [-nc] path
-   * @throws IllegalArgumentException if unknown arguments are provided or the path is missing
-   * @throws FileNotFoundException if the directory cannot be found or if the path points to a file
+   * @param args command-line arguments in the format
+   *             [-h] [-nc] [-s] [-D] [-p] [-w] [--du] [-L depth] [--max-entries count]
+   *             [--include glob]... [--exclude glob]... [--gitignore]
+   *             [-j threads] [--prefetch dirs] [--cache file] [--stats]
+   *             [--format text|json|ndjson] [-o file [--gzip]]
+   *             [--follow | --no-follow] [-i] [--time-budget millis]
+   *             [--level-order | --by-level] path...
+   * @throws IllegalArgumentException if unknown arguments are provided, the path is missing,
+   *                                  a flag follows a path, a pattern is malformed, an archive
+   *                                  cannot be read, --gzip is given without -o or with -w, or -w
+   *                                  or -i is given with several paths
+   * @throws FileNotFoundException if a directory cannot be found or if a path points to a
+   *                               file that is not an archive
    */
   public TruffulaOptions(String[] args) throws IllegalArgumentException, FileNotFoundException {
     // TODO: Replace the below lines with your implementation
@@ -112,6 +450,47 @@ public class TruffulaOptions  {
 
         boolean useColorFlag = true;
 
+        int parallelismValue = 1;
+        boolean parallelismFlag = false;
+
+        int prefetchValue = 0;
+
+        int attributeFlags = 0;
+
+        File cache = null;
+
+        boolean watchFlag = false;
+
+        boolean interactiveFlag = false;
+
+        boolean diskUsageFlag = false;
+
+        int depthLimit = 0;
+
+        int entryLimit = 0;
+
+        long budget = 0;
+
+        boolean levelOrderFlag = false;
+
+        boolean byLevelFlag = false;
+
+        List<String> includePatterns = new ArrayList<>();
+
+        List<String> excludePatterns = new ArrayList<>();
+
+        boolean gitignoreFlag = false;
+
+        boolean statsFlag = false;
+
+        Format outputFormat = Format.TEXT;
+
+        File output = null;
+
+        boolean gzipFlag = false;
+
+        boolean followFlag = true;
+
         String path = args[args.length - 1];
 
       
@@ -119,34 +498,283 @@ public class TruffulaOptions  {
             throw new IllegalArgumentException("Last argument must be a valid, not a flag.");
         }
 
+        int firstPath = args.length - 1;
         for (int i = 0; i < args.length - 1; i++) {
             String arg = args[i];
-            if (arg.equals("-h")) {
+            if (!arg.startsWith("-")) {
+                firstPath = i;
+                break;
+            } else if (arg.equals("-h")) {
                 showHiddenFlag = true;
             } else if (arg.equals("-nc")) {
                 useColorFlag = false;
+            } else if (arg.equals("-s")) {
+                attributeFlags |= FileEntry.SIZE;
+            } else if (arg.equals("-D")) {
+                attributeFlags |= FileEntry.MODIFIED;
+            } else if (arg.equals("-p")) {
+                attributeFlags |= FileEntry.PERMISSIONS;
+            } else if (arg.equals("-w")) {
+                watchFlag = true;
+            } else if (arg.equals("-i")) {
+                interactiveFlag = true;
+            } else if (arg.equals("--du")) {
+                diskUsageFlag = true;
+                attributeFlags |= FileEntry.SIZE;
+            } else if (arg.equals("-L")) {
+                depthLimit = parsePositiveInt(args, ++i, arg);
+            } else if (arg.equals("--max-entries")) {
+                entryLimit = parsePositiveInt(args, ++i, arg);
+            } else if (arg.equals("--time-budget")) {
+                budget = parsePositiveInt(args, ++i, arg);
+            } else if (arg.equals("--level-order")) {
+                levelOrderFlag = true;
+            } else if (arg.equals("--by-level")) {
+                byLevelFlag = true;
+            } else if (arg.equals("--include")) {
+                includePatterns.add(parseValue(args, ++i, arg));
+            } else if (arg.equals("--exclude")) {
+                excludePatterns.add(parseValue(args, ++i, arg));
+            } else if (arg.equals("--gitignore")) {
+                gitignoreFlag = true;
+            } else if (arg.equals("--stats")) {
+                statsFlag = true;
+            } else if (arg.equals("-o")) {
+                output = new File(parseValue(args, ++i, arg));
+            } else if (arg.equals("--gzip")) {
+                gzipFlag = true;
+            } else if (arg.equals("--follow")) {
+                followFlag = true;
+            } else if (arg.equals("--no-follow")) {
+                followFlag = false;
+            } else if (arg.equals("--format")) {
+                outputFormat = parseFormat(args, ++i, arg);
+            } else if (arg.equals("-j")) {
+                parallelismValue = parsePositiveInt(args, ++i, arg);
+                parallelismFlag = true;
+            } else if (arg.equals("--prefetch")) {
+                prefetchValue = parsePositiveInt(args, ++i, arg);
+            } else if (arg.equals("--cache")) {
+                cache = new File(parseValue(args, ++i, arg));
             } else {
                 throw new IllegalArgumentException("Invalid flag: " + arg);
             }
         }
 
-      
 
-        File directory = new File(path);
-        if (!directory.exists()) {
+        List<String> paths = new ArrayList<>();
+        for (int i = firstPath; i < args.length; i++) {
+            if (args[i].startsWith("-")) {
+                throw new IllegalArgumentException("Flags must come before the paths: " + args[i]);
+            }
+            paths.add(args[i]);
+        }
+
+        if (gzipFlag && output == null) {
+            throw new IllegalArgumentException("--gzip requires -o");
+        }
 
-            throw new FileNotFoundException("Directory does not exist: " + path);
+        if (gzipFlag && watchFlag) {
+            throw new IllegalArgumentException("--gzip cannot be used with -w");
         }
-        if (!directory.isDirectory()) {
 
-            throw new FileNotFoundException("Path is not a directory: " + path);
+        if (paths.size() > 1 && (watchFlag || interactiveFlag)) {
+            throw new IllegalArgumentException("-w and -i take a single path");
         }
 
+        File directory = new File(paths.get(0));
+        TreeSource treeSource = openSource(directory, paths.get(0), paths.size() > 1);
+
         this.root = directory;
 
         this.showHidden = showHiddenFlag;
         
-        this.useColor = useColorFlag;
+        this.format = outputFormat;
+
+        this.outputFile = output;
+
+        this.gzip = gzipFlag;
+
+        this.useColor = useColorFlag && outputFormat == Format.TEXT && output == null;
+
+        this.parallelism = parallelismValue;
+        this.parallelismGiven = parallelismFlag;
+
+        this.prefetchLimit = prefetchValue;
+
+        this.attributes = attributeFlags;
+
+        this.cacheFile = cache;
+
+        this.watch = watchFlag;
+
+        this.interactive = interactiveFlag;
+
+        this.diskUsage = diskUsageFlag;
+
+        this.maxDepth = depthLimit;
+
+        this.maxEntries = entryLimit;
+
+        this.timeBudget = budget;
+
+        this.levelOrder = levelOrderFlag || byLevelFlag;
+
+        this.byLevel = byLevelFlag;
+
+        this.stats = statsFlag ? new TreeStats() : null;
+
+        this.source = statsFlag ? stats.count(treeSource) : treeSource;
+
+        this.links = new SymlinkGuard(source, directory, followFlag);
+
+        if (includePatterns.isEmpty() && excludePatterns.isEmpty() && !gitignoreFlag) {
+            this.filter = null;
+        } else {
+            this.filter = new EntryFilter(directory, includePatterns, excludePatterns, gitignoreFlag);
+        }
+
+        List<TruffulaOptions> roots = new ArrayList<>();
+        roots.add(this);
+        for (int i = 1; i < paths.size(); i++) {
+            File other = new File(paths.get(i));
+            roots.add(new TruffulaOptions(this, other, openSource(other, paths.get(i), true),
+                includePatterns, excludePatterns, gitignoreFlag, followFlag));
+        }
+        this.rootOptions = Collections.unmodifiableList(roots);
+  }
+
+  /**
+   * Constructs the options for another path given on the same command line. They
+   * share every setting and the stats with the first path's options.
+   *
+   * @param first           the options for the first path
+   * @param root            the other path
+   * @param treeSource      the source the other path's tree is read from
+   * @param includePatterns the --include patterns
+   * @param excludePatterns the --exclude patterns
+   * @param gitignore       whether .gitignore files are honored
+   * @param follow          whether symbolic links to directories are followed
+   */
+  private TruffulaOptions(TruffulaOptions first, File root, TreeSource treeSource, List<String> includePatterns,
+      List<String> excludePatterns, boolean gitignore, boolean follow) {
+    this.root = root;
+    this.showHidden = first.showHidden;
+    this.useColor = first.useColor;
+    this.parallelism = first.parallelism;
+    this.parallelismGiven = first.parallelismGiven;
+    this.prefetchLimit = first.prefetchLimit;
+    this.attributes = first.attributes;
+    this.cacheFile = first.cacheFile;
+    this.watch = first.watch;
+    this.interactive = first.interactive;
+    this.diskUsage = first.diskUsage;
+    this.maxDepth = first.maxDepth;
+    this.maxEntries = first.maxEntries;
+    this.timeBudget = first.timeBudget;
+    this.levelOrder = first.levelOrder;
+    this.byLevel = first.byLevel;
+    this.format = first.format;
+    this.outputFile = first.outputFile;
+    this.gzip = first.gzip;
+    this.stats = first.stats;
+    this.source = stats != null ? stats.count(treeSource) : treeSource;
+    this.links = new SymlinkGuard(source, root, follow);
+    this.filter = first.filter == null ? null : new EntryFilter(root, includePatterns, excludePatterns, gitignore);
+    this.rootOptions = List.of(this);
+  }
+
+  /**
+   * Checks that a path names a directory or an archive, and returns the source its
+   * tree is read from.
+   *
+   * One of several paths may be missing: the printer reports it under its header
+   * and goes on with the others, so the file system is returned as its source.
+   *
+   * @param directory the path as a File
+   * @param path      the path as given, used in error messages
+   * @param several   whether other paths are given as well
+   * @return the source for the tree
+   * @throws IllegalArgumentException if the path is an archive that cannot be read
+   * @throws FileNotFoundException if the path does not exist and is the only one, or
+   *                               is a file that is not an archive
+   */
+  private static TreeSource openSource(File directory, String path, boolean several) throws FileNotFoundException {
+    if (!directory.exists()) {
+      if (several) {
+        return FileTreeSource.INSTANCE;
+      }
+      throw new FileNotFoundException("Directory does not exist: " + path);
+    }
+    if (directory.isDirectory()) {
+      return FileTreeSource.INSTANCE;
+    }
+    if (!ArchiveTreeSource.isArchive(directory)) {
+      throw new FileNotFoundException("Path is not a directory: " + path);
+    }
+    try {
+      return new ArchiveTreeSource(directory);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Cannot read archive: " + path, e);
+    }
+  }
+
+  /**
+   * Reads the value following a flag.
+   *
+   * @param args  the command-line arguments
+   * @param index the index of the value to read
+   * @param flag  the flag the value belongs to, used in error messages
+   * @return the value
+   * @throws IllegalArgumentException if the value is missing
+   */
+  private static String parseValue(String[] args, int index, String flag) {
+    if (index >= args.length - 1) {
+      throw new IllegalArgumentException("Missing value for flag: " + flag);
+    }
+    return args[index];
+  }
+
+  /**
+   * Reads the value following a flag as an output format name.
+   *
+   * @param args  the command-line arguments
+   * @param index the index of the value to read
+   * @param flag  the flag the value belongs to, used in error messages
+   * @return the format
+   * @throws IllegalArgumentException if the value is missing or names no format
+   */
+  private static Format parseFormat(String[] args, int index, String flag) {
+    String text = parseValue(args, index, flag);
+    for (Format format : Format.values()) {
+      if (format.name().equalsIgnoreCase(text)) {
+        return format;
+      }
+    }
+    throw new IllegalArgumentException("Invalid value for flag " + flag + ": " + text);
+  }
+
+  /**
+   * Reads the value following a flag as a positive integer.
+   *
+   * @param args  the command-line arguments
+   * @param index the index of the value to read
+   * @param flag  the flag the value belongs to, used in error messages
+   * @return the parsed value
+   * @throws IllegalArgumentException if the value is missing, not a number, or less than 1
+   */
+  private static int parsePositiveInt(String[] args, int index, String flag) {
+    String text = parseValue(args, index, flag);
+    int value;
+    try {
+      value = Integer.parseInt(text);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid value for flag " + flag + ": " + text);
+    }
+    if (value < 1) {
+      throw new IllegalArgumentException("Value for flag " + flag + " must be at least 1: " + value);
+    }
+    return value;
   }
 
   /**
@@ -157,8 +785,42 @@ public class TruffulaOptions  {
    * @param useColor   whether color should be used in the output
    */
   public TruffulaOptions(File root, boolean showHidden, boolean useColor) {
+    this(FileTreeSource.INSTANCE, root, showHidden, useColor);
+  }
+
+  /**
+   * Constructs a TruffulaOptions object with explicit values, for a tree read from
+   * the given source.
+   * 
+   * @param source     the source the tree's entries are read from
+   * @param root       the root directory for the directory tree
+   * @param showHidden whether hidden files should be displayed
+   * @param useColor   whether color should be used in the output
+   */
+  public TruffulaOptions(TreeSource source, File root, boolean showHidden, boolean useColor) {
+    this.source = source;
+    this.stats = null;
     this.root = root;
     this.showHidden = showHidden;
     this.useColor = useColor;
+    this.parallelism = 1;
+    this.parallelismGiven = false;
+    this.prefetchLimit = 0;
+    this.attributes = 0;
+    this.cacheFile = null;
+    this.watch = false;
+    this.interactive = false;
+    this.diskUsage = false;
+    this.maxDepth = 0;
+    this.maxEntries = 0;
+    this.timeBudget = 0;
+    this.levelOrder = false;
+    this.byLevel = false;
+    this.filter = null;
+    this.format = Format.TEXT;
+    this.outputFile = null;
+    this.gzip = false;
+    this.links = new SymlinkGuard(source, root, true);
+    this.rootOptions = List.of(this);
   }
 }
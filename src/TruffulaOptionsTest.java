@@ -1,9 +1,13 @@
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -105,4 +109,160 @@ public class TruffulaOptionsTest {
     assertFalse(options.isShowHidden());
     assertFalse(options.isUseColor());
   }
-}
\ No newline at end of file
+
+  @Test
+  void testParallelismFlag(@TempDir File tempDir) throws FileNotFoundException {
+    String[] args = {"-j", "4", "-nc", tempDir.getAbsolutePath()};
+
+    TruffulaOptions options = new TruffulaOptions(args);
+
+    assertEquals(4, options.getParallelism());
+    assertTrue(options.isParallelismGiven());
+    assertFalse(options.isUseColor());
+  }
+
+  @Test
+  void testExplicitSingleThreadIsRecorded(@TempDir File tempDir) throws FileNotFoundException {
+    TruffulaOptions options = new TruffulaOptions(new String[]{"-j", "1", "--du", tempDir.getAbsolutePath()});
+
+    assertEquals(1, options.getParallelism());
+    assertTrue(options.isParallelismGiven());
+  }
+
+  @Test
+  void testParallelismDefaultsToOne(@TempDir File tempDir) throws FileNotFoundException {
+    TruffulaOptions options = new TruffulaOptions(new String[]{tempDir.getAbsolutePath()});
+
+    assertEquals(1, options.getParallelism());
+    assertEquals(1, new TruffulaOptions(tempDir, false, false).getParallelism());
+    assertFalse(options.isParallelismGiven());
+  }
+
+  @Test
+  void testParallelismFlagRejectsBadValues(@TempDir File tempDir) {
+    String path = tempDir.getAbsolutePath();
+
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[]{"-j", path}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[]{"-j", "zero", path}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[]{"-j", "0", path}));
+  }
+
+  @Test
+  void testPrefetchFlag(@TempDir File tempDir) throws FileNotFoundException {
+    String path = tempDir.getAbsolutePath();
+
+    assertEquals(0, new TruffulaOptions(new String[]{path}).getPrefetchLimit());
+    assertEquals(32, new TruffulaOptions(new String[]{"--prefetch", "32", "-h", path}).getPrefetchLimit());
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[]{"--prefetch", "-1", path}));
+  }
+
+  @Test
+  void testDepthAndEntryLimits(@TempDir File tempDir) throws FileNotFoundException {
+    String path = tempDir.getAbsolutePath();
+
+    TruffulaOptions options = new TruffulaOptions(new String[]{"-L", "2", "--max-entries", "50", path});
+
+    assertEquals(2, options.getMaxDepth());
+    assertEquals(50, options.getMaxEntries());
+    assertEquals(0, new TruffulaOptions(new String[]{path}).getMaxDepth());
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[]{"-L", "0", path}));
+  }
+
+  @Test
+  void testFilterFlags(@TempDir File tempDir) throws FileNotFoundException {
+    String path = tempDir.getAbsolutePath();
+
+    TruffulaOptions options = new TruffulaOptions(
+        new String[]{"--include", "*.java", "--exclude", "target", "--exclude", "*.class", "--gitignore", path});
+
+    assertNotNull(options.getFilter());
+    assertTrue(options.getFilter().isUseGitignore());
+    assertNull(new TruffulaOptions(new String[]{path}).getFilter());
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[]{"--exclude", "[a", path}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[]{"--include", path}));
+  }
+
+  @Test
+  void testArchivePath(@TempDir File tempDir) throws IOException {
+    File jar = ArchiveTreeSourceTest.createJar(tempDir);
+    File text = new File(tempDir, "notes.txt");
+    text.createNewFile();
+    File broken = new File(tempDir, "broken.zip");
+    broken.createNewFile();
+
+    TruffulaOptions options = new TruffulaOptions(new String[]{jar.getPath()});
+
+    assertTrue(options.getSource() instanceof ArchiveTreeSource);
+    assertTrue(new TruffulaOptions(new String[]{tempDir.getPath()}).getSource() instanceof FileTreeSource);
+    assertThrows(FileNotFoundException.class, () -> new TruffulaOptions(new String[]{text.getPath()}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[]{broken.getPath()}));
+  }
+
+  @Test
+  void testFormatFlag(@TempDir File tempDir) throws FileNotFoundException {
+    String path = tempDir.getAbsolutePath();
+
+    TruffulaOptions json = new TruffulaOptions(new String[]{"--format", "json", path});
+    TruffulaOptions ndjson = new TruffulaOptions(new String[]{"--format", "NDJSON", path});
+
+    assertEquals(TruffulaOptions.Format.JSON, json.getFormat());
+    assertFalse(json.isUseColor());
+    assertEquals(TruffulaOptions.Format.NDJSON, ndjson.getFormat());
+    assertEquals(TruffulaOptions.Format.TEXT, new TruffulaOptions(new String[]{path}).getFormat());
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[]{"--format", "xml", path}));
+  }
+
+  @Test
+  void testOutputFlags(@TempDir File tempDir) throws FileNotFoundException {
+    String path = tempDir.getAbsolutePath();
+
+    TruffulaOptions options = new TruffulaOptions(new String[]{"-o", "tree.txt.gz", "--gzip", path});
+
+    assertEquals(new File("tree.txt.gz"), options.getOutputFile());
+    assertTrue(options.isGzip());
+    assertFalse(options.isUseColor());
+    assertNull(new TruffulaOptions(new String[]{path}).getOutputFile());
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[]{"--gzip", path}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[]{"-w", "-o", "tree.txt.gz", "--gzip", path}));
+    assertFalse(new TruffulaOptions(new String[]{"-w", "-o", "tree.txt", path}).isGzip());
+  }
+
+  @Test
+  void testSeveralPaths(@TempDir File tempDir) throws FileNotFoundException {
+    File first = new File(tempDir, "first");
+    File second = new File(tempDir, "second");
+    first.mkdir();
+    second.mkdir();
+
+    TruffulaOptions options = new TruffulaOptions(new String[]{"-h", "-L", "2", first.getPath(), second.getPath()});
+
+    assertEquals(first, options.getRoot());
+    assertEquals(2, options.getRootOptions().size());
+    assertEquals(options, options.getRootOptions().get(0));
+    TruffulaOptions other = options.getRootOptions().get(1);
+    assertEquals(second, other.getRoot());
+    assertTrue(other.isShowHidden());
+    assertEquals(2, other.getMaxDepth());
+    assertEquals(1, new TruffulaOptions(new String[]{first.getPath()}).getRootOptions().size());
+  }
+
+  @Test
+  void testSeveralPathsMustComeAfterTheFlags(@TempDir File tempDir) throws FileNotFoundException {
+    String path = tempDir.getPath();
+
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[]{path, "-nc", path}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[]{"-w", path, path}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[]{"-i", path, path}));
+  }
+
+  @Test
+  void testMissingPathAmongSeveralIsLeftToThePrinter(@TempDir File tempDir) throws FileNotFoundException {
+    String path = tempDir.getPath();
+    String missing = new File(tempDir, "missing").getPath();
+
+    assertThrows(FileNotFoundException.class, () -> new TruffulaOptions(new String[]{missing}));
+    TruffulaOptions options = new TruffulaOptions(new String[]{path, missing});
+    assertEquals(2, options.getRootOptions().size());
+    assertFalse(options.getRootOptions().get(1).getSource().exists(new File(missing)));
+  }
+}
@@ -1,12 +1,40 @@
 import java.io.File;
 import java.io.PrintStream;
-import java.util.Arrays;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * TruffulaPrinter is responsible for printing a directory tree structure
  * with optional colored output. It supports sorting files and directories
  * in a case-insensitive manner and cycling through colors for visual clarity.
+ * 
+ * Printing always happens on the calling thread in depth-first order. When the
+ * options ask for more than one worker thread, directories are listed and sorted
+ * ahead of the printer on a fork-join pool. With a prefetch limit, listings are
+ * fetched ahead on virtual threads instead, which suits high-latency filesystems.
+ * The output is the same either way.
+ * 
+ * A depth limit stops the walk from listing directories below the cutoff, and an
+ * entry cap prints only the first entries of each directory followed by
+ * "... N more"; the capped entries are chosen without sorting the whole directory.
+ * With a time budget the tree is read breadth-first first, and directories not read
+ * before the budget ran out are printed with "[not scanned]".
+ * 
+ * In level-order mode a LevelOrderLister reads the tree a level at a time, each
+ * level's directories as one parallel batch, and the printer rebuilds the nested
+ * output from its listings. Printing by level skips the rebuilding and prints each
+ * level as soon as it is read, every entry as its path below the root.
+ * 
+ * Output goes through a buffered ColorPrinter, so lines at the same depth share one
+ * pair of color codes and the stream is written in large blocks. With a JSON output
+ * format each entry is written as a record by a JsonTreeWriter instead of as an
+ * indented line, in the same order and just as soon.
  */
 public class TruffulaPrinter {
   
@@ -25,13 +53,48 @@ public class TruffulaPrinter {
    */
   private ColorPrinter out;
 
+  /**
+   * Writes entry records when the output format is JSON or NDJSON, or null for text.
+   */
+  private JsonTreeWriter json;
+
+  /**
+   * An in-memory listing cache shared with other printers, or null.
+   */
+  private ListingCache sharedCache;
+
   /**
    * Default color sequence used when no custom colors are provided.
    */
-  private static final List<ConsoleColor> DEFAULT_COLOR_SEQUENCE = List.of(
+  static final List<ConsoleColor> DEFAULT_COLOR_SEQUENCE = List.of(
       ConsoleColor.WHITE, ConsoleColor.PURPLE, ConsoleColor.YELLOW
   );
 
+  /**
+   * Number of chars of output collected before each write to the output stream.
+   */
+  private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Time between checks for changes in watch mode.
+   */
+  private static final long WATCH_POLL_MILLIS = 500;
+
+  /**
+   * The longest a burst of changes may delay a new print in watch mode.
+   */
+  private static final long WATCH_BATCH_MILLIS = 2000;
+
+  /**
+   * Moves the cursor home and clears the terminal before each print in watch mode.
+   */
+  private static final String CLEAR_SCREEN = "\033[H\033[2J";
+
+  /**
+   * The indentation added for each level below the root.
+   */
+  private static final String INDENT = "   ";
+
   /**
    * Constructs a TruffulaPrinter with the given options, using the default
    * output stream and the default color sequence.
@@ -72,9 +135,44 @@ public class TruffulaPrinter {
    * @param colorSequence the sequence of colors to use when printing
    */
   public TruffulaPrinter(TruffulaOptions options, PrintStream outStream, List<ConsoleColor> colorSequence) {
+    this(options, new ColorPrinter(outStream, ConsoleColor.WHITE, OUTPUT_BUFFER_SIZE), colorSequence);
+  }
+
+  /**
+   * Constructs a TruffulaPrinter that writes to a file sink, using the default color
+   * sequence. The caller closes the sink once printing is done.
+   *
+   * @param options the configuration options for printing the tree
+   * @param sink the file sink to write to
+   */
+  public TruffulaPrinter(TruffulaOptions options, FileSink sink) {
+    this(options, new ColorPrinter(sink, OUTPUT_BUFFER_SIZE), DEFAULT_COLOR_SEQUENCE);
+  }
+
+  /**
+   * Constructs a TruffulaPrinter with the given options and output stream that reads
+   * directories through an in-memory cache shared with other printers, such as the
+   * other requests of a TruffulaDaemon. The --cache option is ignored.
+   *
+   * @param options the configuration options for printing the tree
+   * @param outStream the output stream to print to
+   * @param sharedCache the cache to read listings through
+   */
+  public TruffulaPrinter(TruffulaOptions options, PrintStream outStream, ListingCache sharedCache) {
+    this(options, outStream, DEFAULT_COLOR_SEQUENCE);
+    this.sharedCache = sharedCache;
+  }
+
+  /**
+   * Constructs a TruffulaPrinter printing through the given ColorPrinter.
+   */
+  private TruffulaPrinter(TruffulaOptions options, ColorPrinter out, List<ConsoleColor> colorSequence) {
     this.options = options;
     this.colorSequence = colorSequence;
-    out = new ColorPrinter(outStream);
+    this.out = out;
+    if (options.getFormat() != TruffulaOptions.Format.TEXT) {
+      json = new JsonTreeWriter(out, options.getFormat() == TruffulaOptions.Format.JSON);
+    }
   }
 
   /**
@@ -113,45 +211,480 @@ public class TruffulaPrinter {
     // - For Wave 6: Use AlphabeticalFileSorter
     // DO NOT USE SYSTEM.OUT.PRINTLN
     // USE out.println instead (will use your ColorPrinter)
+    List<TruffulaOptions> roots = options.getRootOptions();
+    if (roots.size() > 1) {
+      printRoots(roots);
+      return;
+    }
+    if (!options.getSource().exists(options.getRoot())) {
+      out.println("Error: Path does not exist.");
+      out.flush();
+      return;
+    }
+
+    if (options.isByLevel()) {
+      startDocument();
+      try {
+        printLevels(options);
+      } finally {
+        finishDocument();
+      }
+    } else {
+      printTree(createLister(options));
+    }
+  }
+
+  /**
+   * Prints the trees of several roots in argument order, each under a header line
+   * naming its root. In JSON the records of all the trees form one array. A root
+   * that does not exist is reported in its place, as an error line under its header
+   * or an error record, and the other roots are printed all the same.
+   *
+   * The trees are read at once: every root gets a LevelOrderLister, all of them
+   * listing on one shared pool of batchParallelism() threads and counting their
+   * held entries against one DEFAULT_MAX_HELD_ENTRIES limit. While the first tree is
+   * printed the others are read ahead, pausing while the listings held by all of
+   * them are over the limit. In disk-usage mode every tree is scanned at once on one
+   * shared fork-join pool, and with a time budget every tree is read at once until
+   * one shared deadline, so all of them together take no longer than the budget.
+   * Prefetching and --by-level read each tree as they do for a single root, one
+   * root after another.
+   *
+   * @param roots the options for each root, in argument order
+   */
+  private void printRoots(List<TruffulaOptions> roots) {
+    boolean diskUsage = !options.isByLevel() && options.isDiskUsage();
+    boolean timed = !options.isByLevel() && !diskUsage && options.getTimeBudget() > 0;
+    boolean levelOrder = !options.isByLevel() && !diskUsage && !timed && options.getPrefetchLimit() == 0;
+    boolean concurrent = levelOrder || diskUsage || timed;
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getTimeBudget());
+    ExecutorService pool = null;
+    ForkJoinPool scanPool = null;
+    ListingCache ownCache = null;
+    List<DirectoryLister> listers = new ArrayList<>();
+    try {
+      if (diskUsage) {
+        scanPool = new ForkJoinPool(batchParallelism());
+        for (TruffulaOptions rootOptions : roots) {
+          if (!rootOptions.getSource().exists(rootOptions.getRoot())) {
+            listers.add(null);
+            continue;
+          }
+          DiskUsageLister lister = new DiskUsageLister(rootOptions, scanPool);
+          listers.add(lister);
+          lister.start(rootOptions.getRoot());
+        }
+      } else if (timed) {
+        for (TruffulaOptions rootOptions : roots) {
+          if (!rootOptions.getSource().exists(rootOptions.getRoot())) {
+            listers.add(null);
+            continue;
+          }
+          DeadlineLister lister = new DeadlineLister(createReader(rootOptions), options.getParallelism(),
+              options.getMaxDepth());
+          listers.add(lister);
+          lister.start(rootOptions.getRoot());
+        }
+      } else if (levelOrder) {
+        int parallelism = batchParallelism();
+        pool = LevelOrderLister.newPool(parallelism);
+        AtomicLong held = new AtomicLong();
+        ListingCache cache = sharedCache;
+        if (cache == null && options.getCacheFile() != null) {
+          cache = ownCache = new ListingCache(options.getCacheFile(), options, ListingCache.DEFAULT_MAX_ENTRIES);
+        }
+        for (TruffulaOptions rootOptions : roots) {
+          if (!rootOptions.getSource().exists(rootOptions.getRoot())) {
+            listers.add(null);
+            continue;
+          }
+          ListingCache rootCache = cache;
+          DirectoryLister reader = rootCache != null
+              ? directory -> rootCache.list(directory, rootOptions)
+              : createReader(rootOptions);
+          LevelOrderLister lister = new LevelOrderLister(reader, pool, parallelism,
+              rootOptions.getMaxDepth(), LevelOrderLister.DEFAULT_MAX_HELD_ENTRIES, held);
+          lister.start(rootOptions.getRoot());
+          listers.add(lister);
+        }
+      }
+
+      startDocument();
+      for (int i = 0; i < roots.size(); i++) {
+        TruffulaOptions rootOptions = roots.get(i);
+        if (json == null) {
+          out.setCurrentColor(null);
+          if (i > 0) out.print(System.lineSeparator());
+          out.println(rootOptions.getRoot().getPath() + ":");
+        }
+        if (!rootOptions.getSource().exists(rootOptions.getRoot())) {
+          if (json != null) {
+            json.renderError(rootOptions.getRoot(), "Path does not exist.");
+            json.write();
+          } else {
+            out.println("Error: Path does not exist.");
+          }
+          continue;
+        }
+        if (options.isByLevel()) {
+          printLevels(rootOptions);
+          continue;
+        }
+        DirectoryLister lister = concurrent ? listers.set(i, null) : createLister(rootOptions);
+        try {
+          if (diskUsage) {
+            ((DiskUsageLister) lister).await();
+          } else if (timed) {
+            ((DeadlineLister) lister).finish(deadline);
+          }
+          printDirectoryTree(rootOptions.getRoot(), lister);
+        } finally {
+          lister.close();
+        }
+      }
+      finishDocument();
+    } finally {
+      for (DirectoryLister lister : listers) {
+        if (lister != null) lister.close();
+      }
+      if (pool != null) pool.shutdownNow();
+      if (scanPool != null) scanPool.shutdownNow();
+      if (ownCache != null) ownCache.close();
+      TreeStats.Timer flushTimer = TreeStats.start(options.getStats(), TreeStats.Phase.WRITE);
+      out.flush();
+      TreeStats.stop(flushTimer);
+    }
+  }
+
+  /**
+   * Prints the tree, then keeps it current: whenever entries are created, deleted or
+   * renamed, the directories that changed are listed again and the tree is printed
+   * afresh. With color enabled each print clears the terminal first; without color
+   * prints are separated by a blank line. Runs until the thread is interrupted.
+   *
+   * @throws InterruptedException if the thread is interrupted while waiting for changes
+   */
+  public void watchTree() throws InterruptedException {
+    watchTree(Integer.MAX_VALUE, WATCH_POLL_MILLIS, WATCH_BATCH_MILLIS);
+  }
+
+  /**
+   * Prints the tree up to the given number of times, waiting for a batch of changes
+   * between prints.
+   *
+   * @param renders        the number of times to print the tree
+   * @param pollMillis     time between checks for changes
+   * @param maxBatchMillis the longest a burst of changes may delay a print
+   * @throws InterruptedException if the thread is interrupted while waiting for changes
+   */
+  void watchTree(int renders, long pollMillis, long maxBatchMillis) throws InterruptedException {
     File root = options.getRoot();
-    if (!root.exists()) {
+    if (!options.getSource().exists(root)) {
       out.println("Error: Path does not exist.");
+      out.flush();
       return;
     }
 
-    printDirectoryTree(root, 0, 0);
+    DirectoryLister reader = createReader(options);
+    try {
+      TreeWatcher watcher = new TreeWatcher(options.getSource(), reader, root, options.getMaxDepth());
+      watcher.scan();
+      for (int i = 0; i < renders; i++) {
+        if (i > 0) {
+          watcher.awaitChanges(pollMillis, maxBatchMillis);
+          out.setCurrentColor(null);
+          out.print(options.isUseColor() ? CLEAR_SCREEN : System.lineSeparator());
+        }
+        startDocument();
+        printDirectoryTree(root, watcher);
+        finishDocument();
+        out.flush();
+      }
+    } finally {
+      reader.close();
+      out.flush();
+    }
+  }
+
+  /**
+   * Prints the tree using the given lister, then closes it.
+   *
+   * @param lister supplies the sorted children of each directory
+   */
+  void printTree(DirectoryLister lister) {
+    try {
+      startDocument();
+      printDirectoryTree(options.getRoot(), lister);
+      finishDocument();
+    } finally {
+      lister.close();
+      TreeStats.Timer flushTimer = TreeStats.start(options.getStats(), TreeStats.Phase.WRITE);
+      out.flush();
+      TreeStats.stop(flushTimer);
+    }
+  }
+
+  /**
+   * Chooses whether single directories are read from disk, from the listing cache,
+   * or from a shared in-memory cache.
+   *
+   * @param rootOptions the options of the tree being read
+   * @return a lister that reads one directory at a time
+   */
+  private DirectoryLister createReader(TruffulaOptions rootOptions) {
+    if (sharedCache != null) {
+      return directory -> sharedCache.list(directory, rootOptions);
+    }
+    if (rootOptions.getCacheFile() != null) {
+      return new ListingCache(rootOptions.getCacheFile(), rootOptions, ListingCache.DEFAULT_MAX_ENTRIES);
+    }
+    // Not a lambda: bootstrapping the first lambda of a run costs more than a short
+    // run on a small tree spends listing it.
+    return new DirectoryLister() {
+      @Override
+      public FileEntry[] list(File directory) {
+        return DirectoryLister.readDirectory(directory, rootOptions);
+      }
+    };
+  }
+
+  /**
+   * Chooses how directories are read, from disk or from the listing cache, and
+   * where, based on the configured prefetch limit and parallelism. Disk-usage mode
+   * reads the whole tree up front instead, without the cache, and a time budget
+   * reads as much of it up front as the budget allows.
+   *
+   * @param rootOptions the options of the tree being read
+   * @return a lister that serves listings in the order the printer asks for them
+   */
+  private DirectoryLister createLister(TruffulaOptions rootOptions) {
+    File root = rootOptions.getRoot();
+    if (options.isDiskUsage()) {
+      DiskUsageLister lister = new DiskUsageLister(rootOptions, batchParallelism());
+      lister.scan(root);
+      return lister;
+    }
+    DirectoryLister reader = createReader(rootOptions);
+    if (options.getTimeBudget() > 0) {
+      DeadlineLister lister = new DeadlineLister(reader, options.getParallelism(), options.getMaxDepth());
+      lister.scan(root, options.getTimeBudget());
+      return lister;
+    }
+    if (options.isLevelOrder()) {
+      LevelOrderLister lister = new LevelOrderLister(reader, batchParallelism(),
+          options.getMaxDepth(), LevelOrderLister.DEFAULT_MAX_HELD_ENTRIES);
+      lister.start(root);
+      return lister;
+    }
+    if (options.getPrefetchLimit() > 0) {
+      return new PrefetchingLister(reader, options.getPrefetchLimit(), options.getMaxDepth());
+    }
+    if (options.getParallelism() > 1) {
+      ForkJoinLister lister = new ForkJoinLister(reader, options.getParallelism(), options.getMaxDepth());
+      lister.start(root);
+      return lister;
+    }
+    return reader;
+  }
+
+  /**
+   * Returns the number of threads for modes that read many directories at once:
+   * the -j thread count if given, else one per processor.
+   */
+  private int batchParallelism() {
+    return options.isParallelismGiven()
+        ? options.getParallelism() : Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Prints the tree level by level as a LevelOrderLister reads it: first the root's
+   * entries, then the entries of each of their subdirectories, and so on. Each entry
+   * is printed as its path below the root, in the color of its depth. A level's
+   * listings are printed and dropped batch by batch, so only the directories of the
+   * next level are held. A directory that turns out not to be listed, such as a link
+   * that is not followed, is printed again in the next level with its note.
+   *
+   * @param rootOptions the options of the tree to print
+   */
+  private void printLevels(TruffulaOptions rootOptions) {
+    File root = rootOptions.getRoot();
+    LevelOrderLister lister = new LevelOrderLister(createReader(rootOptions), batchParallelism(),
+        options.getMaxDepth(), 0);
+    String rootPath = root.getPath();
+    int rootLength = rootPath.endsWith(File.separator) ? rootPath.length() : rootPath.length() + 1;
+    StringBuilder line = new StringBuilder();
+    try {
+      lister.walkLevels(root, (depth, directory, entries) -> {
+        if (entries == null) return true;
+        String prefix = depth == 0 ? "" : directory.getPath().substring(rootLength) + File.separator;
+        if (DirectoryLister.unlistedNote(directory, entries) != null) {
+          // The directory was printed with the level above; it is printed again
+          // here, where its entries would be, with the note saying why it has none.
+          String parent = depth <= 1 ? "" : directory.getParentFile().getPath().substring(rootLength) + File.separator;
+          if (json != null) {
+            printRecord(entries[0], depth);
+          } else {
+            printLine(entries[0], depth - 1, "", parent, line);
+          }
+          return true;
+        }
+        for (FileEntry entry : entries) {
+          if (json != null) {
+            printRecord(entry, depth + 1);
+          } else {
+            printLine(entry, depth, "", prefix, line);
+          }
+        }
+        return true;
+      });
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      lister.close();
+      TreeStats.Timer flushTimer = TreeStats.start(options.getStats(), TreeStats.Phase.WRITE);
+      out.flush();
+      TreeStats.stop(flushTimer);
+    }
   }
 
-  private void printDirectoryTree(File directory, int depth, int colorIndex) {
-    if (!directory.isDirectory()) return;
+  /**
+   * Opens the JSON array the records are printed into, when printing JSON.
+   */
+  private void startDocument() {
+    if (json != null) {
+      out.setCurrentColor(null);
+      json.start();
+    }
+  }
 
-    File[] files = directory.listFiles();
-    if (files == null) return;
+  /**
+   * Closes the JSON array, when printing JSON.
+   */
+  private void finishDocument() {
+    if (json != null) json.finish();
+  }
 
-    if (!options.isShowHidden()) {
-      files = Arrays.stream(files)
-                    .filter(f -> !f.getName().startsWith("."))
-                    .toArray(File[]::new);
+  /**
+   * Walks the tree depth-first with an explicit stack instead of recursion, so the
+   * depth of the tree is limited only by the heap. Each open directory keeps its
+   * listing and a cursor to the next entry to print; entries are cleared from the
+   * listing once printed so they can be collected while their siblings are walked.
+   * One indentation buffer is shared by all levels, grown on the way down and cut
+   * back on the way up, so each level's state is the same size however deep it is.
+   *
+   * @param root   the directory whose contents are printed
+   * @param lister supplies the sorted children of each directory
+   */
+  private void printDirectoryTree(File root, DirectoryLister lister) {
+    FileEntry[] rootEntries = lister.list(root);
+    if (rootEntries == null) {
+      return;
     }
 
-    AlphabeticalFileSorter.sort(files);
+    int maxDepth = options.getMaxDepth();
+    Deque<Level> levels = new ArrayDeque<>();
+    levels.push(new Level(rootEntries, 0));
+    StringBuilder indent = new StringBuilder();
+    StringBuilder line = new StringBuilder();
+
+    while (!levels.isEmpty()) {
+      Level level = levels.peek();
+      if (level.next == level.entries.length) {
+        levels.pop();
+        indent.setLength(Math.max(0, indent.length() - INDENT.length()));
+        continue;
+      }
+      FileEntry entry = level.entries[level.next];
+      level.entries[level.next++] = null;
 
-    for (File file : files) {
-      String indent = "   ".repeat(depth);
+      // Listed before its line is printed, since a directory that is not listed is
+      // printed with a note.
+      FileEntry[] children = null;
+      if (entry.canDescend() && (maxDepth == 0 || level.depth + 1 < maxDepth)) {
+        children = lister.list(entry.getFile());
+        String note = DirectoryLister.unlistedNote(entry.getFile(), children);
+        if (note != null) {
+          entry = entry.withNote(note);
+          children = null;
+        }
+      }
 
-      if (options.isUseColor()) {
-        ConsoleColor color = colorSequence.get(colorIndex % colorSequence.size());
-        out.setCurrentColor(color);
+      if (json != null) {
+        printRecord(entry, level.depth + 1);
       } else {
-        out.setCurrentColor(null);
+        printLine(entry, level.depth, indent, "", line);
       }
 
-      String name = file.isDirectory() ? file.getName() + "/" : file.getName();
-      out.println(indent + name);
-
-      if (file.isDirectory()) {
-        printDirectoryTree(file, depth + 1, colorIndex + 1);
+      if (children != null && children.length > 0) {
+        levels.push(new Level(children, level.depth + 1));
+        indent.append(INDENT);
       }
     }
   }
+
+  /**
+   * Prints one entry as a JSON record.
+   *
+   * @param entry the entry to print
+   * @param depth the entry's depth below the root, starting at 1
+   */
+  private void printRecord(FileEntry entry, int depth) {
+    TreeStats stats = options.getStats();
+    TreeStats.Timer renderTimer = TreeStats.start(stats, TreeStats.Phase.RENDER);
+    json.render(entry, depth);
+    TreeStats.stop(renderTimer);
+
+    TreeStats.Timer writeTimer = TreeStats.start(stats, TreeStats.Phase.WRITE);
+    json.write();
+    TreeStats.stop(writeTimer);
+  }
+
+  /**
+   * Prints one entry as a line of text, in the color of its depth.
+   *
+   * @param entry  the entry to print
+   * @param depth  the depth of the directory the entry belongs to, 0 for the root
+   * @param indent the indentation printed before the entry's columns
+   * @param path   the path of the entry's directory printed before its name, if any
+   * @param line   a builder reused for every line
+   */
+  private void printLine(FileEntry entry, int depth, CharSequence indent, String path, StringBuilder line) {
+    out.setCurrentColor(depthColor(options, colorSequence, depth));
+
+    TreeStats stats = options.getStats();
+    TreeStats.Timer renderTimer = TreeStats.start(stats, TreeStats.Phase.RENDER);
+    line.setLength(0);
+    entry.appendLine(line, indent, path);
+    TreeStats.stop(renderTimer);
+
+    TreeStats.Timer writeTimer = TreeStats.start(stats, TreeStats.Phase.WRITE);
+    out.println(line);
+    TreeStats.stop(writeTimer);
+  }
+
+  /**
+   * Returns the color of the lines at a depth, or null when color is off.
+   *
+   * @param options       the options that turn color on or off
+   * @param colorSequence the colors to cycle through by depth
+   * @param depth         the depth of the directory the line's entry belongs to
+   * @return the color to print the line in, or null
+   */
+  static ConsoleColor depthColor(TruffulaOptions options, List<ConsoleColor> colorSequence, int depth) {
+    return options.isUseColor() ? colorSequence.get(depth % colorSequence.size()) : null;
+  }
+
+  /**
+   * One open directory on the traversal stack.
+   */
+  private static class Level {
+    private final FileEntry[] entries;
+    private final int depth;
+    private int next;
+
+    Level(FileEntry[] entries, int depth) {
+      this.entries = entries;
+      this.depth = depth;
+    }
+  }
 }
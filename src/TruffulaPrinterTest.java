@@ -3,12 +3,18 @@ import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -210,4 +216,392 @@ public class TruffulaPrinterTest {
             assertFalse(line.matches(".*\\u001B\\[[;\\d]*m.*"), "Line contains ANSI color: " + line);
         }
     }
-}
\ No newline at end of file
+
+    private static void createSampleTree(File parent, int depth, int fanOut) throws IOException {
+        for (int i = 0; i < fanOut; i++) {
+            new File(parent, (i % 2 == 0 ? "File" : "file") + i + ".txt").createNewFile();
+            createHiddenFile(parent, ".hidden" + i);
+            if (depth > 0) {
+                File child = new File(parent, (i % 2 == 0 ? "Dir" : "dir") + i);
+                assertTrue(child.mkdir());
+                createSampleTree(child, depth - 1, fanOut);
+            }
+        }
+    }
+
+    private static String printToString(TruffulaOptions options) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new TruffulaPrinter(options, new PrintStream(out)).printTree();
+        return out.toString();
+    }
+
+    @Test
+    void testParallelOutputMatchesSerial(@TempDir File tempDir) throws IOException {
+        createSampleTree(tempDir, 3, 4);
+        String path = tempDir.getAbsolutePath();
+
+        String serial = printToString(new TruffulaOptions(new String[]{path}));
+        String parallel = printToString(new TruffulaOptions(new String[]{"-j", "4", path}));
+
+        assertFalse(serial.isEmpty());
+        assertEquals(serial, parallel);
+    }
+
+    @Test
+    void testParallelOutputMatchesSerial_ShowHiddenNoColor(@TempDir File tempDir) throws IOException {
+        createSampleTree(tempDir, 2, 5);
+        String path = tempDir.getAbsolutePath();
+
+        String serial = printToString(new TruffulaOptions(new String[]{"-h", "-nc", path}));
+        String parallel = printToString(new TruffulaOptions(new String[]{"-h", "-nc", "-j", "8", path}));
+
+        assertTrue(serial.contains(".hidden0"));
+        assertEquals(serial, parallel);
+    }
+
+    /**
+     * Serves a chain of directories named 0, 1, 2, ... without touching the disk,
+     * so the tree can be far deeper than any real path allows.
+     */
+    private static class DeepChainLister implements DirectoryLister {
+        private final int depth;
+
+        DeepChainLister(int depth) {
+            this.depth = depth;
+        }
+
+        @Override
+        public FileEntry[] list(File directory) {
+            int level = Integer.parseInt(directory.getName());
+            if (level == depth) return new FileEntry[0];
+            File child = new File(String.valueOf(level + 1));
+            return new FileEntry[]{new FileEntry(child, true, 0, 0, 0, null)};
+        }
+    }
+
+    @Test
+    void testVeryDeepTreeDoesNotOverflowStack() {
+        int depth = 20_000;
+        int[] lines = new int[1];
+        OutputStream lineCounter = new OutputStream() {
+            @Override
+            public void write(int b) {
+                if (b == '\n') lines[0]++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                for (int i = off; i < off + len; i++) {
+                    if (b[i] == '\n') lines[0]++;
+                }
+            }
+        };
+
+        TruffulaOptions options = new TruffulaOptions(new File("0"), false, true);
+        new TruffulaPrinter(options, new PrintStream(lineCounter)).printTree(new DeepChainLister(depth));
+
+        assertEquals(depth, lines[0]);
+    }
+
+    @Test
+    void testMetadataColumnsArePrintedBeforeNames(@TempDir File tempDir) throws IOException {
+        File docs = new File(tempDir, "docs");
+        assertTrue(docs.mkdir());
+        new File(docs, "empty.txt").createNewFile();
+
+        String output = printToString(new TruffulaOptions(new String[]{"-nc", "-s", "-p", tempDir.getAbsolutePath()}))
+            .replace("\r\n", "\n");
+
+        String[] lines = output.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].matches("\\[d[r-][w-][x-] +\\d+\\]  docs/"), lines[0]);
+        assertEquals("   [-rw-           0]  empty.txt", lines[1]);
+    }
+
+    @Test
+    void testDepthLimitStopsDescending(@TempDir File tempDir) throws IOException {
+        assertTrue(new File(tempDir, "a/b/c").mkdirs());
+        new File(tempDir, "a/b/c/deep.txt").createNewFile();
+        new File(tempDir, "a/one.txt").createNewFile();
+        String path = tempDir.getAbsolutePath();
+        String nl = System.lineSeparator();
+
+        assertEquals("a/" + nl, printToString(new TruffulaOptions(new String[]{"-nc", "-L", "1", path})));
+        assertEquals("a/" + nl + "   b/" + nl + "   one.txt" + nl,
+            printToString(new TruffulaOptions(new String[]{"-nc", "-L", "2", path})));
+    }
+
+    @Test
+    void testEntryCapPrintsFirstEntriesThenCount(@TempDir File tempDir) throws IOException {
+        File sub = new File(tempDir, "Sub");
+        assertTrue(sub.mkdir());
+        for (String name : new String[]{"e.txt", "B.txt", "d.txt", "a.txt", "C.txt"}) {
+            new File(sub, name).createNewFile();
+        }
+        createHiddenFile(sub, ".hidden");
+        new File(tempDir, "z.txt").createNewFile();
+        String nl = System.lineSeparator();
+
+        String output = printToString(
+            new TruffulaOptions(new String[]{"-nc", "--max-entries", "2", tempDir.getAbsolutePath()}));
+
+        assertEquals("Sub/" + nl + "   a.txt" + nl + "   B.txt" + nl + "   ... 3 more" + nl + "z.txt" + nl, output);
+    }
+
+    @Test
+    void testLimitsGiveSameOutputInEveryMode(@TempDir File tempDir) throws IOException {
+        createSampleTree(tempDir, 3, 4);
+        String path = tempDir.getAbsolutePath();
+
+        String serial = printToString(new TruffulaOptions(new String[]{"-L", "3", "--max-entries", "3", path}));
+        String parallel = printToString(
+            new TruffulaOptions(new String[]{"-L", "3", "--max-entries", "3", "-j", "4", path}));
+        String prefetched = printToString(
+            new TruffulaOptions(new String[]{"-L", "3", "--max-entries", "3", "--prefetch", "8", path}));
+
+        assertTrue(serial.contains("more"));
+        assertEquals(serial, parallel);
+        assertEquals(serial, prefetched);
+    }
+
+    @Test
+    void testFiltersApplyInEveryMode(@TempDir File tempDir) throws IOException {
+        createSampleTree(tempDir, 3, 4);
+        File ignored = new File(tempDir, "dir1");
+        try (FileWriter writer = new FileWriter(new File(tempDir, ".gitignore"))) {
+            writer.write("Dir2/\n");
+        }
+        String path = tempDir.getAbsolutePath();
+        File cache = new File(tempDir.getParentFile(), tempDir.getName() + ".cache");
+
+        String serial = printToString(new TruffulaOptions(
+            new String[]{"--exclude", "file1.txt", "--gitignore", "--max-entries", "2", path}));
+        String parallel = printToString(new TruffulaOptions(
+            new String[]{"--exclude", "file1.txt", "--gitignore", "--max-entries", "2", "-j", "4", path}));
+        String cached = printToString(new TruffulaOptions(
+            new String[]{"--exclude", "file1.txt", "--gitignore", "--max-entries", "2", "--cache", cache.getPath(), path}));
+        cache.delete();
+
+        assertFalse(serial.contains("file1.txt"));
+        assertFalse(serial.contains("Dir2"));
+        assertTrue(serial.contains(ignored.getName()));
+        assertEquals(serial, parallel);
+        assertEquals(serial, cached);
+    }
+
+    @Test
+    void testMemorySourcePrintsLikeDisk(@TempDir File tempDir) throws IOException {
+        createSampleTree(tempDir, 2, 3);
+        MemoryTreeSource memory = new MemoryTreeSource(tempDir);
+        copyToMemory(tempDir, memory);
+
+        String disk = printToString(new TruffulaOptions(tempDir, true, false));
+        String inMemory = printToString(new TruffulaOptions(memory, tempDir, true, false));
+
+        assertEquals(disk, inMemory);
+    }
+
+    private static void copyToMemory(File directory, MemoryTreeSource memory) {
+        for (File file : directory.listFiles()) {
+            if (file.isDirectory()) {
+                memory.addDirectory(file);
+                copyToMemory(file, memory);
+            } else {
+                memory.addFile(file, file.length());
+            }
+        }
+    }
+
+    @Test
+    void testArchiveIsPrintedFromItsCentralDirectory(@TempDir File tempDir) throws IOException {
+        File jar = ArchiveTreeSourceTest.createJar(tempDir);
+        String nl = System.lineSeparator();
+
+        String output = printToString(new TruffulaOptions(new String[]{"-nc", jar.getAbsolutePath()}));
+
+        assertEquals("com/" + nl
+            + "   example/" + nl
+            + "      Main.class" + nl
+            + "      util/" + nl
+            + "META-INF/" + nl
+            + "   MANIFEST.MF" + nl, output);
+    }
+
+    @Test
+    void testDiskUsageShowsDirectoryTotals(@TempDir File tempDir) throws IOException {
+        File docs = new File(tempDir, "docs");
+        assertTrue(new File(docs, "img").mkdirs());
+        try (FileWriter writer = new FileWriter(new File(docs, "a.txt"))) {
+            writer.write("12345");
+        }
+        try (FileWriter writer = new FileWriter(new File(docs, "img/b.txt"))) {
+            writer.write("1234567");
+        }
+        String nl = System.lineSeparator();
+
+        String output = printToString(new TruffulaOptions(new String[]{"-nc", "--du", "-j", "2", tempDir.getPath()}));
+
+        assertEquals("[         12]  docs/" + nl
+            + "   [          5]  a.txt" + nl
+            + "   [          7]  img/" + nl
+            + "      [          7]  b.txt" + nl, output);
+    }
+
+    @Test
+    void testNdjsonFormatWritesOneRecordPerEntry(@TempDir File tempDir) throws IOException {
+        File docs = new File(tempDir, "docs");
+        assertTrue(docs.mkdir());
+        try (FileWriter writer = new FileWriter(new File(docs, "a \"b\".txt"))) {
+            writer.write("12345");
+        }
+        new File(tempDir, "Zebra.txt").createNewFile();
+        String nl = System.lineSeparator();
+
+        String output = printToString(new TruffulaOptions(new String[]{"-s", "--format", "ndjson", tempDir.getPath()}));
+
+        String docsPath = docs.getPath().replace("\\", "\\\\");
+        String tempPath = tempDir.getPath().replace("\\", "\\\\");
+        String separator = File.separator.replace("\\", "\\\\");
+        assertEquals("{\"path\":\"" + docsPath + "\",\"depth\":1,\"type\":\"directory\",\"size\":" + docs.length() + "}" + nl
+            + "{\"path\":\"" + docsPath + separator + "a \\\"b\\\".txt\",\"depth\":2,\"type\":\"file\",\"size\":5}" + nl
+            + "{\"path\":\"" + tempPath + separator + "Zebra.txt\",\"depth\":1,\"type\":\"file\",\"size\":0}" + nl, output);
+    }
+
+    @Test
+    void testJsonFormatWritesOneArray(@TempDir File tempDir) throws IOException {
+        for (String name : new String[]{"a.txt", "b.txt", "c.txt"}) {
+            new File(tempDir, name).createNewFile();
+        }
+        String nl = System.lineSeparator();
+        String path = tempDir.getPath().replace("\\", "\\\\") + File.separator.replace("\\", "\\\\");
+
+        String output = printToString(new TruffulaOptions(new String[]{"--format", "json", "--max-entries", "2", tempDir.getPath()}));
+
+        assertEquals("[\n  {\"path\":\"" + path + "a.txt\",\"depth\":1,\"type\":\"file\"},"
+            + "\n  {\"path\":\"" + path + "b.txt\",\"depth\":1,\"type\":\"file\"},"
+            + "\n  {\"path\":\"" + tempDir.getPath().replace("\\", "\\\\") + "\",\"depth\":1,\"type\":\"omitted\",\"count\":1}"
+            + "\n]" + nl, output);
+    }
+
+    @Test
+    void testJsonFormatOfEmptyTree(@TempDir File tempDir) throws IOException {
+        String output = printToString(new TruffulaOptions(new String[]{"--format", "json", tempDir.getPath()}));
+
+        assertEquals("[]" + System.lineSeparator(), output);
+    }
+
+    @Test
+    void testOutputFileIsWrittenWithoutColor(@TempDir File tempDir) throws IOException {
+        File tree = new File(tempDir, "tree");
+        assertTrue(new File(tree, "sub").mkdirs());
+        new File(tree, "sub/b.txt").createNewFile();
+        new File(tree, "a.txt").createNewFile();
+        File plain = new File(tempDir, "tree.txt");
+        File gzip = new File(tempDir, "tree.txt.gz");
+        String nl = System.lineSeparator();
+
+        for (File output : new File[]{plain, gzip}) {
+            String[] args = output == gzip
+                ? new String[]{"-o", output.getPath(), "--gzip", tree.getPath()}
+                : new String[]{"-o", output.getPath(), tree.getPath()};
+            TruffulaOptions options = new TruffulaOptions(args);
+            try (FileSink sink = new FileSink(options.getOutputFile(), options.isGzip())) {
+                new TruffulaPrinter(options, sink).printTree();
+            }
+        }
+
+        String expected = "a.txt" + nl + "sub/" + nl + "   b.txt" + nl;
+        try (InputStream in = new FileInputStream(plain)) {
+            assertEquals(expected, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        try (InputStream in = new GZIPInputStream(new FileInputStream(gzip))) {
+            assertEquals(expected, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testSeveralRootsPrintUnderHeadersInArgumentOrder(@TempDir File tempDir) throws IOException {
+        File first = new File(tempDir, "first");
+        File second = new File(tempDir, "second");
+        assertTrue(new File(first, "x/y").mkdirs());
+        new File(first, "x/y/z.txt").createNewFile();
+        new File(first, "b.txt").createNewFile();
+        assertTrue(second.mkdir());
+        new File(second, "a.txt").createNewFile();
+        String nl = System.lineSeparator();
+
+        for (String flag : new String[]{"-s", "--level-order", "--du", "--by-level"}) {
+            String expected = first.getPath() + ":" + nl
+                + printToString(new TruffulaOptions(new String[]{"-nc", flag, first.getPath()}))
+                + nl + second.getPath() + ":" + nl
+                + printToString(new TruffulaOptions(new String[]{"-nc", flag, second.getPath()}));
+
+            String output = printToString(new TruffulaOptions(new String[]{"-nc", flag, first.getPath(), second.getPath()}));
+
+            assertEquals(expected, output, flag);
+        }
+    }
+
+    @Test
+    void testMissingRootAmongSeveralIsReportedUnderItsHeader(@TempDir File tempDir) throws IOException {
+        File first = new File(tempDir, "first");
+        File missing = new File(tempDir, "missing");
+        File second = new File(tempDir, "second");
+        assertTrue(first.mkdir());
+        assertTrue(second.mkdir());
+        new File(first, "a.txt").createNewFile();
+        new File(second, "b.txt").createNewFile();
+        String nl = System.lineSeparator();
+
+        for (String flag : new String[]{"-s", "--level-order", "--by-level"}) {
+            String expected = first.getPath() + ":" + nl
+                + printToString(new TruffulaOptions(new String[]{"-nc", flag, first.getPath()}))
+                + nl + missing.getPath() + ":" + nl
+                + "Error: Path does not exist." + nl
+                + nl + second.getPath() + ":" + nl
+                + printToString(new TruffulaOptions(new String[]{"-nc", flag, second.getPath()}));
+
+            String output = printToString(new TruffulaOptions(new String[]{"-nc", flag,
+                first.getPath(), missing.getPath(), second.getPath()}));
+
+            assertEquals(expected, output, flag);
+        }
+    }
+
+    @Test
+    void testMissingRootAmongSeveralIsAnErrorRecordInJson(@TempDir File tempDir) throws IOException {
+        File missing = new File(tempDir, "missing");
+        File second = new File(tempDir, "second");
+        assertTrue(second.mkdir());
+        new File(second, "b.txt").createNewFile();
+        String nl = System.lineSeparator();
+        String sep = File.separator.replace("\\", "\\\\");
+
+        String output = printToString(new TruffulaOptions(new String[]{"--format", "json",
+            missing.getPath(), second.getPath()}));
+
+        assertEquals("[\n  {\"path\":\"" + missing.getPath().replace("\\", "\\\\")
+            + "\",\"depth\":0,\"type\":\"error\",\"error\":\"Path does not exist.\"},"
+            + "\n  {\"path\":\"" + second.getPath().replace("\\", "\\\\") + sep + "b.txt\",\"depth\":1,\"type\":\"file\"}"
+            + "\n]" + nl, output);
+    }
+
+    @Test
+    void testSeveralRootsInJsonFormOneArray(@TempDir File tempDir) throws IOException {
+        File first = new File(tempDir, "first");
+        File second = new File(tempDir, "second");
+        assertTrue(first.mkdir());
+        assertTrue(second.mkdir());
+        new File(first, "a.txt").createNewFile();
+        new File(second, "b.txt").createNewFile();
+        String nl = System.lineSeparator();
+        String sep = File.separator.replace("\\", "\\\\");
+
+        String output = printToString(new TruffulaOptions(new String[]{"--format", "json",
+            first.getPath(), second.getPath()}));
+
+        assertEquals("[\n  {\"path\":\"" + first.getPath().replace("\\", "\\\\") + sep + "a.txt\",\"depth\":1,\"type\":\"file\"},"
+            + "\n  {\"path\":\"" + second.getPath().replace("\\", "\\\\") + sep + "b.txt\",\"depth\":1,\"type\":\"file\"}"
+            + "\n]" + nl, output);
+    }
+}